@@ -0,0 +1,188 @@
+package com.assistant.core.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.lang.NonNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-destination instrumentation and total deadline for outbound calls.
+ * The connect and read (time-to-headers) timeouts live on the request factory; this interceptor
+ * bounds the whole exchange including body streaming: when the deadline passes the response is
+ * closed and further reads fail. A call counts as in flight until its response is closed.
+ */
+class OutboundHttpInterceptor implements ClientHttpRequestInterceptor {
+
+    private final String destination;
+    private final long totalTimeoutNanos;
+    private final ScheduledExecutorService watchdog;
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter deadlineExceeded;
+
+    OutboundHttpInterceptor(String destination, Duration totalTimeout,
+                            ScheduledExecutorService watchdog, MeterRegistry meterRegistry) {
+        this.destination = destination;
+        this.totalTimeoutNanos = totalTimeout.toNanos();
+        this.watchdog = watchdog;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("http.client.outbound.in_flight", inFlight, AtomicInteger::get)
+                .description("Outbound requests holding a connection or HTTP/2 stream")
+                .tag("destination", destination)
+                .register(meterRegistry);
+        this.deadlineExceeded = Counter.builder("http.client.outbound.deadline_exceeded")
+                .description("Outbound exchanges closed by the total deadline")
+                .tag("destination", destination)
+                .register(meterRegistry);
+    }
+
+    @Override
+    @NonNull
+    public ClientHttpResponse intercept(@NonNull HttpRequest request, @NonNull byte[] body,
+                                        @NonNull ClientHttpRequestExecution execution) throws IOException {
+        long start = System.nanoTime();
+        inFlight.incrementAndGet();
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            return new DeadlineResponse(response, start);
+        } catch (IOException | RuntimeException e) {
+            inFlight.decrementAndGet();
+            record(start, "IO_ERROR");
+            throw e;
+        }
+    }
+
+    private void record(long startNanos, String outcome) {
+        Timer.builder("http.client.outbound.requests")
+                .description("Outbound exchange duration until the response is closed")
+                .tag("destination", destination)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static String outcome(HttpStatusCode status) {
+        if (status.is2xxSuccessful()) return "SUCCESS";
+        if (status.is4xxClientError()) return "CLIENT_ERROR";
+        if (status.is5xxServerError()) return "SERVER_ERROR";
+        return "UNKNOWN";
+    }
+
+    /** Wraps the response so closing it (normally or by the watchdog) ends the in-flight accounting once. */
+    private final class DeadlineResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final long startNanos;
+        private final long deadlineNanos;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final ScheduledFuture<?> timer;
+        private volatile boolean expired;
+        private InputStream body;
+
+        DeadlineResponse(ClientHttpResponse delegate, long startNanos) {
+            this.delegate = delegate;
+            this.startNanos = startNanos;
+            this.deadlineNanos = startNanos + totalTimeoutNanos;
+            long remaining = deadlineNanos - System.nanoTime();
+            this.timer = watchdog.schedule(this::expire, Math.max(0, remaining), TimeUnit.NANOSECONDS);
+        }
+
+        private void expire() {
+            expired = true;
+            // Close the raw stream first: closing the response normally drains the remaining body.
+            try {
+                delegate.getBody().close();
+            } catch (IOException ignored) { }
+            close("DEADLINE");
+        }
+
+        @Override
+        @NonNull
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        @NonNull
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        @NonNull
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        @NonNull
+        public synchronized InputStream getBody() throws IOException {
+            if (body == null) {
+                body = new FilterInputStream(delegate.getBody()) {
+                    @Override
+                    public int read() throws IOException {
+                        checkDeadline();
+                        return super.read();
+                    }
+
+                    @Override
+                    public int read(@NonNull byte[] b, int off, int len) throws IOException {
+                        checkDeadline();
+                        return super.read(b, off, len);
+                    }
+                };
+            }
+            return body;
+        }
+
+        private void checkDeadline() throws IOException {
+            if (deadlinePassed()) {
+                throw new IOException("Total deadline of " + TimeUnit.NANOSECONDS.toMillis(totalTimeoutNanos)
+                        + " ms exceeded calling " + destination);
+            }
+        }
+
+        private boolean deadlinePassed() {
+            return expired || System.nanoTime() - deadlineNanos > 0;
+        }
+
+        @Override
+        public void close() {
+            String outcome;
+            try {
+                outcome = deadlinePassed() ? "DEADLINE" : outcome(delegate.getStatusCode());
+            } catch (IOException e) {
+                outcome = "IO_ERROR";
+            }
+            close(outcome);
+        }
+
+        private void close(String outcome) {
+            if (!closed.compareAndSet(false, true)) return;
+            timer.cancel(false);
+            if ("DEADLINE".equals(outcome)) {
+                deadlineExceeded.increment();
+            }
+            inFlight.decrementAndGet();
+            record(startNanos, outcome);
+            delegate.close();
+        }
+    }
+}
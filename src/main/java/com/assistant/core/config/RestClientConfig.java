@@ -1,20 +1,88 @@
 package com.assistant.core.config;
 
-import org.springframework.boot.web.client.RestTemplateBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
 
+import java.net.http.HttpClient;
 import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
+/**
+ * Shared outbound HTTP layer. Each destination (LLM provider, WhatsApp bridge) gets one long-lived
+ * JDK {@link HttpClient}: connections are pooled and kept alive across calls, and HTTPS upstreams
+ * that support it are multiplexed over HTTP/2 (negotiated via ALPN, falling back to HTTP/1.1).
+ * Connect and read timeouts are set on the client/request factory; a total deadline and
+ * in-flight / latency metrics are added by {@link OutboundHttpInterceptor}.
+ * <p>
+ * How long idle pooled connections are kept is a JVM-wide JDK setting read once, when the first
+ * HttpClient is created, so it is a launch option rather than an application property:
+ * -Djdk.httpclient.keepalive.timeout=120 (seconds; see README).
+ */
 @Configuration
 public class RestClientConfig {
 
+    /** Watchdog for total deadlines; one daemon thread is enough since it only closes responses. */
+    private final ScheduledExecutorService deadlineWatchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "http-deadline-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PreDestroy
+    void shutdown() {
+        deadlineWatchdog.shutdownNow();
+    }
+
+    @Bean
+    public RestClient llmRestClient(@Value("${app.llm.base-url:}") String baseUrl,
+                                    @Value("${app.llm.api-key:}") String apiKey,
+                                    @Value("${app.llm.http.connect-timeout-ms:5000}") long connectTimeoutMs,
+                                    @Value("${app.llm.http.read-timeout-ms:60000}") long readTimeoutMs,
+                                    @Value("${app.llm.http.total-timeout-ms:120000}") long totalTimeoutMs,
+                                    @Value("${app.llm.http.http2:true}") boolean http2,
+                                    MeterRegistry meterRegistry) {
+        String url = baseUrl != null && !baseUrl.isBlank() ? baseUrl.strip() : "http://placeholder";
+        return RestClient.builder()
+                .baseUrl(url)
+                .requestFactory(requestFactory(connectTimeoutMs, readTimeoutMs, http2))
+                .requestInterceptor(new OutboundHttpInterceptor("llm", Duration.ofMillis(totalTimeoutMs),
+                        deadlineWatchdog, meterRegistry))
+                .defaultHeader("Content-Type", MediaType.APPLICATION_JSON_VALUE)
+                .defaultHeader("Authorization", "Bearer " + (apiKey != null ? apiKey : ""))
+                .build();
+    }
+
     @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder builder) {
-        return builder
-                .setConnectTimeout(Duration.ofSeconds(10))
-                .setReadTimeout(Duration.ofSeconds(30))
+    public RestClient bridgeRestClient(@Value("${app.whatsapp.bridge-url:http://localhost:3000}") String bridgeBaseUrl,
+                                       @Value("${app.whatsapp.http.connect-timeout-ms:2000}") long connectTimeoutMs,
+                                       @Value("${app.whatsapp.http.read-timeout-ms:10000}") long readTimeoutMs,
+                                       @Value("${app.whatsapp.http.total-timeout-ms:15000}") long totalTimeoutMs,
+                                       @Value("${app.whatsapp.http.http2:false}") boolean http2,
+                                       MeterRegistry meterRegistry) {
+        return RestClient.builder()
+                .baseUrl(bridgeBaseUrl != null ? bridgeBaseUrl.strip() : "http://localhost:3000")
+                .requestFactory(requestFactory(connectTimeoutMs, readTimeoutMs, http2))
+                .requestInterceptor(new OutboundHttpInterceptor("whatsapp-bridge", Duration.ofMillis(totalTimeoutMs),
+                        deadlineWatchdog, meterRegistry))
+                .build();
+    }
+
+    private static JdkClientHttpRequestFactory requestFactory(long connectTimeoutMs, long readTimeoutMs, boolean http2) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
                 .build();
+        JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+        factory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+        return factory;
     }
 }
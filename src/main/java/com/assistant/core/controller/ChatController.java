@@ -0,0 +1,87 @@
+package com.assistant.core.controller;
+
+import com.assistant.core.dto.ChatRequestDTO;
+import com.assistant.core.repository.UserRepository;
+import com.assistant.core.service.ConversationOrchestratorService;
+import com.assistant.core.service.ReplyUnavailableException;
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Web chat with the assistant. Runs the same conversation loop as WhatsApp (streaming, so tools
+ * start early) and answers with Server-Sent Events: a "token" event carries the reply once it is
+ * final, a "done" event carries the full reply, and "error" is sent if the loop fails or the LLM
+ * is busy.
+ */
+@RestController
+@RequestMapping("/chat")
+public class ChatController {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatController.class);
+    private static final long STREAM_TIMEOUT_MS = 120_000;
+
+    private final ConversationOrchestratorService conversationOrchestrator;
+    private final UserRepository userRepository;
+    private final TaskExecutor taskExecutor;
+
+    public ChatController(ConversationOrchestratorService conversationOrchestrator,
+                          UserRepository userRepository,
+                          TaskExecutor taskExecutor) {
+        this.conversationOrchestrator = conversationOrchestrator;
+        this.userRepository = userRepository;
+        this.taskExecutor = taskExecutor;
+    }
+
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(Authentication authentication, @Valid @RequestBody ChatRequestDTO request) {
+        Long userId = resolveUserId(authentication);
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        taskExecutor.execute(() -> {
+            try {
+                String reply = conversationOrchestrator.processMessageStreaming(userId, request.getMessage(),
+                        text -> send(emitter, "token", text));
+                send(emitter, "done", Map.of("reply", reply));
+                emitter.complete();
+            } catch (ReplyUnavailableException e) {
+                send(emitter, "error", Map.of("error", e.getMessage()));
+                emitter.complete();
+            } catch (Exception e) {
+                log.error("Chat stream failed for userId={}: {}", userId, e.getMessage(), e);
+                send(emitter, "error", Map.of("error", "Something went wrong while processing your request."));
+                emitter.complete();
+            }
+        });
+        return emitter;
+    }
+
+    private static void send(SseEmitter emitter, String event, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(event).data(data));
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; the loop still completes and persists the reply.
+            log.debug("Chat stream send failed ({}): {}", event, e.getMessage());
+        }
+    }
+
+    private Long resolveUserId(Authentication authentication) {
+        String email = authentication != null ? authentication.getName() : null;
+        if (email == null) {
+            throw new IllegalArgumentException("Not authenticated");
+        }
+        return userRepository.findByEmail(email)
+                .orElseThrow(() -> new IllegalArgumentException("User not found"))
+                .getId();
+    }
+}
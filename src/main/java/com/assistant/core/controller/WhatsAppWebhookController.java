@@ -2,6 +2,7 @@ package com.assistant.core.controller;
 
 import com.assistant.core.dto.ApiResponse;
 import com.assistant.core.dto.whatsapp.WhatsAppWebhookPayload;
+import com.assistant.core.service.WhatsAppInboundQueue;
 import com.assistant.core.service.WhatsAppWebhookService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,10 +30,14 @@ public class WhatsAppWebhookController {
     @Value("${app.whatsapp.verify-token:}")
     private String verifyToken;
 
+    private static final String BUSY_MESSAGE = "I'm handling a lot of messages right now. Please try again in a minute.";
+
     private final WhatsAppWebhookService webhookService;
+    private final WhatsAppInboundQueue inboundQueue;
 
-    public WhatsAppWebhookController(WhatsAppWebhookService webhookService) {
+    public WhatsAppWebhookController(WhatsAppWebhookService webhookService, WhatsAppInboundQueue inboundQueue) {
         this.webhookService = webhookService;
+        this.inboundQueue = inboundQueue;
     }
 
     /**
@@ -60,6 +65,10 @@ public class WhatsAppWebhookController {
      * POST /webhook/whatsapp — Incoming message forwarded by the Node.js bridge.
      * Processes the message and returns the reply text. The bridge reads the response and sends
      * it back to the user via Baileys. Always returns 200 so the bridge can extract the reply.
+     * <p>
+     * In async mode (app.whatsapp.async.enabled) a valid text message is queued and acknowledged with
+     * 202 and no reply; the reply is sent later through the bridge's /send. Invalid messages and a full
+     * queue still get an immediate 200 reply.
      */
     @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<ApiResponse<WhatsAppWebhookResponse>> handleIncoming(@RequestBody(required = false) WhatsAppWebhookPayload payload) {
@@ -69,6 +78,22 @@ public class WhatsAppWebhookController {
                     new WhatsAppWebhookResponse("Sorry, I couldn't understand that message.")));
         }
         log.info("Webhook receipt: incoming WhatsApp message");
+        if (inboundQueue.isEnabled()) {
+            WhatsAppWebhookService.IncomingText incoming = webhookService.extractIncoming(payload);
+            if (incoming.phoneNumber() != null && !incoming.phoneNumber().isBlank()
+                    && incoming.text() != null && !incoming.text().isBlank()) {
+                if (!webhookService.claimFirstDelivery(incoming)) {
+                    // Redelivery: the reply was (or will be) sent for the first delivery.
+                    return ResponseEntity.ok(ApiResponse.ok(new WhatsAppWebhookResponse(null)));
+                }
+                if (inboundQueue.submit(incoming)) {
+                    return ResponseEntity.accepted().body(ApiResponse.ok(new WhatsAppWebhookResponse(null)));
+                }
+                // Not processed: let the bridge's redelivery through.
+                webhookService.releaseDelivery(incoming);
+                return ResponseEntity.ok(ApiResponse.ok(new WhatsAppWebhookResponse(BUSY_MESSAGE)));
+            }
+        }
         String responseText = webhookService.processIncomingMessage(payload);
         return ResponseEntity.ok(ApiResponse.ok(new WhatsAppWebhookResponse(responseText)));
     }
@@ -0,0 +1,16 @@
+package com.assistant.core.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+
+public class ChatRequestDTO {
+
+    @NotBlank(message = "Message is required")
+    @Size(max = 4000, message = "Message must not exceed 4000 characters")
+    private String message;
+
+    public ChatRequestDTO() {}
+
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+}
@@ -0,0 +1,51 @@
+package com.assistant.core.dto;
+
+import java.time.Instant;
+
+/**
+ * A reminder to send: the due task joined with its owner's phone number (see
+ * TaskRepository#findDueReminders).
+ */
+public class DueReminderDTO {
+
+    private Long taskId;
+    private Long userId;
+    private String phoneNumber;
+    private String title;
+    private String description;
+    private Instant dueTime;
+    private Instant reminderTime;
+    private int attempts;
+
+    public DueReminderDTO() {}
+
+    public DueReminderDTO(Long taskId, Long userId, String phoneNumber, String title, String description,
+                          Instant dueTime, Instant reminderTime, int attempts) {
+        this.taskId = taskId;
+        this.userId = userId;
+        this.phoneNumber = phoneNumber;
+        this.title = title;
+        this.description = description;
+        this.dueTime = dueTime;
+        this.reminderTime = reminderTime;
+        this.attempts = attempts;
+    }
+
+    public Long getTaskId() { return taskId; }
+    public void setTaskId(Long taskId) { this.taskId = taskId; }
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+    public String getPhoneNumber() { return phoneNumber; }
+    public void setPhoneNumber(String phoneNumber) { this.phoneNumber = phoneNumber; }
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+    public String getDescription() { return description; }
+    public void setDescription(String description) { this.description = description; }
+    public Instant getDueTime() { return dueTime; }
+    public void setDueTime(Instant dueTime) { this.dueTime = dueTime; }
+    public Instant getReminderTime() { return reminderTime; }
+    public void setReminderTime(Instant reminderTime) { this.reminderTime = reminderTime; }
+    /** Failed delivery attempts so far. */
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+}
@@ -7,6 +7,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 public class WhatsAppWebhookMessage {
 
     private String from;  // WhatsApp ID (phone number, e.g. 919876543210)
+    private String remoteJid;  // chat JID the bridge received it on (e.g. ...@lid); replies go there
     private String id;
     private String timestamp;
     private String type;  // text, image, etc.
@@ -14,6 +15,8 @@ public class WhatsAppWebhookMessage {
 
     public String getFrom() { return from; }
     public void setFrom(String from) { this.from = from; }
+    public String getRemoteJid() { return remoteJid; }
+    public void setRemoteJid(String remoteJid) { this.remoteJid = remoteJid; }
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
     public String getTimestamp() { return timestamp; }
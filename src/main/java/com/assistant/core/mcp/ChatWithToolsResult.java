@@ -5,15 +5,39 @@ import java.util.Map;
 
 /**
  * Result of a single LLM call that supports both text reply and tool calls.
- * Used by the conversation loop: either content (final reply) or toolCalls (execute and continue).
+ * Used by the conversation loop: either content (final reply), toolCalls (execute and continue), or
+ * unavailable (no reply could be produced).
+ * responseId is the provider's response id (null when unknown), used to continue the conversation
+ * server-side via previous_response_id.
  */
 public sealed interface ChatWithToolsResult {
 
+    String responseId();
+
     /** Final text reply; no tool calls. */
-    record Content(String text) implements ChatWithToolsResult {}
+    record Content(String text, String responseId) implements ChatWithToolsResult {
+        public Content(String text) {
+            this(text, null);
+        }
+    }
 
     /** One or more tool calls to execute; no final text yet. */
-    record ToolCalls(List<SingleToolCall> calls) implements ChatWithToolsResult {}
+    record ToolCalls(List<SingleToolCall> calls, String responseId) implements ChatWithToolsResult {
+        public ToolCalls(List<SingleToolCall> calls) {
+            this(calls, null);
+        }
+    }
+
+    /**
+     * The call was rejected (concurrency limiter busy) or failed; text is a short apology for the
+     * user. Not a reply: the loop shows it but does not persist it.
+     */
+    record Unavailable(String text) implements ChatWithToolsResult {
+        @Override
+        public String responseId() {
+            return null;
+        }
+    }
 
     record SingleToolCall(String id, String name, Map<String, Object> arguments) {}
 }
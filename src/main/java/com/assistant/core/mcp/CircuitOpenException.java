@@ -0,0 +1,14 @@
+package com.assistant.core.mcp;
+
+/**
+ * Thrown by {@link LLMResiliencePolicy} instead of calling an endpoint whose circuit is open;
+ * callers answer with their degraded reply.
+ */
+public class CircuitOpenException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,14 @@
+package com.assistant.core.mcp;
+
+/**
+ * Thrown when a request continues a provider-side conversation (previous_response_id) that the
+ * provider no longer has, e.g. expired or deleted. Callers drop the stored state and resend full history.
+ */
+public class ConversationStateExpiredException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ConversationStateExpiredException(String message) {
+        super(message);
+    }
+}
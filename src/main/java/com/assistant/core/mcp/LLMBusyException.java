@@ -0,0 +1,14 @@
+package com.assistant.core.mcp;
+
+/**
+ * Thrown by {@link LLMConcurrencyLimiter} when no LLM call slot is available in time; callers
+ * answer with a "busy" reply instead of waiting on the provider.
+ */
+public class LLMBusyException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public LLMBusyException(String message) {
+        super(message);
+    }
+}
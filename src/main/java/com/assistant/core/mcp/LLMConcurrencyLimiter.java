@@ -0,0 +1,209 @@
+package com.assistant.core.mcp;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Adaptive bulkhead for outbound LLM calls (AIMD). The concurrency limit grows by one per
+ * "window" of successful calls made while the limit was in use, and is halved when the provider
+ * signals overload (429, 5xx, timeouts). Callers beyond the limit wait in a bounded FIFO queue for
+ * at most max-wait; a user already holding per-user-max permits waits behind other users, so one
+ * chatty user cannot take the whole limit. A full queue or an expired wait fails fast with
+ * {@link LLMBusyException} instead of holding the request thread.
+ */
+@Component
+public class LLMConcurrencyLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(LLMConcurrencyLimiter.class);
+
+    public enum Outcome {
+        /** Provider answered (including client errors, which say nothing about its load). */
+        SUCCESS,
+        /** Provider signalled overload: 429, 5xx or a timeout. */
+        DROPPED,
+        /** Call failed locally; does not change the limit. */
+        IGNORED
+    }
+
+    /** A held slot; release exactly once with the call's outcome. */
+    public final class Permit {
+        private final Long userId;
+        private final boolean limitInUse;
+        private boolean released;
+
+        private Permit(Long userId, boolean limitInUse) {
+            this.userId = userId;
+            this.limitInUse = limitInUse;
+        }
+
+        public void release(Outcome outcome) {
+            lock.lock();
+            try {
+                if (released) return;
+                released = true;
+                inFlight--;
+                if (userId != null) {
+                    perUser.computeIfPresent(userId, (k, v) -> v > 1 ? v - 1 : null);
+                }
+                adjustLimit(outcome, limitInUse);
+                grantWaiters();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class Waiter {
+        final Long userId;
+        final Condition granted;
+        boolean admitted;
+
+        Waiter(Long userId, Condition granted) {
+            this.userId = userId;
+            this.granted = granted;
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+    private final Map<Long, Integer> perUser = new HashMap<>();
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final int perUserMax;
+    private final long maxWaitNanos;
+    private final MeterRegistry meterRegistry;
+    private double limit;
+    private int inFlight;
+
+    public LLMConcurrencyLimiter(@Value("${app.llm.limiter.enabled:true}") boolean enabled,
+                                 @Value("${app.llm.limiter.initial-limit:8}") int initialLimit,
+                                 @Value("${app.llm.limiter.min-limit:2}") int minLimit,
+                                 @Value("${app.llm.limiter.max-limit:64}") int maxLimit,
+                                 @Value("${app.llm.limiter.max-queue:50}") int maxQueue,
+                                 @Value("${app.llm.limiter.per-user-max:2}") int perUserMax,
+                                 @Value("${app.llm.limiter.max-wait-ms:3000}") long maxWaitMs,
+                                 MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.maxQueue = maxQueue;
+        this.perUserMax = Math.max(1, perUserMax);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void registerGauges() {
+        Gauge.builder("llm.limiter.limit", this, l -> l.read(() -> l.limit)).register(meterRegistry);
+        Gauge.builder("llm.limiter.in_flight", this, l -> l.read(() -> l.inFlight)).register(meterRegistry);
+        Gauge.builder("llm.limiter.queued", this, l -> l.read(l.queue::size)).register(meterRegistry);
+    }
+
+    /**
+     * Takes a slot for one LLM call, waiting up to max-wait if none is free.
+     *
+     * @param userId user the call is for, or null for calls not tied to a user (no per-user cap)
+     * @throws LLMBusyException if the queue is full or no slot frees up in time
+     */
+    public Permit acquire(Long userId) {
+        lock.lock();
+        try {
+            // Queued waiters are granted as soon as they become admissible (see grantWaiters), so any
+            // still queued are held back by the limit or their per-user cap: admitting now skips no one eligible.
+            if (!enabled || canAdmit(userId)) {
+                return admit(userId);
+            }
+            if (queue.size() >= maxQueue) {
+                reject("queue_full");
+            }
+            Waiter waiter = new Waiter(userId, lock.newCondition());
+            queue.addLast(waiter);
+            long remaining = maxWaitNanos;
+            try {
+                while (!waiter.admitted && remaining > 0) {
+                    remaining = waiter.granted.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (waiter.admitted) {
+                return new Permit(userId, true);
+            }
+            queue.remove(waiter);
+            reject("timeout");
+            return null; // unreachable
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean canAdmit(Long userId) {
+        return inFlight < (int) limit && (userId == null || perUser.getOrDefault(userId, 0) < perUserMax);
+    }
+
+    private Permit admit(Long userId) {
+        inFlight++;
+        if (userId != null) {
+            perUser.merge(userId, 1, Integer::sum);
+        }
+        return new Permit(userId, inFlight * 2 >= (int) limit);
+    }
+
+    /** Admits queued callers in FIFO order, skipping users at their cap so others are not blocked behind them. */
+    private void grantWaiters() {
+        Iterator<Waiter> it = queue.iterator();
+        while (it.hasNext() && inFlight < (int) limit) {
+            Waiter w = it.next();
+            if (canAdmit(w.userId)) {
+                it.remove();
+                admit(w.userId);
+                w.admitted = true;
+                w.granted.signal();
+            }
+        }
+    }
+
+    private void adjustLimit(Outcome outcome, boolean limitInUse) {
+        double before = limit;
+        if (outcome == Outcome.DROPPED) {
+            limit = Math.max(minLimit, limit / 2);
+        } else if (outcome == Outcome.SUCCESS && limitInUse) {
+            // +1 per limit-sized window of successes, i.e. roughly +1 per round trip at full load.
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+        if ((int) before != (int) limit) {
+            log.info("LLM concurrency limit {} -> {} ({})", (int) before, (int) limit, outcome);
+        }
+    }
+
+    private void reject(String reason) {
+        meterRegistry.counter("llm.limiter.rejected", "reason", reason).increment();
+        throw new LLMBusyException("LLM concurrency limit reached (" + reason + ")");
+    }
+
+    private double read(DoubleSupplier supplier) {
+        lock.lock();
+        try {
+            return supplier.getAsDouble();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
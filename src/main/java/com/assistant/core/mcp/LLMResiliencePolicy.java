@@ -0,0 +1,339 @@
+package com.assistant.core.mcp;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Resilience policy for provider calls, per endpoint ("responses", "chat-completions"):
+ * <ul>
+ *   <li>retry of 429, 5xx and I/O errors with full-jitter exponential backoff, honoring Retry-After;</li>
+ *   <li>optional hedging: when a call is still running after the endpoint's recent p95 latency, a
+ *       second identical request is sent and the first successful answer wins (the other is cancelled);</li>
+ *   <li>a circuit breaker: after consecutive failed calls it opens and short-circuits with
+ *       {@link CircuitOpenException} so callers degrade at once; after open-duration one trial call
+ *       is let through (half-open) and its outcome closes or re-opens the circuit.</li>
+ * </ul>
+ * Settings are read per endpoint as app.llm.resilience.&lt;endpoint&gt;.&lt;key&gt;, falling back to
+ * app.llm.resilience.&lt;key&gt;.
+ */
+@Component
+public class LLMResiliencePolicy {
+
+    private static final Logger log = LoggerFactory.getLogger(LLMResiliencePolicy.class);
+    private static final int LATENCY_WINDOW = 256;
+    private static final int MIN_LATENCY_SAMPLES = 20;
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    /** Runs hedged attempts; interrupting a cancelled attempt aborts its HTTP exchange. */
+    private final ExecutorService hedgeExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public LLMResiliencePolicy(Environment environment, MeterRegistry meterRegistry) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        hedgeExecutor.shutdownNow();
+    }
+
+    /** Runs a side-effect-free call with retries, hedging (if enabled for the endpoint) and the circuit breaker. */
+    public <T> T execute(String endpoint, Supplier<T> call) {
+        return execute(endpoint, true, () -> true, call);
+    }
+
+    /**
+     * Runs a call under the policy.
+     *
+     * @param hedgeable whether a duplicate request may be sent (false for streamed calls with listeners)
+     * @param canRetry  checked after a failure; false once the call produced output that cannot be replayed
+     * @throws CircuitOpenException if the endpoint's circuit is open
+     */
+    public <T> T execute(String endpoint, boolean hedgeable, BooleanSupplier canRetry, Supplier<T> call) {
+        Endpoint ep = endpoint(endpoint);
+        boolean trial = ep.breaker.acquire();
+        try {
+            int attempt = 0;
+            while (true) {
+                long start = System.nanoTime();
+                try {
+                    T result = hedgeable && ep.settings.hedgeEnabled ? hedged(ep, call) : call.get();
+                    ep.recordLatency(System.nanoTime() - start);
+                    ep.breaker.onSuccess();
+                    return result;
+                } catch (RuntimeException e) {
+                    if (e instanceof LLMBusyException) {
+                        // Rejected locally before reaching the provider: says nothing about its health.
+                        ep.breaker.onIgnored();
+                        throw e;
+                    }
+                    if (!isTransient(e)) {
+                        // Client errors (bad request, expired conversation state): the provider is up.
+                        ep.breaker.onSuccess();
+                        throw e;
+                    }
+                    attempt++;
+                    long delayMs = attempt < ep.settings.maxAttempts && canRetry.getAsBoolean() ? retryDelayMs(ep, attempt, e) : -1;
+                    if (delayMs < 0) {
+                        ep.breaker.onFailure();
+                        throw e;
+                    }
+                    meterRegistry.counter("llm.resilience.retries", "endpoint", endpoint).increment();
+                    log.info("LLM {} call failed ({}); retry {} in {} ms", endpoint, e.getMessage(), attempt, delayMs);
+                    try {
+                        Thread.sleep(delayMs);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        ep.breaker.onFailure();
+                        throw e;
+                    }
+                }
+            }
+        } finally {
+            // Whatever escaped (an Error included), a half-open trial must not stay in flight forever.
+            if (trial) {
+                ep.breaker.release();
+            }
+        }
+    }
+
+    private <T> T hedged(Endpoint ep, Supplier<T> call) {
+        long hedgeAfterNanos = ep.hedgeDelayNanos();
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger started = new AtomicInteger(1);
+        AtomicInteger failed = new AtomicInteger();
+        Future<?> primary = hedgeExecutor.submit(() -> attempt(call, winner, started, failed));
+        Future<?> hedge = null;
+        try {
+            try {
+                return winner.get(hedgeAfterNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException slow) {
+                meterRegistry.counter("llm.resilience.hedges", "endpoint", ep.name).increment();
+                started.incrementAndGet();
+                hedge = hedgeExecutor.submit(() -> attempt(call, winner, started, failed));
+                return winner.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for LLM response", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : new IllegalStateException(e.getCause());
+        } finally {
+            primary.cancel(true);
+            if (hedge != null) hedge.cancel(true);
+        }
+    }
+
+    /**
+     * Completes winner with the first success, or with the error once every started attempt failed
+     * (a primary failing before the hedge is sent fails the call at once, leaving it to the retry loop).
+     */
+    private static <T> void attempt(Supplier<T> call, CompletableFuture<T> winner, AtomicInteger started, AtomicInteger failed) {
+        try {
+            winner.complete(call.get());
+        } catch (RuntimeException e) {
+            if (failed.incrementAndGet() >= started.get()) {
+                winner.completeExceptionally(e);
+            }
+        }
+    }
+
+    /** Provider-side trouble worth retrying and counting against the circuit. */
+    static boolean isTransient(Throwable e) {
+        if (e instanceof RestClientResponseException r) {
+            int status = r.getStatusCode().value();
+            return status == 408 || status == 429 || status >= 500;
+        }
+        return e instanceof ResourceAccessException;
+    }
+
+    /** Backoff before the given retry, or -1 if the server asks to wait longer than max-retry-after. */
+    private static long retryDelayMs(Endpoint ep, int attempt, RuntimeException e) {
+        Settings s = ep.settings;
+        if (e instanceof RestClientResponseException r && r.getResponseHeaders() != null) {
+            Long retryAfterMs = parseRetryAfterMs(r.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+            if (retryAfterMs != null) {
+                return retryAfterMs > s.maxRetryAfterMs ? -1 : retryAfterMs;
+            }
+        }
+        long cap = Math.min(s.maxBackoffMs, s.baseBackoffMs << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    /** Retry-After as delta-seconds or HTTP-date. */
+    static Long parseRetryAfterMs(String value) {
+        if (value == null || value.isBlank()) return null;
+        try {
+            return Math.max(0, (long) (Double.parseDouble(value.strip()) * 1000));
+        } catch (NumberFormatException ignored) { }
+        try {
+            ZonedDateTime at = ZonedDateTime.parse(value.strip(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, Duration.between(ZonedDateTime.now(at.getZone()), at).toMillis());
+        } catch (Exception ignored) {
+            return null;
+        }
+    }
+
+    private Endpoint endpoint(String name) {
+        return endpoints.computeIfAbsent(name, n -> {
+            Endpoint ep = new Endpoint(n, Settings.load(environment, n));
+            Gauge.builder("llm.circuit.state", ep.breaker, b -> b.state().ordinal())
+                    .description("0 = closed, 1 = half-open, 2 = open")
+                    .tag("endpoint", n)
+                    .register(meterRegistry);
+            return ep;
+        });
+    }
+
+    record Settings(int maxAttempts, long baseBackoffMs, long maxBackoffMs, long maxRetryAfterMs,
+                    boolean hedgeEnabled, long hedgeMinDelayMs, int failureThreshold, long openDurationMs) {
+
+        static Settings load(Environment env, String endpoint) {
+            return new Settings(
+                    get(env, endpoint, "max-attempts", Integer.class, 3),
+                    get(env, endpoint, "base-backoff-ms", Long.class, 200L),
+                    get(env, endpoint, "max-backoff-ms", Long.class, 4000L),
+                    get(env, endpoint, "max-retry-after-ms", Long.class, 10000L),
+                    get(env, endpoint, "hedge.enabled", Boolean.class, false),
+                    get(env, endpoint, "hedge.min-delay-ms", Long.class, 2000L),
+                    get(env, endpoint, "circuit.failure-threshold", Integer.class, 5),
+                    get(env, endpoint, "circuit.open-duration-ms", Long.class, 30000L));
+        }
+
+        private static <V> V get(Environment env, String endpoint, String key, Class<V> type, V defaultValue) {
+            V specific = env.getProperty("app.llm.resilience." + endpoint + "." + key, type);
+            return specific != null ? specific : env.getProperty("app.llm.resilience." + key, type, defaultValue);
+        }
+    }
+
+    private final class Endpoint {
+        final String name;
+        final Settings settings;
+        final CircuitBreaker breaker;
+        private final long[] latencies = new long[LATENCY_WINDOW];
+        private int samples;
+        private int next;
+
+        Endpoint(String name, Settings settings) {
+            this.name = name;
+            this.settings = settings;
+            this.breaker = new CircuitBreaker(name, settings);
+        }
+
+        synchronized void recordLatency(long nanos) {
+            latencies[next] = nanos;
+            next = (next + 1) % LATENCY_WINDOW;
+            samples = Math.min(samples + 1, LATENCY_WINDOW);
+        }
+
+        /** p95 of recent successful calls, never below hedge.min-delay-ms. */
+        synchronized long hedgeDelayNanos() {
+            long floor = TimeUnit.MILLISECONDS.toNanos(settings.hedgeMinDelayMs);
+            if (samples < MIN_LATENCY_SAMPLES) {
+                return Long.MAX_VALUE;
+            }
+            long[] sorted = Arrays.copyOf(latencies, samples);
+            Arrays.sort(sorted);
+            return Math.max(floor, sorted[(int) Math.ceil(samples * 0.95) - 1]);
+        }
+    }
+
+    private final class CircuitBreaker {
+
+        enum State { CLOSED, HALF_OPEN, OPEN }
+
+        private final String endpoint;
+        private final Settings settings;
+        private State state = State.CLOSED;
+        private int consecutiveFailures;
+        private long openedAt;
+        private boolean trialInFlight;
+
+        CircuitBreaker(String endpoint, Settings settings) {
+            this.endpoint = endpoint;
+            this.settings = settings;
+        }
+
+        synchronized State state() {
+            return state;
+        }
+
+        /** Admits a call or throws; returns true if the caller holds the half-open trial. */
+        synchronized boolean acquire() {
+            if (state == State.OPEN && System.nanoTime() - openedAt >= TimeUnit.MILLISECONDS.toNanos(settings.openDurationMs)) {
+                transition(State.HALF_OPEN);
+            }
+            if (state == State.OPEN || (state == State.HALF_OPEN && trialInFlight)) {
+                meterRegistry.counter("llm.circuit.short_circuited", "endpoint", endpoint).increment();
+                throw new CircuitOpenException("Circuit open for LLM endpoint " + endpoint);
+            }
+            if (state == State.HALF_OPEN) {
+                trialInFlight = true;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void onSuccess() {
+            consecutiveFailures = 0;
+            trialInFlight = false;
+            if (state != State.CLOSED) {
+                transition(State.CLOSED);
+            }
+        }
+
+        synchronized void onIgnored() {
+            trialInFlight = false;
+        }
+
+        /** Ends the caller's half-open trial; a no-op if its outcome was already recorded. */
+        synchronized void release() {
+            trialInFlight = false;
+        }
+
+        synchronized void onFailure() {
+            trialInFlight = false;
+            consecutiveFailures++;
+            if (state == State.HALF_OPEN || consecutiveFailures >= settings.failureThreshold) {
+                openedAt = System.nanoTime();
+                if (state != State.OPEN) {
+                    transition(State.OPEN);
+                }
+            }
+        }
+
+        private void transition(State to) {
+            log.warn("LLM circuit for {}: {} -> {}", endpoint, state, to);
+            state = to;
+            meterRegistry.counter("llm.circuit.transitions", "endpoint", endpoint, "to", to.name()).increment();
+        }
+    }
+}
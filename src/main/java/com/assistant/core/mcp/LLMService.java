@@ -5,24 +5,32 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClient;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
 
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Supplier;
 
 /**
  * OpenAI (or compatible) API integration using Spring Boot 3 RestClient.
  * Uses native tool/function calling when the API returns tool_calls; falls back to parsing
  * JSON from message content for older or non-standard responses.
- * Returns strictly structured tool name + parameters; only tools mapped by ToolRouter are invoked.
+ * Returns strictly structured tool name + parameters; only tools in the ToolRegistry are offered or invoked.
  */
 @Service
 public class LLMService {
@@ -33,27 +41,44 @@ public class LLMService {
     /** Returned when the LLM is unavailable or response cannot be parsed, so the loop exits with a message instead of re-calling tools. */
     private static final String UNAVAILABLE_MESSAGE = "Sorry, I had trouble processing that. Please try again.";
 
+    /** Returned when the concurrency limiter rejects a call, instead of queueing behind a saturated provider. */
+    private static final String BUSY_MESSAGE = "I'm handling a lot of messages right now. Please try again in a minute.";
+
+    /** Introduces a compaction summary of the older conversation in the input. */
+    private static final String SUMMARY_PREFIX = "Summary of the earlier conversation (older messages were compacted):\n";
+
+    /**
+     * Instructions shared by every user and turn. Must not contain per-user or time-dependent data:
+     * it is part of the cached prompt prefix (see buildChatWithToolsRequest).
+     */
+    private static final String STATIC_INSTRUCTIONS = """
+            Use the current time given in the last developer message to resolve relative times like 'tomorrow at 3pm', 'next Friday', 'in 2 hours'.
+            Always output dueTime and reminderTime as full ISO-8601 timestamps (e.g. 2025-02-24T15:00:00Z). Never use placeholders or incomplete values.
+            After receiving any tool result, respond to the user in natural language. Do not call the same tool again without a new explicit user request.""";
+
     private final RestClient restClient;
     private final AssistantProfileService assistantProfileService;
-    private final ToolRouter toolRouter;
+    private final ToolRegistry toolRegistry;
+    private final LLMUsageMetrics usageMetrics;
+    private final LLMConcurrencyLimiter concurrencyLimiter;
+    private final LLMResiliencePolicy resiliencePolicy;
     private final String baseUrl;
-    private final String apiKey;
 
     public LLMService(@Value("${app.llm.base-url:}") String baseUrl,
-                      @Value("${app.llm.api-key:}") String apiKey,
+                      @Qualifier("llmRestClient") RestClient restClient,
                       AssistantProfileService assistantProfileService,
-                      ToolRouter toolRouter) {
+                      ToolRegistry toolRegistry,
+                      LLMUsageMetrics usageMetrics,
+                      LLMConcurrencyLimiter concurrencyLimiter,
+                      LLMResiliencePolicy resiliencePolicy) {
         this.assistantProfileService = assistantProfileService;
-        this.toolRouter = toolRouter;
+        this.toolRegistry = toolRegistry;
+        this.usageMetrics = usageMetrics;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.resiliencePolicy = resiliencePolicy;
         this.baseUrl = baseUrl != null ? baseUrl.strip() : "";
-        this.apiKey = apiKey != null ? apiKey : "";
-        this.restClient = this.baseUrl.isBlank()
-                ? RestClient.create("http://placeholder")
-                : RestClient.builder()
-                        .baseUrl(this.baseUrl)
-                        .defaultHeader("Content-Type", MediaType.APPLICATION_JSON_VALUE)
-                        .defaultHeader("Authorization", "Bearer " + this.apiKey)
-                        .build();
+        // Pooled, timeout-bounded client shared with other LLM callers (see RestClientConfig).
+        this.restClient = restClient;
     }
 
     /**
@@ -81,7 +106,6 @@ public class LLMService {
         if (conversationHistory != null && !conversationHistory.isBlank()) {
             systemContext += "\n\n--- Conversation History ---\n" + conversationHistory;
         }
-        List<Map<String, Object>> tools = buildToolDefinitions();
         try {
             Map<String, Object> requestBody = new LinkedHashMap<>();
             requestBody.put("model", "gpt-5.1-codex-mini");
@@ -89,14 +113,14 @@ public class LLMService {
             requestBody.put("input", List.of(
                     Map.of("role", "user", "content", userMessage)
             ));
-            requestBody.put("tools", tools);
+            requestBody.put("tools", toolRegistry.toolDefinitionsJson());
             requestBody.put("tool_choice", "required");
 
-            String responseBody = restClient.post()
+            String responseBody = resiliencePolicy.execute("responses", () -> limited(userId, () -> restClient.post()
                     .uri("/v1/responses")
                     .body(requestBody)
                     .retrieve()
-                    .body(String.class);
+                    .body(String.class)));
 
             if (responseBody == null || responseBody.isBlank()) {
                 return placeholderResponse(userId);
@@ -124,50 +148,231 @@ public class LLMService {
      * Replaces the single-shot requestToolCall + generateNaturalResponse flow for the loop path.
      */
     public ChatWithToolsResult chatWithTools(Long userId, List<Map<String, Object>> messages) {
+        return chatWithTools(userId, messages, null);
+    }
+
+    /**
+     * Like {@link #chatWithTools(Long, List)}, but when previousResponseId is set the call continues
+     * that provider-side conversation: messages must then hold only the items the provider has not
+     * seen yet (new user message, tool results).
+     *
+     * @throws ConversationStateExpiredException if the provider no longer has previousResponseId
+     */
+    public ChatWithToolsResult chatWithTools(Long userId, List<Map<String, Object>> messages, String previousResponseId) {
         if (this.baseUrl.isBlank()) {
             log.warn("LLM base URL not configured; returning user-facing message so loop exits. baseUrl is blank.");
-            return new ChatWithToolsResult.Content(UNAVAILABLE_MESSAGE);
+            return new ChatWithToolsResult.Unavailable(UNAVAILABLE_MESSAGE);
         }
-        String systemContext = getSystemContextForUser(userId);
-        String currentTimeContext = "\n\n--- Current time (use this to resolve relative times like 'tomorrow at 3pm', 'next Friday', 'in 2 hours') ---\n"
-                + "Current date and time in ISO-8601 (UTC): " + Instant.now().atOffset(ZoneOffset.UTC)
-                + "\nAlways output dueTime and reminderTime as full ISO-8601 timestamps (e.g. 2025-02-24T15:00:00Z). Never use placeholders or incomplete values.";
-        systemContext += currentTimeContext;
-        systemContext += "\n\nAfter receiving any tool result, respond to the user in natural language. Do not call the same tool again without a new explicit user request.";
-
-        List<Map<String, Object>> input = buildInputForResponsesApi(messages);
-        List<Map<String, Object>> tools = buildToolDefinitions();
-        // Require tool use when the user just sent a message (no tool results in this turn yet)
-        boolean lastMessageIsUser = lastInputItemIsUserMessage(input);
-        String toolChoice = lastMessageIsUser ? "required" : "auto";
         try {
-            Map<String, Object> requestBody = new LinkedHashMap<>();
-            requestBody.put("model", "gpt-5.1-codex-mini");
-            requestBody.put("instructions", systemContext);
-            requestBody.put("input", input);
-            requestBody.put("tools", tools);
-            requestBody.put("tool_choice", toolChoice);
+            Map<String, Object> requestBody = buildChatWithToolsRequest(userId, messages, previousResponseId);
 
-            String responseBody = restClient.post()
+            String responseBody = resiliencePolicy.execute("responses", () -> limited(userId, () -> restClient.post()
                     .uri("/v1/responses")
                     .body(requestBody)
                     .retrieve()
-                    .body(String.class);
+                    .body(String.class)));
 
             if (responseBody == null || responseBody.isBlank()) {
                 log.warn("chatWithTools: empty API response body; returning user-facing message. responseBody is null or blank.");
-                return new ChatWithToolsResult.Content(UNAVAILABLE_MESSAGE);
+                return new ChatWithToolsResult.Unavailable(UNAVAILABLE_MESSAGE);
             }
             Map<String, Object> top = parseJsonToMap(responseBody);
             if (top == null) {
                 log.warn("chatWithTools: API response is not valid JSON; returning user-facing message. Raw response (truncated): {}", truncate(responseBody, 500));
-                return new ChatWithToolsResult.Content(UNAVAILABLE_MESSAGE);
+                return new ChatWithToolsResult.Unavailable(UNAVAILABLE_MESSAGE);
             }
+            usageMetrics.record("responses", top);
             return parseChatWithToolsOutput(top, userId, responseBody);
+        } catch (LLMBusyException e) {
+            log.warn("chatWithTools rejected by concurrency limiter for userId={}: {}", userId, e.getMessage());
+            return new ChatWithToolsResult.Unavailable(BUSY_MESSAGE);
+        } catch (RestClientResponseException e) {
+            if (previousResponseId != null && isPreviousResponseNotFound(e.getStatusCode().value(), e.getResponseBodyAsString())) {
+                throw new ConversationStateExpiredException("Previous response not found: " + previousResponseId);
+            }
+            log.warn("chatWithTools failed; returning user-facing message. Error: {}", e.getMessage());
+            return new ChatWithToolsResult.Unavailable(UNAVAILABLE_MESSAGE);
         } catch (Exception e) {
             log.warn("chatWithTools failed; returning user-facing message. Error: {}", e.getMessage());
-            return new ChatWithToolsResult.Content(UNAVAILABLE_MESSAGE);
+            return new ChatWithToolsResult.Unavailable(UNAVAILABLE_MESSAGE);
+        }
+    }
+
+    /**
+     * Streaming variant of {@link #chatWithTools(Long, List)}: requests /v1/responses with "stream": true
+     * and parses the SSE events incrementally. Final-answer text deltas and completed function calls are
+     * pushed to the listener as they arrive (so callers can start tools or forward tokens before the response ends);
+     * the aggregated result is returned once the stream closes, with the same semantics as the blocking call.
+     */
+    public ChatWithToolsResult chatWithToolsStreaming(Long userId, List<Map<String, Object>> messages,
+                                                      LLMStreamListener listener) {
+        return chatWithToolsStreaming(userId, messages, null, listener);
+    }
+
+    /**
+     * Streaming variant of {@link #chatWithTools(Long, List, String)}.
+     *
+     * @throws ConversationStateExpiredException if the provider no longer has previousResponseId
+     */
+    public ChatWithToolsResult chatWithToolsStreaming(Long userId, List<Map<String, Object>> messages,
+                                                      String previousResponseId, LLMStreamListener listener) {
+        if (this.baseUrl.isBlank()) {
+            log.warn("LLM base URL not configured; returning user-facing message so loop exits. baseUrl is blank.");
+            return new ChatWithToolsResult.Unavailable(UNAVAILABLE_MESSAGE);
+        }
+        ResponsesStreamParser parser = new ResponsesStreamParser(listener);
+        try {
+            Map<String, Object> requestBody = buildChatWithToolsRequest(userId, messages, previousResponseId);
+            requestBody.put("stream", true);
+
+            // Retried only while nothing was received; never hedged, the listener has side effects.
+            resiliencePolicy.execute("responses", false, () -> !parser.started(), () -> limited(userId, () -> restClient.post()
+                    .uri("/v1/responses")
+                    .accept(MediaType.TEXT_EVENT_STREAM)
+                    .body(requestBody)
+                    .exchange((request, response) -> {
+                        if (response.getStatusCode().isError()) {
+                            String errorBody = new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8);
+                            if (previousResponseId != null && isPreviousResponseNotFound(response.getStatusCode().value(), errorBody)) {
+                                throw new ConversationStateExpiredException("Previous response not found: " + previousResponseId);
+                            }
+                            throw new RestClientResponseException("HTTP " + response.getStatusCode().value() + ": " + truncate(errorBody, 500),
+                                    response.getStatusCode(), response.getStatusText(), response.getHeaders(),
+                                    errorBody.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+                        }
+                        parser.read(response.getBody());
+                        return null;
+                    })));
+        } catch (ConversationStateExpiredException e) {
+            throw e;
+        } catch (LLMBusyException e) {
+            log.warn("chatWithToolsStreaming rejected by concurrency limiter for userId={}: {}", userId, e.getMessage());
+            return new ChatWithToolsResult.Unavailable(BUSY_MESSAGE);
+        } catch (Exception e) {
+            log.warn("chatWithToolsStreaming failed; returning user-facing message. Error: {}", e.getMessage());
+            return parser.toolCalls().isEmpty()
+                    ? new ChatWithToolsResult.Unavailable(UNAVAILABLE_MESSAGE)
+                    : new ChatWithToolsResult.ToolCalls(List.copyOf(parser.toolCalls()));
         }
+        if (parser.error() != null) {
+            log.warn("chatWithToolsStreaming: stream reported an error: {}", parser.error());
+            if (parser.toolCalls().isEmpty()) {
+                // Any text received is a cut-off answer, not a reply.
+                return new ChatWithToolsResult.Unavailable(UNAVAILABLE_MESSAGE);
+            }
+        }
+        usageMetrics.record("responses", parser.completedResponse());
+        String responseId = responseId(parser.completedResponse());
+        if (!parser.toolCalls().isEmpty()) {
+            return new ChatWithToolsResult.ToolCalls(List.copyOf(parser.toolCalls()), responseId);
+        }
+        if (!parser.text().isBlank()) {
+            return new ChatWithToolsResult.Content(parser.text(), responseId);
+        }
+        if (parser.completedResponse() != null) {
+            return parseChatWithToolsOutput(parser.completedResponse(), userId, String.valueOf(parser.completedResponse()));
+        }
+        log.warn("chatWithToolsStreaming: stream ended without text or tool calls; returning user-facing message.");
+        return new ChatWithToolsResult.Unavailable(UNAVAILABLE_MESSAGE);
+    }
+
+    /**
+     * Request body for /v1/responses shared by the blocking and streaming tool loop calls.
+     * Laid out for provider-side prefix caching: tools (canonical key order) and the static
+     * instructions are byte-identical for every user and turn, the personality follows (stable per
+     * user), then history; the clock, rounded to the minute, is the last input item so it never
+     * invalidates the cached prefix. With previousResponseId the provider prepends the stored
+     * conversation and input carries only the new items.
+     */
+    private Map<String, Object> buildChatWithToolsRequest(Long userId, List<Map<String, Object>> messages,
+                                                          String previousResponseId) {
+        String instructions = STATIC_INSTRUCTIONS
+                + "\n\n--- Assistant personality ---\n" + getSystemContextForUser(userId);
+
+        List<Map<String, Object>> input = buildInputForResponsesApi(messages);
+        // Require tool use when the user just sent a message (no tool results in this turn yet)
+        boolean lastMessageIsUser = lastInputItemIsUserMessage(input);
+        String toolChoice = lastMessageIsUser ? "required" : "auto";
+        input.add(currentTimeItem());
+
+        Map<String, Object> requestBody = new LinkedHashMap<>();
+        requestBody.put("model", "gpt-5.1-codex-mini");
+        requestBody.put("tools", toolRegistry.toolDefinitionsJson());
+        requestBody.put("instructions", instructions);
+        requestBody.put("input", input);
+        requestBody.put("tool_choice", toolChoice);
+        // Routes requests sharing this user's prefix to the same cache shard.
+        requestBody.put("prompt_cache_key", "clario-user-" + userId);
+        if (previousResponseId != null) {
+            requestBody.put("previous_response_id", previousResponseId);
+        }
+        return requestBody;
+    }
+
+    /** Volatile tail item: current time truncated to the minute, so consecutive calls within a minute stay identical. */
+    private static Map<String, Object> currentTimeItem() {
+        String now = Instant.now().truncatedTo(ChronoUnit.MINUTES).atOffset(ZoneOffset.UTC).toString();
+        return Map.of("role", "developer", "content", "Current date and time in ISO-8601 (UTC): " + now);
+    }
+
+    /**
+     * Runs one provider call (one attempt, under {@link LLMResiliencePolicy}) inside a concurrency-limiter permit (held until the response, including
+     * a streamed body, is fully read) and reports overload signals back to the limiter.
+     *
+     * @throws LLMBusyException if no permit is available in time
+     */
+    private <T> T limited(Long userId, Supplier<T> call) {
+        LLMConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire(userId);
+        LLMConcurrencyLimiter.Outcome outcome = LLMConcurrencyLimiter.Outcome.IGNORED;
+        try {
+            T result = call.get();
+            outcome = LLMConcurrencyLimiter.Outcome.SUCCESS;
+            return result;
+        } catch (RestClientResponseException e) {
+            int status = e.getStatusCode().value();
+            outcome = status == 429 || status >= 500
+                    ? LLMConcurrencyLimiter.Outcome.DROPPED
+                    : LLMConcurrencyLimiter.Outcome.SUCCESS;
+            throw e;
+        } catch (ResourceAccessException e) {
+            // I/O errors and timeouts: treat as the provider being saturated, unless this attempt was
+            // cancelled by us (a hedge that lost the race), which says nothing about the provider.
+            outcome = isInterrupted(e)
+                    ? LLMConcurrencyLimiter.Outcome.IGNORED
+                    : LLMConcurrencyLimiter.Outcome.DROPPED;
+            throw e;
+        } finally {
+            permit.release(outcome);
+        }
+    }
+
+    /** Whether a failed attempt was aborted by interrupting its thread rather than by the provider. */
+    private static boolean isInterrupted(Throwable e) {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof InterruptedException || t instanceof InterruptedIOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Error the provider returns for an unknown or expired previous_response_id. */
+    private static boolean isPreviousResponseNotFound(int status, String body) {
+        if ((status != 400 && status != 404) || body == null || body.isBlank()) {
+            return false;
+        }
+        try {
+            return "previous_response_not_found".equals(OBJECT_MAPPER.readTree(body).path("error").path("code").asText(null));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static String responseId(Map<String, Object> response) {
+        return response != null && response.get("id") != null ? response.get("id").toString() : null;
     }
 
     private static boolean lastInputItemIsUserMessage(List<Map<String, Object>> input) {
@@ -186,7 +391,8 @@ public class LLMService {
      * Build input array for /v1/responses from our message list (user/assistant/tool).
      * Responses API expects: user/assistant messages with role+content; assistant tool turns as
      * input items type "function_call" (call_id, name, arguments); tool results as
-     * type "function_call_output" (call_id, output). API expects oldest-first order.
+     * type "function_call_output" (call_id, output). API expects oldest-first order. A compaction
+     * summary (system row, see ContextWindowBuilder) becomes a developer message in its place.
      */
     private List<Map<String, Object>> buildInputForResponsesApi(List<Map<String, Object>> messages) {
         List<Map<String, Object>> input = new ArrayList<>();
@@ -226,8 +432,10 @@ public class LLMService {
             } else if ("tool".equals(role) || "function".equals(role)) {
                 String toolCallId = m.get("tool_call_id") != null ? m.get("tool_call_id").toString() : m.get("name") != null ? m.get("name").toString() : "call";
                 input.add(Map.of("type", "function_call_output", "call_id", toolCallId, "output", contentStr));
+            } else if ("system".equals(role) && !contentStr.isBlank()) {
+                input.add(Map.of("role", "developer", "content", SUMMARY_PREFIX + contentStr));
             }
-            // skip system or unknown
+            // skip unknown
         }
         return input;
     }
@@ -237,7 +445,7 @@ public class LLMService {
         Object output = response.get("output");
         if (!(output instanceof List<?> outputList) || outputList.isEmpty()) {
             log.warn("parseChatWithToolsOutput: response.output missing, not a list, or empty. Raw output (truncated): {}", truncate(rawResponseBody, 500));
-            return new ChatWithToolsResult.Content(UNAVAILABLE_MESSAGE);
+            return new ChatWithToolsResult.Unavailable(UNAVAILABLE_MESSAGE);
         }
         List<ChatWithToolsResult.SingleToolCall> toolCalls = new ArrayList<>();
         String textContent = null;
@@ -274,13 +482,13 @@ public class LLMService {
             }
         }
         if (!toolCalls.isEmpty()) {
-            return new ChatWithToolsResult.ToolCalls(toolCalls);
+            return new ChatWithToolsResult.ToolCalls(toolCalls, responseId(response));
         }
         if (textContent != null && !textContent.isBlank()) {
-            return new ChatWithToolsResult.Content(textContent);
+            return new ChatWithToolsResult.Content(textContent, responseId(response));
         }
         log.warn("parseChatWithToolsOutput: no recognized tool_calls or text in output; returning user-facing message. response.output: {}", output);
-        return new ChatWithToolsResult.Content(UNAVAILABLE_MESSAGE);
+        return new ChatWithToolsResult.Unavailable(UNAVAILABLE_MESSAGE);
     }
 
     /** Extract plain text from message content (may be string or array of content parts, e.g. output_text). */
@@ -334,95 +542,6 @@ public class LLMService {
         return null;
     }
 
-    /** Build tools array for /v1/responses — flat format: { type, name, description, parameters }. */
-    private List<Map<String, Object>> buildToolDefinitions() {
-        List<Map<String, Object>> out = new ArrayList<>();
-        for (Tool t : toolRouter.listTools()) {
-            Map<String, Object> def = new LinkedHashMap<>();
-            def.put("type", "function");
-            def.put("name", t.name());
-            def.put("description", t.description());
-            def.put("parameters", toolParametersSchema(t.name()));
-            out.add(def);
-        }
-        return out;
-    }
-
-    /** JSON schema for each tool's parameters (userId injected by caller). */
-    private static Map<String, Object> toolParametersSchema(String toolName) {
-        return switch (toolName) {
-            case "create_task" -> Map.of(
-                    "type", "object",
-                    "properties", Map.of(
-                            "userId", Map.of("type", "number", "description", "User ID"),
-                            "title", Map.of("type", "string", "description", "Task title"),
-                            "description", Map.of("type", "string", "description", "Task description"),
-                            "dueTime", Map.of("type", "string", "description",
-                                    "Due date/time as full ISO-8601 only (e.g. 2025-02-24T15:00:00Z). Resolve relative phrases like 'tomorrow at 3pm' using the current time from context. Omit if not specified."),
-                            "reminderTime", Map.of("type", "string", "description",
-                                    "Reminder date/time as full ISO-8601 only (e.g. 2025-02-24T14:45:00Z). Resolve using current time from context. Omit if not specified.")
-                    ),
-                    "required", List.of("userId", "title")
-            );
-            case "list_tasks" -> Map.of(
-                    "type", "object",
-                    "properties", Map.of("userId", Map.of("type", "number", "description", "User ID")),
-                    "required", List.of("userId")
-            );
-            case "find_tasks" -> Map.of(
-                    "type", "object",
-                    "properties", Map.of(
-                            "userId", Map.of("type", "number", "description", "User ID"),
-                            "query", Map.of("type", "string", "description", "Normalized task reference (e.g. 'milk', 'call John')"),
-                            "maxResults", Map.of("type", "number", "description", "Max tasks to return (optional, default 10)")
-                    ),
-                    "required", List.of("userId", "query")
-            );
-            case "update_task_status" -> Map.of(
-                    "type", "object",
-                    "properties", Map.of(
-                            "userId", Map.of("type", "number", "description", "User ID"),
-                            "taskId", Map.of("type", "number", "description", "Task ID from find_tasks or disambiguation"),
-                            "status", Map.of("type", "string", "description", "PENDING, IN_PROGRESS, or DONE")
-                    ),
-                    "required", List.of("userId", "taskId", "status")
-            );
-            case "delete_task" -> Map.of(
-                    "type", "object",
-                    "properties", Map.of(
-                            "userId", Map.of("type", "number", "description", "User ID"),
-                            "taskId", Map.of("type", "number", "description", "Task ID from find_tasks or disambiguation")
-                    ),
-                    "required", List.of("userId", "taskId")
-            );
-            case "resolve_and_act_on_task" -> Map.of(
-                    "type", "object",
-                    "properties", Map.of(
-                            "userId", Map.of("type", "number", "description", "User ID"),
-                            "userDescription", Map.of("type", "string", "description", "Normalized task reference (e.g. 'milk', 'call John')"),
-                            "action", Map.of("type", "string", "description", "delete, mark_done, mark_pending, or mark_in_progress")
-                    ),
-                    "required", List.of("userId", "userDescription", "action")
-            );
-            case "add_person" -> Map.of(
-                    "type", "object",
-                    "properties", Map.of(
-                            "userId", Map.of("type", "number", "description", "User ID"),
-                            "name", Map.of("type", "string", "description", "Contact name"),
-                            "notes", Map.of("type", "string", "description", "Notes"),
-                            "importantDates", Map.of("type", "string", "description", "Important dates JSON string")
-                    ),
-                    "required", List.of("userId", "name")
-            );
-            case "retrieve_people" -> Map.of(
-                    "type", "object",
-                    "properties", Map.of("userId", Map.of("type", "number", "description", "User ID")),
-                    "required", List.of("userId")
-            );
-            default -> Map.of("type", "object", "properties", Map.of("userId", Map.of("type", "number", "description", "User ID")), "required", List.of("userId"));
-        };
-    }
-
     /** Extract choices[0].message from Chat Completions response. */
     private static Map<String, Object> extractMessage(Map<String, Object> response) {
         if (response == null) return null;
@@ -479,17 +598,18 @@ public class LLMService {
                     Map.of("role", "user", "content", toolContext)
             ));
 
-            String responseBody = restClient.post()
+            String responseBody = resiliencePolicy.execute("chat-completions", () -> limited(userId, () -> restClient.post()
                     .uri("/v1/chat/completions")
                     .body(requestBody)
                     .retrieve()
-                    .body(String.class);
+                    .body(String.class)));
 
             if (responseBody == null || responseBody.isBlank()) {
                 return fallbackFormat(toolName, toolResultJson);
             }
 
             Map<String, Object> top = parseJsonToMap(responseBody);
+            usageMetrics.record("chat-completions", top);
             Map<String, Object> message = extractMessage(top);
             if (message == null) {
                 return fallbackFormat(toolName, toolResultJson);
@@ -509,12 +629,13 @@ public class LLMService {
     /**
      * General-purpose LLM call: sends a system prompt + user message and returns the
      * assistant's text reply.  Used for tasks like conversation compaction where no
-     * tool calling is needed.
+     * tool calling is needed. Empty if the LLM is not configured, the call fails or the
+     * reply has no text.
      */
-    public String chat(String systemPrompt, String userMessage) {
+    public Optional<String> chat(String systemPrompt, String userMessage) {
         if (this.baseUrl.isBlank()) {
-            log.debug("LLM base URL not configured; returning user message as-is");
-            return userMessage;
+            log.debug("LLM base URL not configured; no chat reply");
+            return Optional.empty();
         }
         try {
             Map<String, Object> requestBody = new java.util.LinkedHashMap<>();
@@ -524,28 +645,29 @@ public class LLMService {
                     Map.of("role", "user", "content", userMessage)
             ));
 
-            String responseBody = restClient.post()
+            String responseBody = resiliencePolicy.execute("chat-completions", () -> limited(null, () -> restClient.post()
                     .uri("/v1/chat/completions")
                     .body(requestBody)
                     .retrieve()
-                    .body(String.class);
+                    .body(String.class)));
 
             if (responseBody == null || responseBody.isBlank()) {
-                return userMessage;
+                return Optional.empty();
             }
 
             Map<String, Object> top = parseJsonToMap(responseBody);
+            usageMetrics.record("chat-completions", top);
             Map<String, Object> message = extractMessage(top);
             if (message != null) {
                 Object content = message.get("content");
                 if (content != null && !content.toString().isBlank()) {
-                    return content.toString().strip();
+                    return Optional.of(content.toString().strip());
                 }
             }
-            return userMessage;
+            return Optional.empty();
         } catch (Exception e) {
-            log.warn("LLM chat call failed, returning input as fallback: {}", e.getMessage());
-            return userMessage;
+            log.warn("LLM chat call failed: {}", e.getMessage());
+            return Optional.empty();
         }
     }
 
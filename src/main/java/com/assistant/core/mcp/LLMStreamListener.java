@@ -0,0 +1,20 @@
+package com.assistant.core.mcp;
+
+/**
+ * Callback for incremental events of a streamed Responses API call (see
+ * {@link LLMService#chatWithToolsStreaming(Long, java.util.List, LLMStreamListener)}).
+ * Invoked on the thread reading the stream; implementations must not block for long.
+ */
+public interface LLMStreamListener {
+
+    /**
+     * A chunk of the final answer's text, in arrival order. Sent only when the response's text starts
+     * before any function call; text preceding a tool call is not reported.
+     */
+    default void onTextDelta(String delta) {
+    }
+
+    /** A function call whose arguments are complete; may be executed before the stream ends. */
+    default void onToolCall(ChatWithToolsResult.SingleToolCall call) {
+    }
+}
@@ -0,0 +1,52 @@
+package com.assistant.core.mcp;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Records token usage reported by the provider, including prompt-cache hits, so the effect of
+ * the cache-friendly request layout can be verified. Reads the "usage" block of both APIs:
+ * Responses (input_tokens, input_tokens_details.cached_tokens) and Chat Completions
+ * (prompt_tokens, prompt_tokens_details.cached_tokens).
+ */
+@Component
+public class LLMUsageMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(LLMUsageMetrics.class);
+
+    private final MeterRegistry meterRegistry;
+
+    public LLMUsageMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /** Records the usage block of a parsed response body; ignores responses without one. */
+    public void record(String endpoint, Map<String, Object> response) {
+        if (response == null || !(response.get("usage") instanceof Map<?, ?> usage)) {
+            return;
+        }
+        long input = firstNumber(usage, "input_tokens", "prompt_tokens");
+        long output = firstNumber(usage, "output_tokens", "completion_tokens");
+        long cached = 0;
+        Object details = usage.get("input_tokens_details") != null ? usage.get("input_tokens_details") : usage.get("prompt_tokens_details");
+        if (details instanceof Map<?, ?> d) {
+            cached = firstNumber(d, "cached_tokens");
+        }
+        meterRegistry.counter("llm.tokens.input", "endpoint", endpoint).increment(input);
+        meterRegistry.counter("llm.tokens.input.cached", "endpoint", endpoint).increment(cached);
+        meterRegistry.counter("llm.tokens.output", "endpoint", endpoint).increment(output);
+        meterRegistry.counter("llm.prompt_cache.requests", "endpoint", endpoint, "result", cached > 0 ? "hit" : "miss").increment();
+        log.debug("LLM usage endpoint={} input={} cached={} output={}", endpoint, input, cached, output);
+    }
+
+    private static long firstNumber(Map<?, ?> map, String... keys) {
+        for (String key : keys) {
+            if (map.get(key) instanceof Number n) return n.longValue();
+        }
+        return 0;
+    }
+}
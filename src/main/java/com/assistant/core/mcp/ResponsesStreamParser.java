@@ -0,0 +1,199 @@
+package com.assistant.core.mcp;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incremental parser for the Server-Sent Events stream of /v1/responses with "stream": true.
+ * Text deltas are forwarded as they arrive when the response is a final answer (its text started
+ * before any function_call item); a function call is reported as soon as its arguments are
+ * complete (function_call_arguments.done or output_item.done), not when the whole response ends.
+ * One instance per streamed request; not thread-safe.
+ */
+final class ResponsesStreamParser {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final LLMStreamListener listener;
+    private final StringBuilder text = new StringBuilder();
+    /** In-flight function calls keyed by output item id, in output order. */
+    private final Map<String, PendingCall> pendingCalls = new LinkedHashMap<>();
+    private final List<ChatWithToolsResult.SingleToolCall> toolCalls = new ArrayList<>();
+    private Map<String, Object> completedResponse;
+    private String error;
+    private int callIndex;
+    private boolean started;
+    /** Null until the first text delta; then whether no function call preceded it. */
+    private Boolean answer;
+
+    ResponsesStreamParser(LLMStreamListener listener) {
+        this.listener = listener != null ? listener : new LLMStreamListener() {};
+    }
+
+    /** Reads the SSE body until EOF, dispatching each "data:" event as it completes. */
+    void read(InputStream body) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        StringBuilder data = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                dispatch(data);
+                continue;
+            }
+            if (line.startsWith("data:")) {
+                if (!data.isEmpty()) data.append('\n');
+                data.append(line.length() > 5 && line.charAt(5) == ' ' ? line.substring(6) : line.substring(5));
+            }
+            // "event:", "id:" and ":" comment lines carry nothing we need; the type is inside data.
+        }
+        dispatch(data);
+    }
+
+    private void dispatch(StringBuilder data) {
+        if (data.isEmpty()) return;
+        String payload = data.toString();
+        data.setLength(0);
+        if ("[DONE]".equals(payload.strip())) return;
+        Map<String, Object> event;
+        try {
+            event = OBJECT_MAPPER.readValue(payload, new TypeReference<>() {});
+        } catch (Exception e) {
+            return;
+        }
+        accept(event);
+    }
+
+    @SuppressWarnings("unchecked")
+    void accept(Map<String, Object> event) {
+        started = true;
+        String type = event.get("type") != null ? event.get("type").toString() : "";
+        switch (type) {
+            case "response.output_text.delta" -> {
+                Object delta = event.get("delta");
+                if (delta != null && !delta.toString().isEmpty()) {
+                    text.append(delta);
+                    if (answer == null) {
+                        answer = pendingCalls.isEmpty();
+                    }
+                    if (answer) {
+                        listener.onTextDelta(delta.toString());
+                    }
+                }
+            }
+            case "response.output_item.added" -> {
+                if (event.get("item") instanceof Map<?, ?> item && "function_call".equals(item.get("type"))) {
+                    PendingCall call = new PendingCall();
+                    call.callId = stringOrNull(item.get("call_id"));
+                    call.name = stringOrNull(item.get("name"));
+                    pendingCalls.put(itemKey(item.get("id"), event.get("output_index")), call);
+                }
+            }
+            case "response.function_call_arguments.delta" -> {
+                PendingCall call = pendingCalls.get(itemKey(event.get("item_id"), event.get("output_index")));
+                if (call != null && event.get("delta") != null) {
+                    call.arguments.append(event.get("delta"));
+                }
+            }
+            case "response.function_call_arguments.done" -> {
+                PendingCall call = pendingCalls.get(itemKey(event.get("item_id"), event.get("output_index")));
+                if (call != null) {
+                    if (event.get("arguments") != null) {
+                        call.arguments.setLength(0);
+                        call.arguments.append(event.get("arguments"));
+                    }
+                    fire(call);
+                }
+            }
+            case "response.output_item.done" -> {
+                if (event.get("item") instanceof Map<?, ?> item && "function_call".equals(item.get("type"))) {
+                    String key = itemKey(item.get("id"), event.get("output_index"));
+                    PendingCall call = pendingCalls.computeIfAbsent(key, k -> new PendingCall());
+                    if (call.callId == null) call.callId = stringOrNull(item.get("call_id"));
+                    if (call.name == null) call.name = stringOrNull(item.get("name"));
+                    if (item.get("arguments") != null && !call.fired) {
+                        call.arguments.setLength(0);
+                        call.arguments.append(item.get("arguments"));
+                    }
+                    fire(call);
+                }
+            }
+            case "response.completed" -> {
+                if (event.get("response") instanceof Map<?, ?> response) {
+                    completedResponse = (Map<String, Object>) response;
+                }
+            }
+            case "response.failed", "response.incomplete", "error" -> error = describeError(event);
+            default -> { }
+        }
+    }
+
+    private void fire(PendingCall call) {
+        if (call.fired || call.name == null || call.name.isBlank()) return;
+        call.fired = true;
+        Map<String, Object> params = Map.of();
+        String args = call.arguments.toString();
+        if (!args.isBlank()) {
+            try {
+                params = OBJECT_MAPPER.readValue(args, new TypeReference<>() {});
+            } catch (Exception ignored) { }
+        }
+        String id = call.callId != null ? call.callId : "call_" + callIndex;
+        callIndex++;
+        ChatWithToolsResult.SingleToolCall single = new ChatWithToolsResult.SingleToolCall(id, call.name, params);
+        toolCalls.add(single);
+        listener.onToolCall(single);
+    }
+
+    /** True once any event was received; a failed request may only be retried before that. */
+    boolean started() {
+        return started;
+    }
+
+    String text() {
+        return text.toString().strip();
+    }
+
+    List<ChatWithToolsResult.SingleToolCall> toolCalls() {
+        return toolCalls;
+    }
+
+    /** The full response object from response.completed, or null if the stream ended without it. */
+    Map<String, Object> completedResponse() {
+        return completedResponse;
+    }
+
+    /** Error description from response.failed / error events, or null. */
+    String error() {
+        return error;
+    }
+
+    private static String itemKey(Object itemId, Object outputIndex) {
+        return itemId != null ? itemId.toString() : "#" + outputIndex;
+    }
+
+    private static String stringOrNull(Object o) {
+        return o != null ? o.toString() : null;
+    }
+
+    private static String describeError(Object event) {
+        String s = String.valueOf(event);
+        return s.length() <= 500 ? s : s.substring(0, 500) + "...";
+    }
+
+    private static final class PendingCall {
+        String callId;
+        String name;
+        final StringBuilder arguments = new StringBuilder();
+        boolean fired;
+    }
+}
@@ -4,6 +4,7 @@ import java.util.Map;
 
 /**
  * Interface for MCP (Model Context Protocol) tools that can be invoked by the LLM integration.
+ * Every tool bean is picked up by {@link ToolRegistry} at startup.
  */
 public interface Tool {
 
@@ -11,6 +12,41 @@ public interface Tool {
 
     String description();
 
+    /**
+     * JSON schema of the tool's parameters, sent to the model as the function definition
+     * (userId is always injected by the caller). Read once at startup by {@link ToolRegistry}.
+     */
+    Map<String, Object> parametersSchema();
+
+    /**
+     * Entity family the tool reads or writes (e.g. "tasks", "people"). Calls on different
+     * resources are independent and may run concurrently within one turn.
+     */
+    default String resource() {
+        return name();
+    }
+
+    /** True if the tool has no side effects; read-only calls never conflict with each other. */
+    default boolean readOnly() {
+        return false;
+    }
+
+    /**
+     * Key of the single entity a write touches (e.g. the task id), or null if it may touch any
+     * entity of its resource. Writes with different keys are independent.
+     */
+    default String entityKey(Map<String, Object> arguments) {
+        return null;
+    }
+
+    /**
+     * How the result is trimmed before it is sent to the model and stored, or null for the
+     * default string caps only (see {@link ToolResultShaper}).
+     */
+    default ToolResultShape resultShape() {
+        return null;
+    }
+
     /**
      * Execute the tool with the given arguments.
      *
@@ -0,0 +1,106 @@
+package com.assistant.core.mcp;
+
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable registry of all {@link Tool} beans, built once at startup.
+ * Holds the name lookup table (an immutable {@link Map#copyOf} table, open-addressed with no
+ * per-entry nodes) and the tools array for /v1/responses pre-serialized to UTF-8 JSON, so LLM
+ * calls embed the same bytes every time instead of rebuilding and re-serializing schemas.
+ */
+@Component
+public class ToolRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(ToolRegistry.class);
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Map<String, Tool> toolsByName;
+    private final List<Tool> tools;
+    private final RawValue toolDefinitionsJson;
+
+    public ToolRegistry(List<Tool> tools) {
+        Map<String, Tool> byName = new HashMap<>();
+        for (Tool tool : tools) {
+            Tool previous = byName.put(tool.name(), tool);
+            if (previous != null) {
+                throw new IllegalStateException("Duplicate tool name: " + tool.name());
+            }
+        }
+        this.toolsByName = Map.copyOf(byName);
+        List<Tool> sorted = new ArrayList<>(tools);
+        sorted.sort(Comparator.comparing(Tool::name));
+        this.tools = List.copyOf(sorted);
+        this.toolDefinitionsJson = serializeDefinitions(this.tools);
+        log.info("Tool registry initialized with {} tools: {}", this.tools.size(), toolsByName.keySet());
+    }
+
+    public Optional<Tool> find(String name) {
+        return name != null ? Optional.ofNullable(toolsByName.get(name)) : Optional.empty();
+    }
+
+    /** Registered tool names; the only names the router will invoke. */
+    public Set<String> names() {
+        return toolsByName.keySet();
+    }
+
+    /** Tools sorted by name. */
+    public List<Tool> tools() {
+        return tools;
+    }
+
+    /**
+     * The "tools" array for /v1/responses — flat format { type, name, description, parameters } —
+     * as pre-encoded JSON. Tools are sorted by name and schema keys canonically ordered
+     * ({@code Map.of} iteration order differs between JVMs), so the bytes are identical across
+     * nodes and restarts and stay inside the provider's cached prompt prefix.
+     */
+    public RawValue toolDefinitionsJson() {
+        return toolDefinitionsJson;
+    }
+
+    private static RawValue serializeDefinitions(List<Tool> tools) {
+        List<Map<String, Object>> definitions = new ArrayList<>();
+        for (Tool t : tools) {
+            Map<String, Object> def = new LinkedHashMap<>();
+            def.put("type", "function");
+            def.put("name", t.name());
+            def.put("description", t.description());
+            def.put("parameters", canonicalize(t.parametersSchema()));
+            definitions.add(def);
+        }
+        try {
+            // SerializedString caches its UTF-8 encoding, so writing it is a plain byte copy.
+            return new RawValue(new SerializedString(OBJECT_MAPPER.writeValueAsString(definitions)));
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not serialize tool definitions", e);
+        }
+    }
+
+    /** Recursively copies maps into key-sorted maps so JSON serialization order is stable. */
+    private static Object canonicalize(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<String, Object> sorted = new TreeMap<>();
+            map.forEach((k, v) -> sorted.put(String.valueOf(k), canonicalize(v)));
+            return sorted;
+        }
+        if (value instanceof List<?> list) {
+            return list.stream().map(ToolRegistry::canonicalize).toList();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,15 @@
+package com.assistant.core.mcp;
+
+import java.util.List;
+
+/**
+ * How {@link ToolResultShaper} trims a tool's result before it reaches the model: the list under
+ * listKey is cut to maxItems (with a cursor to the rest), its items are projected to fields (all
+ * fields if null) and long strings are cut to maxFieldChars.
+ */
+public record ToolResultShape(String listKey, List<String> fields, int maxItems, int maxFieldChars) {
+
+    public static ToolResultShape list(String listKey, int maxItems, int maxFieldChars, String... fields) {
+        return new ToolResultShape(listKey, fields.length > 0 ? List.of(fields) : null, maxItems, maxFieldChars);
+    }
+}
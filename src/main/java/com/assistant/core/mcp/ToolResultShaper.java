@@ -0,0 +1,165 @@
+package com.assistant.core.mcp;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Trims tool results before they enter the prompt and chat_messages. For a tool with a
+ * {@link ToolResultShape}, the result list is cut to its top items (starting at the call's offset
+ * argument) and a "more" entry tells the model which offset returns the rest; items are projected
+ * to the shape's fields and written as one "fields" header plus positional "rows" instead of
+ * repeating every key. Strings anywhere in a result are cut to max-field-chars, and rows are
+ * halved until the serialized result fits max-chars.
+ */
+@Component
+public class ToolResultShaper {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final boolean enabled;
+    private final int maxChars;
+    private final int maxFieldChars;
+    private final int maxItems;
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary resultChars;
+
+    public ToolResultShaper(@Value("${app.tools.result.enabled:true}") boolean enabled,
+                            @Value("${app.tools.result.max-chars:6000}") int maxChars,
+                            @Value("${app.tools.result.max-field-chars:300}") int maxFieldChars,
+                            @Value("${app.tools.result.max-items:25}") int maxItems,
+                            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxChars = Math.max(500, maxChars);
+        this.maxFieldChars = Math.max(20, maxFieldChars);
+        this.maxItems = Math.max(1, maxItems);
+        this.meterRegistry = meterRegistry;
+        this.resultChars = DistributionSummary.builder("tools.result.chars")
+                .description("Serialized size of shaped tool results")
+                .register(meterRegistry);
+    }
+
+    public Map<String, Object> shape(Tool tool, Map<String, Object> arguments, Map<String, Object> result) {
+        if (!enabled || result == null) {
+            return result;
+        }
+        ToolResultShape shape = tool.resultShape();
+        int fieldChars = shape != null && shape.maxFieldChars() > 0 ? shape.maxFieldChars() : maxFieldChars;
+        if (shape == null || !(result.get(shape.listKey()) instanceof List<?> items)) {
+            Map<String, Object> shaped = castMap(truncate(result, fieldChars));
+            record(tool, shaped, result);
+            return shaped;
+        }
+        int offset = Math.min(offset(arguments), items.size());
+        int shown = Math.min(shape.maxItems() > 0 ? shape.maxItems() : maxItems, items.size() - offset);
+        Map<String, Object> shaped = withItems(tool, shape, result, items, offset, shown, fieldChars);
+        while (shown > 1 && serializedLength(shaped) > maxChars) {
+            shown /= 2;
+            shaped = withItems(tool, shape, result, items, offset, shown, fieldChars);
+        }
+        record(tool, shaped, result);
+        return shaped;
+    }
+
+    private Map<String, Object> withItems(Tool tool, ToolResultShape shape, Map<String, Object> result,
+                                          List<?> items, int offset, int shown, int fieldChars) {
+        Map<String, Object> shaped = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> e : result.entrySet()) {
+            if (!e.getKey().equals(shape.listKey())) {
+                shaped.put(e.getKey(), truncate(e.getValue(), fieldChars));
+            }
+        }
+        List<?> page = items.subList(offset, offset + shown);
+        List<String> fields = shape.fields() != null ? shape.fields() : fieldsOf(page);
+        List<List<Object>> rows = new ArrayList<>(page.size());
+        for (Object item : page) {
+            List<Object> row = new ArrayList<>(fields.size());
+            for (String field : fields) {
+                row.add(item instanceof Map<?, ?> m ? truncate(m.get(field), fieldChars) : null);
+            }
+            rows.add(row);
+        }
+        Map<String, Object> table = new LinkedHashMap<>();
+        table.put("fields", fields);
+        table.put("rows", rows);
+        shaped.put(shape.listKey(), table);
+        if (offset > 0) {
+            shaped.put("offset", offset);
+        }
+        int remaining = items.size() - offset - shown;
+        if (remaining > 0) {
+            int next = offset + shown;
+            shaped.put("more", Map.of("remaining", remaining, "nextOffset", next,
+                    "hint", "Call " + tool.name() + " with offset=" + next + " only if the user needs the rest."));
+        }
+        return shaped;
+    }
+
+    private static List<String> fieldsOf(List<?> items) {
+        Set<String> fields = new LinkedHashSet<>();
+        for (Object item : items) {
+            if (item instanceof Map<?, ?> m) {
+                m.keySet().forEach(k -> fields.add(String.valueOf(k)));
+            }
+        }
+        return List.copyOf(fields);
+    }
+
+    private static Object truncate(Object value, int maxLength) {
+        if (value instanceof String s && s.length() > maxLength) {
+            return s.substring(0, maxLength) + "…(+" + (s.length() - maxLength) + " chars)";
+        }
+        if (value instanceof Map<?, ?> map) {
+            Map<String, Object> out = new LinkedHashMap<>();
+            map.forEach((k, v) -> out.put(String.valueOf(k), truncate(v, maxLength)));
+            return out;
+        }
+        if (value instanceof List<?> list) {
+            return list.stream().map(v -> truncate(v, maxLength)).toList();
+        }
+        return value;
+    }
+
+    private static int offset(Map<String, Object> arguments) {
+        Object v = arguments != null ? arguments.get("offset") : null;
+        if (v instanceof Number n) return Math.max(0, n.intValue());
+        if (v instanceof String s && !s.isBlank()) {
+            try {
+                return Math.max(0, Integer.parseInt(s.trim()));
+            } catch (NumberFormatException ignored) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    private void record(Tool tool, Map<String, Object> shaped, Map<String, Object> raw) {
+        resultChars.record(serializedLength(shaped));
+        if (!shaped.equals(raw)) {
+            meterRegistry.counter("tools.result.shaped", "tool", tool.name()).increment();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> castMap(Object value) {
+        return (Map<String, Object>) value;
+    }
+
+    private static int serializedLength(Map<String, Object> value) {
+        try {
+            return JSON.writeValueAsString(value).length();
+        } catch (JsonProcessingException e) {
+            return 0;
+        }
+    }
+}
@@ -18,38 +18,49 @@ public class ToolRouter {
 
     private static final Logger log = LoggerFactory.getLogger(ToolRouter.class);
 
-    /** Allowed tool names; only these can be invoked from LLM output. */
-    private static final Set<String> ALLOWED_TOOLS = Set.of(
-            "create_task", "list_tasks", "find_tasks", "update_task_status", "delete_task", "resolve_and_act_on_task",
-            "add_person", "retrieve_people"
-    );
+    private final ToolRegistry toolRegistry;
+    private final ToolResultShaper resultShaper;
 
-    private final List<Tool> tools;
-
-    public ToolRouter(List<Tool> tools) {
-        this.tools = tools;
+    public ToolRouter(ToolRegistry toolRegistry, ToolResultShaper resultShaper) {
+        this.toolRegistry = toolRegistry;
+        this.resultShaper = resultShaper;
     }
 
     public Optional<Tool> findTool(String name) {
-        if (name == null || !ALLOWED_TOOLS.contains(name)) {
-            return Optional.empty();
-        }
-        return tools.stream()
-                .filter(t -> t.name().equalsIgnoreCase(name))
-                .findFirst();
+        return toolRegistry.find(name);
+    }
+
+    /** Allowed tool names (the registered tools); only these can be invoked from LLM output. */
+    public Set<String> allowedTools() {
+        return toolRegistry.names();
     }
 
     public List<Tool> listTools() {
-        return List.copyOf(tools);
+        return toolRegistry.tools();
     }
 
     /**
      * Invoke a tool by name with the given parameters. Only allowed tool names are accepted.
+     * The result is shaped for the model (see {@link ToolResultShaper}).
      */
     public Map<String, Object> invoke(String toolName, Map<String, Object> arguments) {
-        Tool tool = findTool(toolName)
+        Tool tool = resolve(toolName);
+        Map<String, Object> args = arguments != null ? arguments : Map.of();
+        return resultShaper.shape(tool, args, execute(tool, args));
+    }
+
+    /** Like {@link #invoke} but returns the tool's full result, for callers that render it locally. */
+    public Map<String, Object> invokeRaw(String toolName, Map<String, Object> arguments) {
+        return execute(resolve(toolName), arguments != null ? arguments : Map.of());
+    }
+
+    private Tool resolve(String toolName) {
+        return findTool(toolName)
                 .orElseThrow(() -> new IllegalArgumentException("Unknown or disallowed tool: " + toolName));
-        log.debug("Invoking tool: {}", toolName);
-        return tool.execute(arguments != null ? arguments : Map.of());
+    }
+
+    private static Map<String, Object> execute(Tool tool, Map<String, Object> arguments) {
+        log.debug("Invoking tool: {}", tool.name());
+        return tool.execute(arguments);
     }
 }
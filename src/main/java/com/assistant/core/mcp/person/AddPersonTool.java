@@ -7,6 +7,7 @@ import com.assistant.core.service.PeopleService;
 import org.springframework.stereotype.Component;
 
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -32,6 +33,31 @@ public class AddPersonTool implements Tool {
                 + "Parameters: userId (required), name (required), notes (optional), importantDates (optional, JSON string for dates like birthdays).";
     }
 
+    @Override
+    public Map<String, Object> parametersSchema() {
+        return Map.of(
+                "type", "object",
+                "properties", Map.of(
+                        "userId", Map.of("type", "number", "description", "User ID"),
+                        "name", Map.of("type", "string", "description", "Contact name"),
+                        "notes", Map.of("type", "string", "description", "Notes"),
+                        "importantDates", Map.of("type", "string", "description", "Important dates JSON string")
+                ),
+                "required", List.of("userId", "name")
+        );
+    }
+
+    @Override
+    public String resource() {
+        return "people";
+    }
+
+    @Override
+    public String entityKey(Map<String, Object> arguments) {
+        Object name = arguments.get("name");
+        return name != null ? "new:" + name.toString().strip().toLowerCase() : null;
+    }
+
     @Override
     public Map<String, Object> execute(Map<String, Object> arguments) {
         Long userId = getUserId(arguments);
@@ -2,6 +2,7 @@ package com.assistant.core.mcp.person;
 
 import com.assistant.core.dto.PersonResponseDTO;
 import com.assistant.core.mcp.Tool;
+import com.assistant.core.mcp.ToolResultShape;
 import com.assistant.core.service.PeopleService;
 import org.springframework.stereotype.Component;
 
@@ -33,6 +34,34 @@ public class RetrievePeopleTool implements Tool {
                 + "Returns all saved people with name, notes, and important dates. Parameters: userId (required).";
     }
 
+    @Override
+    public Map<String, Object> parametersSchema() {
+        return Map.of(
+                "type", "object",
+                "properties", Map.of(
+                        "userId", Map.of("type", "number", "description", "User ID"),
+                        "offset", Map.of("type", "number", "description", "Skip this many people (optional; use nextOffset from a previous result to see more)")
+                ),
+                "required", List.of("userId")
+        );
+    }
+
+    @Override
+    public String resource() {
+        return "people";
+    }
+
+    @Override
+    public boolean readOnly() {
+        return true;
+    }
+
+    /** Offset is applied by the router when shaping; execute always returns the full list. */
+    @Override
+    public ToolResultShape resultShape() {
+        return ToolResultShape.list("people", 0, 0, "id", "name", "notes", "importantDates");
+    }
+
     @Override
     public Map<String, Object> execute(Map<String, Object> arguments) {
         Long userId = getUserId(arguments);
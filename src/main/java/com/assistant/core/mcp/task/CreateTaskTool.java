@@ -13,6 +13,7 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeParseException;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -40,6 +41,35 @@ public class CreateTaskTool implements Tool {
                 + "Creates a new task. Parameters: userId (required), title (required), description (optional), dueTime (full ISO-8601 only, e.g. 2025-02-24T15:00:00Z — resolve 'tomorrow at 3pm' using current time from context; omit if not specified), reminderTime (full ISO-8601 only; omit if not specified).";
     }
 
+    @Override
+    public Map<String, Object> parametersSchema() {
+        return Map.of(
+                "type", "object",
+                "properties", Map.of(
+                        "userId", Map.of("type", "number", "description", "User ID"),
+                        "title", Map.of("type", "string", "description", "Task title"),
+                        "description", Map.of("type", "string", "description", "Task description"),
+                        "dueTime", Map.of("type", "string", "description",
+                                "Due date/time as full ISO-8601 only (e.g. 2025-02-24T15:00:00Z). Resolve relative phrases like 'tomorrow at 3pm' using the current time from context. Omit if not specified."),
+                        "reminderTime", Map.of("type", "string", "description",
+                                "Reminder date/time as full ISO-8601 only (e.g. 2025-02-24T14:45:00Z). Resolve using current time from context. Omit if not specified.")
+                ),
+                "required", List.of("userId", "title")
+        );
+    }
+
+    @Override
+    public String resource() {
+        return "tasks";
+    }
+
+    @Override
+    public String entityKey(Map<String, Object> arguments) {
+        // A create only touches the task it makes; creates with different titles are independent.
+        Object title = arguments.get("title");
+        return title != null ? "new:" + title.toString().strip().toLowerCase() : null;
+    }
+
     @Override
     public Map<String, Object> execute(Map<String, Object> arguments) {
         try {
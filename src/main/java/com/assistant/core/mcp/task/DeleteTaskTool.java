@@ -6,6 +6,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -36,6 +37,28 @@ public class DeleteTaskTool implements Tool {
                 + "Parameters: userId (required), taskId (required).";
     }
 
+    @Override
+    public Map<String, Object> parametersSchema() {
+        return Map.of(
+                "type", "object",
+                "properties", Map.of(
+                        "userId", Map.of("type", "number", "description", "User ID"),
+                        "taskId", Map.of("type", "number", "description", "Task ID from find_tasks or disambiguation")
+                ),
+                "required", List.of("userId", "taskId")
+        );
+    }
+
+    @Override
+    public String resource() {
+        return "tasks";
+    }
+
+    @Override
+    public String entityKey(Map<String, Object> arguments) {
+        return arguments.get("taskId") != null ? arguments.get("taskId").toString() : null;
+    }
+
     @Override
     public Map<String, Object> execute(Map<String, Object> arguments) {
         Long userId = getUserId(arguments);
@@ -2,6 +2,7 @@ package com.assistant.core.mcp.task;
 
 import com.assistant.core.dto.TaskResponseDTO;
 import com.assistant.core.mcp.Tool;
+import com.assistant.core.mcp.ToolResultShape;
 import com.assistant.core.service.TaskService;
 import org.springframework.stereotype.Component;
 
@@ -38,6 +39,35 @@ public class FindTasksTool implements Tool {
                 + "Parameters: userId (required), query (required, normalized task reference).";
     }
 
+    @Override
+    public Map<String, Object> parametersSchema() {
+        return Map.of(
+                "type", "object",
+                "properties", Map.of(
+                        "userId", Map.of("type", "number", "description", "User ID"),
+                        "query", Map.of("type", "string", "description", "Normalized task reference (e.g. 'milk', 'call John')"),
+                        "maxResults", Map.of("type", "number", "description", "Max tasks to return (optional, default 10)"),
+                        "offset", Map.of("type", "number", "description", "Skip this many matches (optional; use nextOffset from a previous result to see more)")
+                ),
+                "required", List.of("userId", "query")
+        );
+    }
+
+    @Override
+    public String resource() {
+        return "tasks";
+    }
+
+    @Override
+    public boolean readOnly() {
+        return true;
+    }
+
+    @Override
+    public ToolResultShape resultShape() {
+        return ToolResultShape.list("tasks", 0, 0, "id", "title", "description", "dueTime", "reminderTime", "status");
+    }
+
     @Override
     public Map<String, Object> execute(Map<String, Object> arguments) {
         Long userId = getUserId(arguments);
@@ -2,6 +2,7 @@ package com.assistant.core.mcp.task;
 
 import com.assistant.core.dto.TaskResponseDTO;
 import com.assistant.core.mcp.Tool;
+import com.assistant.core.mcp.ToolResultShape;
 import com.assistant.core.service.TaskService;
 import org.springframework.stereotype.Component;
 
@@ -33,6 +34,34 @@ public class ListTasksTool implements Tool {
                 + "Returns the user's active tasks (pending and in progress). You must use this result to answer in natural language and must not call list_tasks again in the same turn unless the user explicitly asks to refresh or list again. Parameters: userId (required).";
     }
 
+    @Override
+    public Map<String, Object> parametersSchema() {
+        return Map.of(
+                "type", "object",
+                "properties", Map.of(
+                        "userId", Map.of("type", "number", "description", "User ID"),
+                        "offset", Map.of("type", "number", "description", "Skip this many tasks (optional; use nextOffset from a previous result to see more)")
+                ),
+                "required", List.of("userId")
+        );
+    }
+
+    @Override
+    public String resource() {
+        return "tasks";
+    }
+
+    @Override
+    public boolean readOnly() {
+        return true;
+    }
+
+    /** Offset is applied by the router when shaping; execute always returns the full list. */
+    @Override
+    public ToolResultShape resultShape() {
+        return ToolResultShape.list("tasks", 0, 0, "id", "title", "description", "dueTime", "reminderTime", "status");
+    }
+
     @Override
     public Map<String, Object> execute(Map<String, Object> arguments) {
         Long userId = getUserId(arguments);
@@ -2,6 +2,7 @@ package com.assistant.core.mcp.task;
 
 import com.assistant.core.dto.TaskResponseDTO;
 import com.assistant.core.mcp.Tool;
+import com.assistant.core.mcp.ToolResultShape;
 import com.assistant.core.service.TaskService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,6 +46,29 @@ public class ResolveAndActOnTaskTool implements Tool {
                 + "Parameters: userId (required), userDescription (required), action (required).";
     }
 
+    @Override
+    public Map<String, Object> parametersSchema() {
+        return Map.of(
+                "type", "object",
+                "properties", Map.of(
+                        "userId", Map.of("type", "number", "description", "User ID"),
+                        "userDescription", Map.of("type", "string", "description", "Normalized task reference (e.g. 'milk', 'call John')"),
+                        "action", Map.of("type", "string", "description", "delete, mark_done, mark_pending, or mark_in_progress")
+                ),
+                "required", List.of("userId", "userDescription", "action")
+        );
+    }
+
+    @Override
+    public String resource() {
+        return "tasks";
+    }
+
+    @Override
+    public ToolResultShape resultShape() {
+        return ToolResultShape.list("candidates", 0, 0, "id", "title", "description", "dueTime", "status");
+    }
+
     @Override
     public Map<String, Object> execute(Map<String, Object> arguments) {
         Long userId = getUserId(arguments);
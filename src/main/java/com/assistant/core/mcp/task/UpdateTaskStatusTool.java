@@ -7,6 +7,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -37,6 +38,29 @@ public class UpdateTaskStatusTool implements Tool {
                 + "Parameters: userId (required), taskId (required), status (required: PENDING | IN_PROGRESS | DONE).";
     }
 
+    @Override
+    public Map<String, Object> parametersSchema() {
+        return Map.of(
+                "type", "object",
+                "properties", Map.of(
+                        "userId", Map.of("type", "number", "description", "User ID"),
+                        "taskId", Map.of("type", "number", "description", "Task ID from find_tasks or disambiguation"),
+                        "status", Map.of("type", "string", "description", "PENDING, IN_PROGRESS, or DONE")
+                ),
+                "required", List.of("userId", "taskId", "status")
+        );
+    }
+
+    @Override
+    public String resource() {
+        return "tasks";
+    }
+
+    @Override
+    public String entityKey(Map<String, Object> arguments) {
+        return arguments.get("taskId") != null ? arguments.get("taskId").toString() : null;
+    }
+
     @Override
     public Map<String, Object> execute(Map<String, Object> arguments) {
         Long userId = getUserId(arguments);
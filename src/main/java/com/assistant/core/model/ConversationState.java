@@ -0,0 +1,49 @@
+package com.assistant.core.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+
+/** Per-user pointer to the provider-side conversation (Responses API previous_response_id). */
+@Entity
+@Table(name = "conversation_state")
+public class ConversationState {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "response_id", nullable = false)
+    private String responseId;
+
+    @Column(name = "last_message_id", nullable = false)
+    private Long lastMessageId;
+
+    @Column(name = "turn_count", nullable = false)
+    private int turnCount;
+
+    @Column(name = "created_at", insertable = false, updatable = false)
+    private Instant createdAt;
+
+    /** Set by the application (not ON UPDATE) so the TTL check does not need a reload after save. */
+    @Column(name = "modified_at")
+    private Instant modifiedAt;
+
+    public ConversationState() {}
+
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+    public String getResponseId() { return responseId; }
+    public void setResponseId(String responseId) { this.responseId = responseId; }
+    public Long getLastMessageId() { return lastMessageId; }
+    public void setLastMessageId(Long lastMessageId) { this.lastMessageId = lastMessageId; }
+    public int getTurnCount() { return turnCount; }
+    public void setTurnCount(int turnCount) { this.turnCount = turnCount; }
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+    public Instant getModifiedAt() { return modifiedAt; }
+    public void setModifiedAt(Instant modifiedAt) { this.modifiedAt = modifiedAt; }
+}
@@ -0,0 +1,33 @@
+package com.assistant.core.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+
+/** An inbound WhatsApp message id already handled, with the reply it got (for redeliveries). */
+@Entity
+@Table(name = "processed_messages")
+public class ProcessedMessage {
+
+    @Id
+    @Column(name = "message_id", length = 128)
+    private String messageId;
+
+    @Column(name = "reply", columnDefinition = "TEXT")
+    private String reply;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    public ProcessedMessage() {}
+
+    public String getMessageId() { return messageId; }
+    public void setMessageId(String messageId) { this.messageId = messageId; }
+    public String getReply() { return reply; }
+    public void setReply(String reply) { this.reply = reply; }
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+}
@@ -32,6 +32,13 @@ public class Task {
     @Column(name = "reminder_time")
     private Instant reminderTime;
 
+    /** Reminder columns are set only by the reminder sweep's bulk updates, so saving a stale entity never clears them. */
+    @Column(name = "reminder_sent_at", insertable = false, updatable = false)
+    private Instant reminderSentAt;
+
+    @Column(name = "reminder_attempts", insertable = false, updatable = false)
+    private int reminderAttempts;
+
     @Column(name = "status", nullable = false, length = 20)
     private String status; // PENDING, IN_PROGRESS, DONE
 
@@ -71,6 +78,10 @@ public class Task {
     public void setDueTime(Instant dueTime) { this.dueTime = dueTime; }
     public Instant getReminderTime() { return reminderTime; }
     public void setReminderTime(Instant reminderTime) { this.reminderTime = reminderTime; }
+    public Instant getReminderSentAt() { return reminderSentAt; }
+    public void setReminderSentAt(Instant reminderSentAt) { this.reminderSentAt = reminderSentAt; }
+    public int getReminderAttempts() { return reminderAttempts; }
+    public void setReminderAttempts(int reminderAttempts) { this.reminderAttempts = reminderAttempts; }
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
     public boolean isDeleted() { return deleted; }
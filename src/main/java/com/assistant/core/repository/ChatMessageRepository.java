@@ -8,20 +8,26 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long>, JpaSpecificationExecutor<ChatMessage> {
 
-    @Query("SELECT m FROM ChatMessage m WHERE m.userId = :userId ORDER BY m.createdAt DESC")
+    /** Newest first; id breaks created_at ties (rows of one multi-row insert share a timestamp). */
+    @Query("SELECT m FROM ChatMessage m WHERE m.userId = :userId ORDER BY m.createdAt DESC, m.id DESC")
     List<ChatMessage> findRecentByUserId(@Param("userId") Long userId, Pageable pageable);
 
     default List<ChatMessage> findRecentByUserId(Long userId, int limit) {
         return findRecentByUserId(userId, Pageable.ofSize(limit).first());
     }
 
-    @Query("SELECT m FROM ChatMessage m WHERE m.userId = :userId AND m.visibility = :visibility ORDER BY m.createdAt DESC")
+    @Query("SELECT m FROM ChatMessage m WHERE m.userId = :userId AND m.id > :afterId ORDER BY m.id ASC")
+    List<ChatMessage> findByUserIdAfterId(@Param("userId") Long userId, @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT m FROM ChatMessage m WHERE m.userId = :userId AND m.visibility = :visibility ORDER BY m.createdAt DESC, m.id DESC")
     List<ChatMessage> findUserFacingByUserId(@Param("userId") Long userId, @Param("visibility") String visibility, Pageable pageable);
 
     default List<ChatMessage> findUserFacingByUserId(Long userId, int limit) {
@@ -32,6 +38,32 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long>,
     @Query("DELETE FROM ChatMessage m WHERE m.userId = :userId")
     void deleteAllByUserId(@Param("userId") Long userId);
 
+    Optional<ChatMessage> findFirstByUserIdAndRoleOrderByIdDesc(Long userId, String role);
+
+    /** Size of a user's stored history, for compaction thresholds. */
+    interface HistoryStats {
+        long getMessageCount();
+        long getTotalChars();
+    }
+
+    @Query("SELECT COUNT(m) AS messageCount, COALESCE(SUM(LENGTH(m.content)), 0) AS totalChars FROM ChatMessage m WHERE m.userId = :userId")
+    HistoryStats getHistoryStats(@Param("userId") Long userId);
+
+    /** Keyset page for streaming: oldest first, ids strictly between afterId and beforeId. */
+    @Query("SELECT m FROM ChatMessage m WHERE m.userId = :userId AND m.id > :afterId AND m.id < :beforeId ORDER BY m.id ASC")
+    List<ChatMessage> findPageAfter(@Param("userId") Long userId, @Param("afterId") Long afterId,
+                                    @Param("beforeId") Long beforeId, Pageable pageable);
+
+    /** Deletes the user's rows up to maxId (inclusive) except keepId, e.g. rows a persisted summary replaces. */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ChatMessage m WHERE m.userId = :userId AND m.id <= :maxId AND m.id <> :keepId")
+    int deleteUpToExcept(@Param("userId") Long userId, @Param("maxId") Long maxId, @Param("keepId") Long keepId);
+
+    @Modifying
+    @Query("UPDATE ChatMessage m SET m.role = 'SYSTEM', m.content = :summary, m.visibility = 'USER_FACING' WHERE m.userId = :userId AND m.id = :id")
+    int rewriteAsSummary(@Param("userId") Long userId, @Param("id") Long id, @Param("summary") String summary);
+
     default ChatMessage saveCompactedSummary(Long userId, String summary) {
         ChatMessage message = new ChatMessage();
         message.setUserId(userId);
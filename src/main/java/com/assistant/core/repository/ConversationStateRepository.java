@@ -0,0 +1,9 @@
+package com.assistant.core.repository;
+
+import com.assistant.core.model.ConversationState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ConversationStateRepository extends JpaRepository<ConversationState, Long> {
+}
@@ -0,0 +1,36 @@
+package com.assistant.core.repository;
+
+import com.assistant.core.model.ProcessedMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Repository
+public interface ProcessedMessageRepository extends JpaRepository<ProcessedMessage, String> {
+
+    /** Plain INSERT (save() would merge): a second claim of the same id fails with a key violation. */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO processed_messages (message_id, created_at) VALUES (:messageId, :createdAt)", nativeQuery = true)
+    int insertClaim(@Param("messageId") String messageId, @Param("createdAt") Instant createdAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE ProcessedMessage p SET p.reply = :reply WHERE p.messageId = :messageId")
+    int updateReply(@Param("messageId") String messageId, @Param("reply") String reply);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ProcessedMessage p WHERE p.messageId = :messageId")
+    int deleteClaim(@Param("messageId") String messageId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ProcessedMessage p WHERE p.createdAt < :cutoff")
+    int deleteOlderThan(@Param("cutoff") Instant cutoff);
+}
@@ -7,6 +7,4 @@ import org.springframework.stereotype.Repository;
 
 @Repository
 public interface ReminderLogRepository extends JpaRepository<ReminderLog, Long>, JpaSpecificationExecutor<ReminderLog> {
-
-    boolean existsByTaskId(Long taskId);
 }
@@ -1,12 +1,15 @@
 package com.assistant.core.repository;
 
+import com.assistant.core.dto.DueReminderDTO;
 import com.assistant.core.model.Task;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.util.List;
@@ -33,6 +36,64 @@ public interface TaskRepository extends JpaRepository<Task, Long>, JpaSpecificat
             @Param("query") String query,
             Pageable pageable);
 
-    @Query("SELECT t FROM Task t WHERE t.deleted = false AND t.reminderTime IS NOT NULL AND t.reminderTime <= :before AND t.status = 'PENDING' ORDER BY t.reminderTime")
-    List<Task> findUpcomingReminders(@Param("before") Instant before);
+    /**
+     * Never-sent reminders of pending tasks with reminder_time in (from, before], joined to their
+     * user's phone number, in one round trip per page. Reads only that range of
+     * idx_tasks_reminder_due (reminder_sent_at, reminder_time). Keyset-paged by task id (pass the
+     * last id of the previous page, 0 for the first). Does not claim: sending needs a lease.
+     */
+    @Query("SELECT new com.assistant.core.dto.DueReminderDTO(t.id, t.userId, u.phoneNumber, t.title, t.description, t.dueTime, t.reminderTime, t.reminderAttempts) " +
+           "FROM Task t JOIN User u ON u.id = t.userId " +
+           "WHERE t.reminderSentAt IS NULL AND t.reminderTime > :from AND t.reminderTime <= :before " +
+           "AND t.deleted = false AND t.status = 'PENDING' AND t.id > :afterId " +
+           "ORDER BY t.id")
+    List<DueReminderDTO> findDueReminders(@Param("from") Instant from, @Param("before") Instant before,
+                                          @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT new com.assistant.core.dto.DueReminderDTO(t.id, t.userId, u.phoneNumber, t.title, t.description, t.dueTime, t.reminderTime, t.reminderAttempts) " +
+           "FROM Task t JOIN User u ON u.id = t.userId WHERE t.id IN :ids")
+    List<DueReminderDTO> findRemindersByIds(@Param("ids") List<Long> ids);
+
+    /**
+     * Locks up to limit never-sent, unleased reminders due in (from, before]. Rows locked by another
+     * node's claim are skipped rather than waited for. Must run in the transaction that leases them.
+     */
+    @Query(value = "SELECT id FROM tasks " +
+                   "WHERE reminder_sent_at IS NULL AND reminder_time > :from AND reminder_time <= :before " +
+                   "AND is_deleted = FALSE AND status = 'PENDING' " +
+                   "AND (reminder_lease_until IS NULL OR reminder_lease_until <= :before) " +
+                   "ORDER BY reminder_time LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockDueReminderIds(@Param("from") Instant from, @Param("before") Instant before, @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "UPDATE tasks SET reminder_lease_owner = :owner, reminder_lease_until = :until WHERE id IN (:ids)", nativeQuery = true)
+    int leaseReminders(@Param("ids") List<Long> ids, @Param("owner") String owner, @Param("until") Instant until);
+
+    /** Leases one reminder if it is due, unsent and not leased by a live claim; 1 if this call won it. */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE tasks SET reminder_lease_owner = :owner, reminder_lease_until = :until " +
+                   "WHERE id = :taskId AND reminder_sent_at IS NULL AND reminder_time <= :now " +
+                   "AND is_deleted = FALSE AND status = 'PENDING' " +
+                   "AND (reminder_lease_until IS NULL OR reminder_lease_until <= :now)", nativeQuery = true)
+    int claimReminder(@Param("taskId") Long taskId, @Param("owner") String owner,
+                      @Param("until") Instant until, @Param("now") Instant now);
+
+    /** Marks reminders this node holds the lease for as settled (sent, or failed for good), and drops the lease. */
+    @Modifying
+    @Query(value = "UPDATE tasks SET reminder_sent_at = :sentAt, reminder_attempts = reminder_attempts + 1, " +
+                   "reminder_lease_owner = NULL, reminder_lease_until = NULL " +
+                   "WHERE id IN (:ids) AND reminder_sent_at IS NULL AND reminder_lease_owner = :owner", nativeQuery = true)
+    int markRemindersSent(@Param("ids") List<Long> ids, @Param("owner") String owner, @Param("sentAt") Instant sentAt);
+
+    /**
+     * Gives up this node's lease; no node claims the reminder before notBefore. With countAttempt
+     * the release follows a failed send (retry backoff), otherwise a deferral (rate limit).
+     */
+    @Modifying
+    @Query(value = "UPDATE tasks SET reminder_attempts = reminder_attempts + CASE WHEN :countAttempt THEN 1 ELSE 0 END, " +
+                   "reminder_lease_owner = NULL, reminder_lease_until = :notBefore " +
+                   "WHERE id = :taskId AND reminder_sent_at IS NULL AND reminder_lease_owner = :owner", nativeQuery = true)
+    int releaseReminder(@Param("taskId") Long taskId, @Param("owner") String owner,
+                        @Param("notBefore") Instant notBefore, @Param("countAttempt") boolean countAttempt);
 }
@@ -0,0 +1,309 @@
+package com.assistant.core.scheduler;
+
+import com.assistant.core.dto.DueReminderDTO;
+import com.assistant.core.repository.TaskRepository;
+import com.assistant.core.service.WhatsAppService;
+import com.assistant.core.util.TokenBucket;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sends leased reminders, each on its own virtual thread, so a slow or failing send never holds up
+ * a tick or the other reminders. At most max-in-flight sends are pending: callers reserve slots
+ * before claiming leases, so nothing is leased that cannot be sent soon. Sends pass a global token
+ * bucket (global-per-second) and one per recipient (per-recipient-per-minute) to protect the
+ * WhatsApp session; a recipient whose bucket would hold a reminder for more than max-wait-seconds
+ * gets it deferred (lease released until then) instead of tying up a slot.
+ * <p>
+ * A failed send is retried after retry-base-seconds * 2^(attempts - 1) (capped at
+ * retry-max-seconds, with jitter), any node may pick it up then; after max-attempts it is settled
+ * as FAILED. Outcomes are written in batches: reminder_log keeps one row per task with its status
+ * (SENT, RETRYING, FAILED), attempts and last error. The lease owner is app.instance-id (default
+ * pid@hostname).
+ */
+@Component
+public class ReminderDelivery {
+
+    private static final Logger log = LoggerFactory.getLogger(ReminderDelivery.class);
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("MMM d, h:mm a")
+            .withZone(ZoneId.systemDefault());
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private enum Status { SENT, RETRYING, FAILED, DEFERRED }
+
+    /** Result of one delivery; at is when it happened, or when it may be tried again. */
+    private record Outcome(DueReminderDTO reminder, Status status, Instant at, String error) {}
+
+    private final TaskRepository taskRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final WhatsAppService whatsAppService;
+    private final MeterRegistry meterRegistry;
+    private final String owner;
+    private final int maxInFlight;
+    private final Semaphore slots;
+    private final TokenBucket globalBucket;
+    private final double perRecipientPerSecond;
+    private final int perRecipientBurst;
+    private final long maxWaitNanos;
+    private final int maxAttempts;
+    private final Duration retryBase;
+    private final Duration retryMax;
+    private final Map<String, TokenBucket> recipientBuckets = new ConcurrentHashMap<>();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final Queue<Outcome> outcomes = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private final Timer delay;
+
+    public ReminderDelivery(TaskRepository taskRepository,
+                            JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            WhatsAppService whatsAppService,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.instance-id:}") String instanceId,
+                            @Value("${app.reminders.delivery.max-in-flight:100}") int maxInFlight,
+                            @Value("${app.reminders.delivery.global-per-second:20}") double globalPerSecond,
+                            @Value("${app.reminders.delivery.per-recipient-per-minute:10}") double perRecipientPerMinute,
+                            @Value("${app.reminders.delivery.per-recipient-burst:3}") int perRecipientBurst,
+                            @Value("${app.reminders.delivery.max-wait-seconds:30}") long maxWaitSeconds,
+                            @Value("${app.reminders.delivery.max-attempts:5}") int maxAttempts,
+                            @Value("${app.reminders.delivery.retry-base-seconds:30}") long retryBaseSeconds,
+                            @Value("${app.reminders.delivery.retry-max-seconds:3600}") long retryMaxSeconds) {
+        this.taskRepository = taskRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.whatsAppService = whatsAppService;
+        this.meterRegistry = meterRegistry;
+        this.owner = instanceId.isBlank() ? ManagementFactory.getRuntimeMXBean().getName() : instanceId;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.slots = new Semaphore(this.maxInFlight);
+        this.globalBucket = new TokenBucket(Math.max(0.1, globalPerSecond), (int) Math.ceil(globalPerSecond), System.nanoTime());
+        this.perRecipientPerSecond = Math.max(0.01, perRecipientPerMinute / 60d);
+        this.perRecipientBurst = Math.max(1, perRecipientBurst);
+        this.maxWaitNanos = TimeUnit.SECONDS.toNanos(Math.max(1, maxWaitSeconds));
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBase = Duration.ofSeconds(Math.max(1, retryBaseSeconds));
+        this.retryMax = Duration.ofSeconds(Math.max(retryBaseSeconds, retryMaxSeconds));
+        this.delay = Timer.builder("reminders.delay")
+                .description("Time from reminder_time to the reminder being sent")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void registerGauges() {
+        Gauge.builder("reminders.delivery.in_flight", this, d -> d.maxInFlight - d.slots.availablePermits())
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        senders.shutdownNow();
+    }
+
+    /** Lease owner name of this node. */
+    public String owner() {
+        return owner;
+    }
+
+    /** Reserves up to max send slots without waiting; returns how many were reserved. */
+    public int reserve(int max) {
+        int reserved = 0;
+        while (reserved < max && slots.tryAcquire()) {
+            reserved++;
+        }
+        return reserved;
+    }
+
+    /** Reserves one send slot, waiting for one to free up. */
+    public void reserveOne() throws InterruptedException {
+        slots.acquire();
+    }
+
+    /** Returns reserved slots that were not used for a delivery. */
+    public void release(int reserved) {
+        if (reserved > 0) slots.release(reserved);
+    }
+
+    /**
+     * Sends a leased reminder on a reserved slot, without blocking the caller. Completes with the
+     * time of the next attempt if the reminder is to be retried or was deferred, else null.
+     */
+    public CompletableFuture<Instant> deliver(DueReminderDTO reminder) {
+        return CompletableFuture.supplyAsync(() -> {
+            Outcome outcome;
+            try {
+                outcome = attempt(reminder);
+            } finally {
+                slots.release();
+            }
+            record(outcome);
+            return outcome.status() == Status.RETRYING || outcome.status() == Status.DEFERRED ? outcome.at() : null;
+        }, senders);
+    }
+
+    private Outcome attempt(DueReminderDTO reminder) {
+        try {
+            long now = System.nanoTime();
+            TokenBucket recipient = recipientBuckets.computeIfAbsent(reminder.getPhoneNumber(),
+                    k -> new TokenBucket(perRecipientPerSecond, perRecipientBurst, now));
+            long recipientWait = recipient.reserve(now, maxWaitNanos);
+            if (recipientWait < 0) {
+                Instant retryAt = wholeSecondsAfter(Instant.now().plusNanos(maxWaitNanos));
+                return new Outcome(reminder, Status.DEFERRED, retryAt, null);
+            }
+            long wait = Math.max(recipientWait, globalBucket.reserve(now, Long.MAX_VALUE));
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            whatsAppService.sendReminder(reminder.getPhoneNumber(), formatReminderMessage(reminder));
+            delay.record(Duration.between(reminder.getReminderTime(), Instant.now()));
+            log.info("Reminder sent for task id={}, title='{}'", reminder.getTaskId(), reminder.getTitle());
+            return new Outcome(reminder, Status.SENT, Instant.now(), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failed(reminder, e);
+        } catch (Exception e) {
+            return failed(reminder, e);
+        }
+    }
+
+    private Outcome failed(DueReminderDTO reminder, Exception e) {
+        int attempts = reminder.getAttempts() + 1;
+        String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        if (attempts >= maxAttempts) {
+            log.error("Reminder for task {} failed after {} attempts, giving up: {}", reminder.getTaskId(), attempts, error);
+            return new Outcome(reminder, Status.FAILED, Instant.now(), error);
+        }
+        long backoffMillis = Math.min(retryMax.toMillis(), retryBase.toMillis() << Math.min(attempts - 1, 20));
+        backoffMillis += ThreadLocalRandom.current().nextLong(backoffMillis / 5 + 1);
+        Instant retryAt = wholeSecondsAfter(Instant.now().plusMillis(backoffMillis));
+        log.warn("Reminder for task {} failed (attempt {}/{}), retrying at {}: {}",
+                reminder.getTaskId(), attempts, maxAttempts, retryAt, error);
+        return new Outcome(reminder, Status.RETRYING, retryAt, error);
+    }
+
+    /** Queues the outcome; one flusher at a time writes whatever has queued up. */
+    private void record(Outcome outcome) {
+        meterRegistry.counter("reminders.delivery", "result", outcome.status().name().toLowerCase()).increment();
+        outcomes.add(outcome);
+        while (!outcomes.isEmpty() && flushing.compareAndSet(false, true)) {
+            try {
+                List<Outcome> batch = new ArrayList<>();
+                Outcome next;
+                while ((next = outcomes.poll()) != null) batch.add(next);
+                write(batch);
+            } catch (Exception e) {
+                // Leases expire, so unwritten outcomes are retried rather than lost.
+                log.error("Could not record reminder outcomes: {}", e.getMessage(), e);
+            } finally {
+                flushing.set(false);
+            }
+        }
+    }
+
+    /** One UPDATE for settled reminders, one per released lease, and one multi-row log upsert. */
+    private void write(List<Outcome> batch) {
+        if (batch.isEmpty()) return;
+        List<Long> sent = new ArrayList<>();
+        List<Outcome> logged = new ArrayList<>();
+        for (Outcome o : batch) {
+            if (o.status() == Status.SENT) sent.add(o.reminder().getTaskId());
+            if (o.status() != Status.DEFERRED) logged.add(o);
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Outcome o : batch) {
+                switch (o.status()) {
+                    case FAILED -> taskRepository.markRemindersSent(List.of(o.reminder().getTaskId()), owner, o.at());
+                    case RETRYING -> taskRepository.releaseReminder(o.reminder().getTaskId(), owner, o.at(), true);
+                    case DEFERRED -> taskRepository.releaseReminder(o.reminder().getTaskId(), owner, o.at(), false);
+                    case SENT -> { }
+                }
+            }
+            if (!sent.isEmpty()) {
+                taskRepository.markRemindersSent(sent, owner, Instant.now());
+            }
+            upsertLog(logged);
+        });
+    }
+
+    /** A SENT row is final; otherwise the latest attempt replaces the row (uk_reminder_log_task_id). */
+    private void upsertLog(List<Outcome> logged) {
+        if (logged.isEmpty()) return;
+        StringBuilder sql = new StringBuilder("INSERT INTO reminder_log (task_id, sent_at, status, attempts, last_error) VALUES ");
+        List<Object> args = new ArrayList<>(logged.size() * 5);
+        for (int i = 0; i < logged.size(); i++) {
+            Outcome o = logged.get(i);
+            sql.append(i == 0 ? "(?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?)");
+            args.add(o.reminder().getTaskId());
+            args.add(Timestamp.from(o.status() == Status.RETRYING ? Instant.now() : o.at()));
+            args.add(o.status().name());
+            args.add(o.reminder().getAttempts() + 1);
+            args.add(o.error() != null && o.error().length() > MAX_ERROR_LENGTH ? o.error().substring(0, MAX_ERROR_LENGTH) : o.error());
+        }
+        // Assignments run left to right, so status is updated last.
+        sql.append(" ON DUPLICATE KEY UPDATE sent_at = IF(status = 'SENT', sent_at, VALUES(sent_at)), "
+                + "attempts = IF(status = 'SENT', attempts, VALUES(attempts)), "
+                + "last_error = IF(status = 'SENT', last_error, VALUES(last_error)), "
+                + "status = IF(status = 'SENT', status, VALUES(status))");
+        jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+
+    @Scheduled(fixedDelayString = "${app.reminders.delivery.bucket-sweep-interval-ms:600000}")
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        recipientBuckets.values().removeIf(bucket -> bucket.isIdle(now));
+    }
+
+    /**
+     * Rounds up to the second: reminder_lease_until keeps whole seconds (MySQL rounds fractions,
+     * possibly up), and the wheel entry for a retry must not expire before the stored time.
+     */
+    private static Instant wholeSecondsAfter(Instant at) {
+        Instant seconds = at.truncatedTo(ChronoUnit.SECONDS);
+        return seconds.equals(at) ? at : seconds.plusSeconds(1);
+    }
+
+    private static String formatReminderMessage(DueReminderDTO reminder) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Reminder: ").append(reminder.getTitle());
+        if (reminder.getDueTime() != null) {
+            sb.append(" (due ").append(TIME_FORMAT.format(reminder.getDueTime())).append(")");
+        }
+        if (reminder.getDescription() != null && !reminder.getDescription().isBlank()) {
+            sb.append("\n").append(reminder.getDescription());
+        }
+        return sb.toString();
+    }
+}
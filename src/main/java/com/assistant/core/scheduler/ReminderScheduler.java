@@ -1,87 +1,212 @@
 package com.assistant.core.scheduler;
 
-import com.assistant.core.model.Task;
-import com.assistant.core.model.ReminderLog;
-import com.assistant.core.model.User;
-import com.assistant.core.repository.ReminderLogRepository;
+import com.assistant.core.dto.DueReminderDTO;
 import com.assistant.core.repository.TaskRepository;
-import com.assistant.core.repository.UserRepository;
-import com.assistant.core.service.WhatsAppService;
+import com.assistant.core.service.ReminderChangedEvent;
+import com.assistant.core.util.TimingWheel;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.Instant;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Runs every minute: finds tasks due for reminder, ensures not already in reminder_log,
- * formats message, simulates WhatsApp send, inserts reminder_log for idempotency.
+ * Sends task reminders at their reminder_time. Reminders due within the next horizon-minutes sit
+ * in an in-memory {@link TimingWheel} ticking every tick-ms and are sent the moment they expire;
+ * task changes reach the wheel through {@link ReminderChangedEvent} after commit. Every
+ * reconcile-interval-ms a reconciliation pass loads the next horizon from tasks and sends any
+ * never-sent reminder due within the last lookback-hours (missed while down, changed through
+ * another instance, or waiting for a retry).
+ * <p>
+ * Safe with several instances: a reminder is only sent under a lease (tasks.reminder_lease_owner
+ * and reminder_lease_until, lease-seconds long). The pass claims batches with SELECT ... FOR
+ * UPDATE SKIP LOCKED, so nodes split the backlog instead of queueing on each other's locks; a wheel
+ * expiry claims its one reminder with a conditional UPDATE, so when every node's wheel holds the
+ * same reminder only one sends it. Claimed reminders are handed to {@link ReminderDelivery}, which
+ * sends, rate-limits and retries them off this thread; the pass claims only as many as delivery has
+ * free slots for, and a retry due within the horizon goes back on the wheel.
  */
 @Component
 public class ReminderScheduler {
 
     private static final Logger log = LoggerFactory.getLogger(ReminderScheduler.class);
-    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("MMM d, h:mm a")
-            .withZone(ZoneId.systemDefault());
 
     private final TaskRepository taskRepository;
-    private final ReminderLogRepository reminderLogRepository;
-    private final UserRepository userRepository;
-    private final WhatsAppService whatsAppService;
+    private final TransactionTemplate transactionTemplate;
+    private final ReminderDelivery delivery;
+    private final int pageSize;
+    private final Duration lookback;
+    private final Duration horizon;
+    private final long tickMillis;
+    private final Duration lease;
+    private final TimingWheel<Long> wheel;
+    private final ExecutorService dispatcher = Executors.newVirtualThreadPerTaskExecutor();
+    private final Thread clock;
 
     public ReminderScheduler(TaskRepository taskRepository,
-                             ReminderLogRepository reminderLogRepository,
-                             UserRepository userRepository,
-                             WhatsAppService whatsAppService) {
+                             PlatformTransactionManager transactionManager,
+                             ReminderDelivery delivery,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.reminders.page-size:500}") int pageSize,
+                             @Value("${app.reminders.lookback-hours:24}") long lookbackHours,
+                             @Value("${app.reminders.horizon-minutes:15}") long horizonMinutes,
+                             @Value("${app.reminders.tick-ms:100}") long tickMillis,
+                             @Value("${app.reminders.lease-seconds:120}") long leaseSeconds) {
         this.taskRepository = taskRepository;
-        this.reminderLogRepository = reminderLogRepository;
-        this.userRepository = userRepository;
-        this.whatsAppService = whatsAppService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.delivery = delivery;
+        this.pageSize = Math.max(1, pageSize);
+        this.lookback = Duration.ofHours(Math.max(1, lookbackHours));
+        this.tickMillis = Math.max(10, tickMillis);
+        this.lease = Duration.ofSeconds(Math.max(10, leaseSeconds));
+        this.wheel = new TimingWheel<>(this.tickMillis, System.currentTimeMillis());
+        this.horizon = Duration.ofMillis(Math.min(TimeUnit.MINUTES.toMillis(Math.max(1, horizonMinutes)), wheel.capacityMillis()));
+        Gauge.builder("reminders.wheel.size", wheel, TimingWheel::size).register(meterRegistry);
+        this.clock = new Thread(this::tickLoop, "reminder-wheel");
+        clock.setDaemon(true);
+        clock.start();
     }
 
-    @Scheduled(fixedDelay = 60000)
-    public void sendDueReminders() {
+    @PreDestroy
+    void shutdown() {
+        clock.interrupt();
+        dispatcher.shutdownNow();
+    }
+
+    /** Keeps the wheel in step with task changes; reminders beyond the horizon wait for reconciliation. */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReminderChanged(ReminderChangedEvent event) {
+        Instant at = event.reminderTime();
+        if (at == null || at.isAfter(Instant.now().plus(horizon))) {
+            wheel.cancel(event.taskId());
+        } else {
+            wheel.schedule(event.taskId(), at.toEpochMilli());
+        }
+    }
+
+    /** Low-frequency pass: refills the wheel for the next horizon and sends what it missed. */
+    @Scheduled(fixedDelayString = "${app.reminders.reconcile-interval-ms:300000}")
+    public void reconcile() {
         Instant now = Instant.now();
-        List<Task> dueTasks = taskRepository.findUpcomingReminders(now);
-        if (dueTasks.isEmpty()) {
-            return;
+        int scheduled = 0;
+        long afterId = 0;
+        while (true) {
+            List<DueReminderDTO> page = taskRepository.findDueReminders(now, now.plus(horizon), afterId,
+                    Pageable.ofSize(pageSize).first());
+            for (DueReminderDTO reminder : page) {
+                if (wheel.schedule(reminder.getTaskId(), reminder.getReminderTime().toEpochMilli())) {
+                    scheduled++;
+                }
+            }
+            if (page.size() < pageSize) break;
+            afterId = page.get(page.size() - 1).getTaskId();
+        }
+        int sent = sendMissed(now);
+        if (scheduled > 0 || sent > 0) {
+            log.debug("Reminder reconciliation: {} upcoming in wheel, {} missed reminder(s) sent", scheduled, sent);
         }
-        log.debug("Reminder run: {} task(s) with reminder_time <= now", dueTasks.size());
-        for (Task task : dueTasks) {
-            if (reminderLogRepository.existsByTaskId(task.getId())) {
-                log.trace("Task {} already has reminder_log, skipping", task.getId());
-                continue;
+    }
+
+    /**
+     * Claims due reminders in batches no larger than delivery's free slots and hands them over
+     * without waiting for the sends; stops when none is left or delivery is full (the next pass or
+     * the wheel picks up the rest).
+     */
+    private int sendMissed(Instant now) {
+        int handed = 0;
+        while (true) {
+            int slots = delivery.reserve(pageSize);
+            if (slots == 0) break;
+            List<Long> claimed;
+            try {
+                claimed = transactionTemplate.execute(status -> {
+                    List<Long> ids = taskRepository.lockDueReminderIds(now.minus(lookback), now, slots);
+                    if (!ids.isEmpty()) {
+                        taskRepository.leaseReminders(ids, delivery.owner(), now.plus(lease));
+                    }
+                    return ids;
+                });
+            } catch (RuntimeException e) {
+                delivery.release(slots);
+                throw e;
             }
-            User user = userRepository.findById(task.getUserId())
-                    .orElse(null);
-            if (user == null) {
-                log.warn("User not found for task {} (user_id={}), skipping reminder", task.getId(), task.getUserId());
-                continue;
+            if (claimed == null || claimed.isEmpty()) {
+                delivery.release(slots);
+                break;
             }
-            String message = formatReminderMessage(task);
-            whatsAppService.sendReminder(user.getPhoneNumber(), message);
-            ReminderLog reminderLog = new ReminderLog();
-            reminderLog.setTaskId(task.getId());
-            reminderLog.setSentAt(now);
-            reminderLog.setStatus("SENT");
-            reminderLogRepository.save(reminderLog);
-            log.info("Reminder sent for task id={}, title='{}'", task.getId(), task.getTitle());
+            List<DueReminderDTO> reminders = taskRepository.findRemindersByIds(claimed);
+            delivery.release(slots - reminders.size());
+            reminders.forEach(this::deliver);
+            handed += reminders.size();
+            if (claimed.size() < slots) break;
         }
+        return handed;
     }
 
-    private String formatReminderMessage(Task task) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("Reminder: ").append(task.getTitle());
-        if (task.getDueTime() != null) {
-            sb.append(" (due ").append(TIME_FORMAT.format(task.getDueTime())).append(")");
+    private void tickLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                long now = System.currentTimeMillis();
+                for (Long taskId : wheel.advance(now)) {
+                    dispatcher.execute(() -> fire(taskId));
+                }
+                Thread.sleep(tickMillis - now % tickMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("Reminder wheel tick failed: {}", e.getMessage(), e);
+            }
         }
-        if (task.getDescription() != null && !task.getDescription().isBlank()) {
-            sb.append("\n").append(task.getDescription());
+    }
+
+    /**
+     * Sends one expired reminder if this node wins its lease; it may also have been completed,
+     * sent or claimed by another node meanwhile. Waits here, on its own virtual thread, for a
+     * delivery slot before claiming, so the lease is not taken while the send would queue.
+     */
+    private void fire(Long taskId) {
+        try {
+            delivery.reserveOne();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
         }
-        return sb.toString();
+        boolean handed = false;
+        try {
+            Instant now = Instant.now();
+            if (taskRepository.claimReminder(taskId, delivery.owner(), now.plus(lease), now) > 0) {
+                for (DueReminderDTO reminder : taskRepository.findRemindersByIds(List.of(taskId))) {
+                    deliver(reminder);
+                    handed = true;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Reminder for task {} could not be dispatched, reconciliation will retry: {}", taskId, e.getMessage());
+        } finally {
+            if (!handed) delivery.release(1);
+        }
+    }
+
+    /** Delivers on a reserved slot; a retry coming up within the horizon is put back on the wheel. */
+    private void deliver(DueReminderDTO reminder) {
+        delivery.deliver(reminder).thenAccept(retryAt -> {
+            if (retryAt != null && retryAt.isBefore(Instant.now().plus(horizon))) {
+                wheel.schedule(reminder.getTaskId(), retryAt.toEpochMilli());
+            }
+        });
     }
 }
@@ -0,0 +1,162 @@
+package com.assistant.core.service;
+
+import com.assistant.core.model.ChatMessage;
+import com.assistant.core.repository.ChatMessageRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps every active user's history small without /compact. Users whose turns were written since
+ * the last sweep are checked; past max-messages rows or max-tokens (estimated), everything before
+ * the keep-recent tail is summarized by {@link CompactionEngine} and replaced by one SYSTEM summary
+ * row in its place, while the tail stays verbatim. Earlier summaries are part of the summarized
+ * rows, so they are merged rather than stacked. Work runs on one low-priority thread off the
+ * request path; only the short delete/update runs in the user's mailbox, so it never interleaves
+ * with a turn. The summary reaches the model as a developer message (see LLMService), and a
+ * compacted user's provider-side conversation is dropped, as with /compact.
+ */
+@Component
+public class BackgroundCompactor {
+
+    private static final Logger log = LoggerFactory.getLogger(BackgroundCompactor.class);
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final CompactionEngine compactionEngine;
+    private final ConversationContextCache contextCache;
+    private final ConversationStateService conversationStateService;
+    private final UserMailboxScheduler mailboxScheduler;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final long maxMessages;
+    private final long maxTokens;
+    private final int keepRecent;
+    private final Set<Long> activeUsers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "background-compactor");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    public BackgroundCompactor(ChatMessageRepository chatMessageRepository,
+                               CompactionEngine compactionEngine,
+                               ConversationContextCache contextCache,
+                               ConversationStateService conversationStateService,
+                               UserMailboxScheduler mailboxScheduler,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.compaction.auto.enabled:true}") boolean enabled,
+                               @Value("${app.compaction.auto.max-messages:150}") long maxMessages,
+                               @Value("${app.compaction.auto.max-tokens:12000}") long maxTokens,
+                               @Value("${app.compaction.auto.keep-recent:40}") int keepRecent) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.compactionEngine = compactionEngine;
+        this.contextCache = contextCache;
+        this.conversationStateService = conversationStateService;
+        this.mailboxScheduler = mailboxScheduler;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.maxMessages = maxMessages;
+        this.maxTokens = maxTokens;
+        this.keepRecent = Math.max(1, keepRecent);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        worker.shutdownNow();
+    }
+
+    /** Marks the user for a size check on the next sweep (called when a turn's rows are written). */
+    public void noteActivity(Long userId) {
+        if (enabled) {
+            activeUsers.add(userId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.compaction.auto.interval-ms:60000}")
+    public void sweep() {
+        if (!enabled || activeUsers.isEmpty()) return;
+        List<Long> users = new ArrayList<>(activeUsers);
+        activeUsers.removeAll(users);
+        // The scheduler thread is shared; LLM calls happen on the compactor's own thread.
+        worker.execute(() -> users.forEach(this::compactIfNeeded));
+    }
+
+    private void compactIfNeeded(Long userId) {
+        try {
+            ChatMessageRepository.HistoryStats stats = chatMessageRepository.getHistoryStats(userId);
+            long estimatedTokens = stats.getTotalChars() / 4;
+            if (stats.getMessageCount() <= maxMessages && estimatedTokens <= maxTokens) {
+                return;
+            }
+            Long tailStartId = tailStart(userId);
+            if (tailStartId == null) {
+                return;
+            }
+            CompactionEngine.Result result = compactionEngine.summarize(userId, tailStartId);
+            if (result.rows() < 2) {
+                return;
+            }
+            boolean applied = mailboxScheduler.run(userId, () -> apply(userId, result));
+            meterRegistry.counter("compaction.runs", "trigger", "auto", "result", applied ? "compacted" : "skipped").increment();
+            if (applied) {
+                log.info("Auto-compacted {} oldest messages for userId={} ({} messages, ~{} tokens before)",
+                        result.rows(), userId, stats.getMessageCount(), estimatedTokens);
+            }
+        } catch (Exception e) {
+            meterRegistry.counter("compaction.runs", "trigger", "auto", "result", "failed").increment();
+            log.warn("Auto-compaction failed for userId={}: {}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * Id of the first row of the verbatim tail. The tail starts at a USER row, so no tool call is
+     * separated from its results; null if the recent rows hold no USER row.
+     */
+    private Long tailStart(Long userId) {
+        Long tailStartId = null;
+        for (ChatMessage m : chatMessageRepository.findRecentByUserId(userId, keepRecent)) {
+            if ("USER".equals(m.getRole())) tailStartId = m.getId();
+        }
+        return tailStartId;
+    }
+
+    /** Rewrites the newest summarized row as the summary (keeping its position) and deletes the older ones. */
+    private boolean apply(Long userId, CompactionEngine.Result result) {
+        Long anchorId = result.lastId();
+        int others = result.rows() - 1;
+        Boolean applied = transactionTemplate.execute(status -> {
+            if (chatMessageRepository.rewriteAsSummary(userId, anchorId, result.summary()) == 0
+                    || chatMessageRepository.deleteUpToExcept(userId, anchorId, anchorId) != others) {
+                // History changed meanwhile (e.g. /compact): leave it alone.
+                status.setRollbackOnly();
+                return false;
+            }
+            return true;
+        });
+        if (Boolean.TRUE.equals(applied)) {
+            contextCache.invalidate(userId);
+            // The provider-side conversation still holds the uncompacted history.
+            conversationStateService.clear(userId);
+            meterRegistry.counter("compaction.rows_removed").increment(others);
+            return true;
+        }
+        return false;
+    }
+}
@@ -2,7 +2,7 @@ package com.assistant.core.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClient;
@@ -10,6 +10,7 @@ import org.springframework.web.client.RestClient;
 /**
  * Sends WhatsApp messages via the Node.js Baileys bridge (POST to /send).
  * Default outbound implementation when app.whatsapp.outbound is unset or "bridge".
+ * Uses the pooled bridge client from RestClientConfig (app.whatsapp.bridge-url, app.whatsapp.http.*).
  */
 @Component
 @ConditionalOnProperty(name = "app.whatsapp.outbound", havingValue = "bridge", matchIfMissing = true)
@@ -20,11 +21,8 @@ public class BridgeWhatsAppSender implements WhatsAppMessageSender {
 
     private final RestClient restClient;
 
-    public BridgeWhatsAppSender(
-            @Value("${app.whatsapp.bridge-url:http://localhost:3000}") String bridgeBaseUrl) {
-        this.restClient = RestClient.builder()
-                .baseUrl(bridgeBaseUrl != null ? bridgeBaseUrl.strip() : "http://localhost:3000")
-                .build();
+    public BridgeWhatsAppSender(@Qualifier("bridgeRestClient") RestClient restClient) {
+        this.restClient = restClient;
     }
 
     @Override
@@ -45,14 +43,15 @@ public class BridgeWhatsAppSender implements WhatsAppMessageSender {
     }
 
     /**
-     * Ensures the destination has the @s.whatsapp.net suffix for the bridge.
+     * Ensures the destination has the @s.whatsapp.net suffix for the bridge; a full JID (e.g. an
+     * @lid chat id of a sender whose number is unknown) is used as is.
      */
     private static String formatJid(String phoneNumber) {
         if (phoneNumber == null || phoneNumber.isBlank()) {
             throw new IllegalArgumentException("phoneNumber must not be blank");
         }
         String normalized = phoneNumber.strip();
-        if (normalized.endsWith(JID_SUFFIX)) {
+        if (normalized.contains("@")) {
             return normalized;
         }
         return normalized + JID_SUFFIX;
@@ -1,19 +1,19 @@
 package com.assistant.core.service;
 
-import com.assistant.core.mcp.LLMService;
 import com.assistant.core.model.ChatMessage;
 import com.assistant.core.repository.ChatMessageRepository;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
@@ -23,45 +23,49 @@ public class ChatMemoryService {
     private static final ObjectMapper JSON = new ObjectMapper();
     private static final int DEFAULT_HISTORY_LIMIT = 50;
 
-    private static final String COMPACTION_PROMPT =
-            "Summarize this conversation history into a highly concise context block. "
-            + "Retain key facts, pending tasks, and user preferences. "
-            + "Drop pleasantries and filler. Output only the summary, nothing else.";
-
     private final ChatMessageRepository chatMessageRepository;
-    private final LLMService llmService;
-
-    public ChatMemoryService(ChatMessageRepository chatMessageRepository, LLMService llmService) {
+    private final CompactionEngine compactionEngine;
+    private final ConversationStateService conversationStateService;
+    private final ConversationContextCache contextCache;
+    private final ChatMessageBatchWriter batchWriter;
+    private final BackgroundCompactor backgroundCompactor;
+
+    public ChatMemoryService(ChatMessageRepository chatMessageRepository, CompactionEngine compactionEngine,
+                             ConversationStateService conversationStateService,
+                             ConversationContextCache contextCache,
+                             ChatMessageBatchWriter batchWriter,
+                             BackgroundCompactor backgroundCompactor) {
         this.chatMessageRepository = chatMessageRepository;
-        this.llmService = llmService;
+        this.compactionEngine = compactionEngine;
+        this.conversationStateService = conversationStateService;
+        this.contextCache = contextCache;
+        this.batchWriter = batchWriter;
+        this.backgroundCompactor = backgroundCompactor;
     }
 
-    public ChatMessage saveUserMessage(Long userId, String content) {
-        ChatMessage msg = new ChatMessage();
-        msg.setUserId(userId);
-        msg.setRole("USER");
-        msg.setContent(content);
-        msg.setVisibility(ChatMessage.VISIBILITY_USER_FACING);
-        return chatMessageRepository.save(msg);
+    /**
+     * Starts buffering the rows of one conversation turn; they are written together on
+     * {@link ChatTurn#flush()}, then appended to the context cache and the user is noted for
+     * {@link BackgroundCompactor}.
+     */
+    public ChatTurn beginTurn(Long userId) {
+        return new ChatTurn(userId, batchWriter, rows -> {
+            contextCache.append(userId, toContextMessages(rows));
+            backgroundCompactor.noteActivity(userId);
+        });
     }
 
-    /** Saves an assistant message with the given visibility (USER_FACING for final reply, INTERNAL for tool-call turns). */
-    public ChatMessage saveAssistantMessage(Long userId, String content, String visibility) {
+    static ChatMessage row(Long userId, String role, String content, String visibility) {
         ChatMessage msg = new ChatMessage();
         msg.setUserId(userId);
-        msg.setRole("ASSISTANT");
+        msg.setRole(role);
         msg.setContent(content);
-        msg.setVisibility(visibility != null ? visibility : ChatMessage.VISIBILITY_USER_FACING);
-        return chatMessageRepository.save(msg);
+        msg.setVisibility(visibility);
+        return msg;
     }
 
-    /** Saves the final assistant reply shown to the user (USER_FACING). */
-    public ChatMessage saveAssistantMessage(Long userId, String content) {
-        return saveAssistantMessage(userId, content, ChatMessage.VISIBILITY_USER_FACING);
-    }
-
-    /** Saves a tool result message (INTERNAL only). Stored as JSON so tool_call_id is available when loading. */
-    public ChatMessage saveToolResultMessage(Long userId, String toolCallId, String resultContent) {
+    /** A tool result row (INTERNAL only), stored as JSON so tool_call_id is available when loading. */
+    static ChatMessage toolResultRow(Long userId, String toolCallId, String resultContent) {
         String content;
         try {
             content = JSON.writeValueAsString(Map.of("tool_call_id", toolCallId, "result", resultContent != null ? resultContent : ""));
@@ -73,7 +77,7 @@ public class ChatMemoryService {
         msg.setRole("TOOL");
         msg.setContent(content);
         msg.setVisibility(ChatMessage.VISIBILITY_INTERNAL);
-        return chatMessageRepository.save(msg);
+        return msg;
     }
 
     /**
@@ -93,9 +97,37 @@ public class ChatMemoryService {
     /**
      * Returns full conversation history as a list of message maps in API shape (role, content, optional tool_calls / tool_call_id)
      * for use by the conversation loop (LLM context). Order: oldest first (API expects chronological order).
+     * Served from {@link ConversationContextCache} for recently active users; the maps are read-only.
      */
     public List<Map<String, Object>> getConversationHistoryForContext(Long userId, int limit) {
-        List<ChatMessage> rows = chatMessageRepository.findRecentByUserId(userId, limit);
+        Optional<List<Map<String, Object>>> cached = contextCache.get(userId, limit);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        List<ChatMessage> rows = new ArrayList<>(chatMessageRepository.findRecentByUserId(userId, limit));
+        // Repository returns newest first (ORDER BY createdAt DESC); reverse so oldest first for the API.
+        java.util.Collections.reverse(rows);
+        List<Map<String, Object>> context = toContextMessages(rows);
+        contextCache.put(userId, limit, context);
+        return context;
+    }
+
+    /**
+     * Returns up to limit messages newer than afterId, oldest first. Used to send only what the
+     * provider-side conversation has not seen yet (see ConversationStateService).
+     */
+    public List<ChatMessage> getMessagesAfter(Long userId, Long afterId, int limit) {
+        return chatMessageRepository.findByUserIdAfterId(userId, afterId, Pageable.ofSize(limit).first());
+    }
+
+    /** The newest compaction summary (SYSTEM row) in API shape, if the user has one. */
+    public Optional<Map<String, Object>> getLatestSummaryForContext(Long userId) {
+        return chatMessageRepository.findFirstByUserIdAndRoleOrderByIdDesc(userId, "SYSTEM")
+                .map(m -> toContextMessages(List.of(m)).get(0));
+    }
+
+    /** Converts stored rows (oldest first) to message maps in API shape, keeping their order. */
+    public List<Map<String, Object>> toContextMessages(List<ChatMessage> rows) {
         List<Map<String, Object>> out = new ArrayList<>();
         for (ChatMessage m : rows) {
             String role = m.getRole();
@@ -115,8 +147,6 @@ public class ChatMemoryService {
                 default -> out.add(Map.of("role", "assistant", "content", content));
             }
         }
-        // Repository returns newest first (ORDER BY createdAt DESC); reverse so oldest first for the API.
-        java.util.Collections.reverse(out);
         return out;
     }
 
@@ -161,28 +191,31 @@ public class ChatMemoryService {
 
     /**
      * Compacts the full chat history for a user into a single SYSTEM summary message.
-     * The old messages are deleted and replaced with the LLM-generated summary.
+     * History is summarized in bounded chunks by {@link CompactionEngine}; the summary is saved
+     * before the rows it replaces are deleted, so a failure part-way never loses history. Not
+     * transactional: the model calls can take minutes and must not hold a connection.
      */
-    @Transactional
     public String compactHistory(Long userId) {
-        List<ChatMessage> history = chatMessageRepository.findRecentByUserId(userId, Integer.MAX_VALUE);
-        if (history.isEmpty()) {
+        CompactionEngine.Result result;
+        try {
+            result = compactionEngine.summarize(userId, Long.MAX_VALUE);
+        } catch (RuntimeException e) {
+            log.warn("Compaction failed for userId={}, history left unchanged: {}", userId, e.getMessage());
+            return "Could not compact the conversation right now. Please try again later.";
+        }
+        if (result.rows() == 0) {
             log.debug("No chat history to compact for userId={}", userId);
             return "Nothing to compact.";
         }
 
-        String rawHistory = history.stream()
-                .map(m -> m.getRole() + ": " + m.getContent())
-                .collect(Collectors.joining("\n"));
-
-        log.info("Compacting {} messages for userId={}", history.size(), userId);
-
-        String summary = llmService.chat(COMPACTION_PROMPT, rawHistory);
-
-        chatMessageRepository.deleteAllByUserId(userId);
-        chatMessageRepository.saveCompactedSummary(userId, summary);
+        ChatMessage summary = chatMessageRepository.saveCompactedSummary(userId, result.summary());
+        int deleted = chatMessageRepository.deleteUpToExcept(userId, result.lastId(), summary.getId());
+        contextCache.invalidate(userId);
+        // The provider-side conversation still holds the uncompacted history.
+        conversationStateService.clear(userId);
 
-        log.info("Context compacted successfully for userId={}", userId);
+        log.info("Context compacted successfully for userId={} ({} messages summarized, {} deleted)",
+                userId, result.rows(), deleted);
         return "Context compacted successfully.";
     }
 }
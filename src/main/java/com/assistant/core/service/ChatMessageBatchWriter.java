@@ -0,0 +1,172 @@
+package com.assistant.core.service;
+
+import com.assistant.core.model.ChatMessage;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes chat_messages rows with one multi-row INSERT per call instead of one statement per row
+ * (IDENTITY keys rule out Hibernate batching). Rows of one call get ascending ids in list order;
+ * history is read ORDER BY created_at, id, so the order survives rows sharing a created_at.
+ * <p>
+ * With group-commit on, calls from all users are queued and a single writer thread combines
+ * whatever arrived within max-delay-ms (up to max-rows) into one statement; each caller still
+ * returns only after its rows are committed.
+ */
+@Component
+public class ChatMessageBatchWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatMessageBatchWriter.class);
+    private static final String INSERT_PREFIX = "INSERT INTO chat_messages (user_id, role, content, visibility) VALUES ";
+
+    private record Request(List<ChatMessage> rows, CompletableFuture<Void> done) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean groupCommit;
+    private final long maxDelayNanos;
+    private final int maxRows;
+    private final DistributionSummary statementRows;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread groupWriter;
+    private volatile boolean stopped;
+
+    public ChatMessageBatchWriter(JdbcTemplate jdbcTemplate,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.chat.group-commit.enabled:false}") boolean groupCommit,
+                                  @Value("${app.chat.group-commit.max-delay-ms:5}") long maxDelayMs,
+                                  @Value("${app.chat.group-commit.max-rows:500}") int maxRows) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.groupCommit = groupCommit;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        this.maxRows = Math.max(1, maxRows);
+        this.statementRows = DistributionSummary.builder("chat.messages.insert.rows")
+                .description("Rows written per chat_messages INSERT statement")
+                .register(meterRegistry);
+        if (groupCommit) {
+            groupWriter = new Thread(this::groupWriteLoop, "chat-group-commit");
+            groupWriter.setDaemon(true);
+            groupWriter.start();
+        } else {
+            groupWriter = null;
+        }
+    }
+
+    /** Stops the group writer once it has written every queued request; later writes insert directly. */
+    @PreDestroy
+    void shutdown() {
+        if (groupWriter == null) return;
+        stopped = true;
+        groupWriter.interrupt();
+        try {
+            groupWriter.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Inserts the rows in order and sets their ids; returns once they are committed. */
+    public void write(List<ChatMessage> rows) {
+        if (rows.isEmpty()) return;
+        if (!groupCommit || stopped) {
+            insert(rows);
+            return;
+        }
+        Request request = new Request(rows, new CompletableFuture<>());
+        queue.add(request);
+        if (stopped && queue.remove(request)) {
+            // Queued after the writer's final drain: nobody else will write it.
+            insert(rows);
+            return;
+        }
+        try {
+            request.done().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    private void groupWriteLoop() {
+        List<Request> group = new ArrayList<>();
+        try {
+            while (true) {
+                group.add(queue.take());
+                int rows = group.get(0).rows().size();
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (rows < maxRows) {
+                    Request next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    group.add(next);
+                    rows += next.rows().size();
+                }
+                writeGroup(group);
+                group.clear();
+            }
+        } catch (InterruptedException e) {
+            // Shutting down: write what was taken and everything still queued, so no turn waits forever.
+            queue.drainTo(group);
+            if (!group.isEmpty()) {
+                writeGroup(group);
+            }
+        }
+    }
+
+    /** Inserts the requests' rows in one statement and completes each request with the outcome. */
+    private void writeGroup(List<Request> group) {
+        List<ChatMessage> all = new ArrayList<>();
+        group.forEach(r -> all.addAll(r.rows()));
+        try {
+            insert(all);
+            group.forEach(r -> r.done().complete(null));
+        } catch (RuntimeException e) {
+            log.error("Group commit of {} chat rows from {} turns failed: {}", all.size(), group.size(), e.getMessage());
+            group.forEach(r -> r.done().completeExceptionally(e));
+        }
+    }
+
+    /** One autocommitted statement: all rows are stored or none. */
+    private void insert(List<ChatMessage> rows) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX);
+        for (int i = 0; i < rows.size(); i++) {
+            sql.append(i == 0 ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+        }
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql.toString(), Statement.RETURN_GENERATED_KEYS)) {
+                int p = 1;
+                for (ChatMessage row : rows) {
+                    ps.setLong(p++, row.getUserId());
+                    ps.setString(p++, row.getRole());
+                    ps.setString(p++, row.getContent());
+                    ps.setString(p++, row.getVisibility());
+                }
+                ps.executeUpdate();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (ChatMessage row : rows) {
+                        if (!keys.next()) break;
+                        row.setId(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+        statementRows.record(rows.size());
+    }
+}
@@ -0,0 +1,67 @@
+package com.assistant.core.service;
+
+import com.assistant.core.model.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Chat rows of one conversation turn, buffered in order and written with a single multi-row
+ * INSERT on {@link #flush()} (see {@link ChatMessageBatchWriter}). Rows added after a flush go into
+ * the next flush. Not thread-safe: a turn runs on its user's mailbox thread. Obtain via
+ * {@link ChatMemoryService#beginTurn(Long)}.
+ */
+public final class ChatTurn {
+
+    private final Long userId;
+    private final ChatMessageBatchWriter writer;
+    private final Consumer<List<ChatMessage>> onFlushed;
+    private final List<ChatMessage> pending = new ArrayList<>();
+
+    ChatTurn(Long userId, ChatMessageBatchWriter writer, Consumer<List<ChatMessage>> onFlushed) {
+        this.userId = userId;
+        this.writer = writer;
+        this.onFlushed = onFlushed;
+    }
+
+    public void addUserMessage(String content) {
+        pending.add(ChatMemoryService.row(userId, "USER", content, ChatMessage.VISIBILITY_USER_FACING));
+    }
+
+    /** USER_FACING for the final reply, INTERNAL for tool-call turns. */
+    public void addAssistantMessage(String content, String visibility) {
+        pending.add(ChatMemoryService.row(userId, "ASSISTANT", content,
+                visibility != null ? visibility : ChatMessage.VISIBILITY_USER_FACING));
+    }
+
+    /** The INTERNAL assistant message listing the calls, then one TOOL row per result, in call order. */
+    public void addToolCallTurn(String assistantContent, Map<String, String> resultsByCallId) {
+        addAssistantMessage(assistantContent, ChatMessage.VISIBILITY_INTERNAL);
+        resultsByCallId.forEach((callId, result) -> pending.add(ChatMemoryService.toolResultRow(userId, callId, result)));
+    }
+
+    /** Rows added since the last flush, oldest first; history read from the database does not include them yet. */
+    public List<ChatMessage> pending() {
+        return Collections.unmodifiableList(pending);
+    }
+
+    /** Drops the pending rows without writing them. */
+    public void discard() {
+        pending.clear();
+    }
+
+    /** Writes the pending rows in one statement and returns them with ids set (empty if none). */
+    public List<ChatMessage> flush() {
+        if (pending.isEmpty()) {
+            return List.of();
+        }
+        List<ChatMessage> rows = List.copyOf(pending);
+        writer.write(rows);
+        pending.clear();
+        onFlushed.accept(rows);
+        return rows;
+    }
+}
@@ -0,0 +1,190 @@
+package com.assistant.core.service;
+
+import com.assistant.core.mcp.LLMService;
+import com.assistant.core.model.ChatMessage;
+import com.assistant.core.repository.ChatMessageRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Summarizes a user's history of any length with bounded memory. Rows are read oldest first in
+ * keyset pages (id cursor) and cut into chunks of at most chunk-chars characters (a tail shorter
+ * than a quarter of that joins the chunk before it); each chunk is
+ * summarized by the chat model (up to parallelism calls at once), and every fan-in consecutive
+ * summaries are merged into one summary of the next level. At any time only the current page, one
+ * chunk (two while a full one waits to see whether the tail joins it) and at most fan-in summaries
+ * per level are held. Nothing is deleted here: callers persist
+ * the result first, then remove the rows it covers.
+ */
+@Component
+public class CompactionEngine {
+
+    private static final String CHUNK_PROMPT =
+            "Summarize this part of a conversation history into a highly concise context block. "
+            + "If an earlier summary is included, merge it in. "
+            + "Retain key facts, pending tasks, and user preferences. "
+            + "Drop pleasantries, filler and raw tool output. Output only the summary, nothing else.";
+
+    private static final String MERGE_PROMPT =
+            "These are summaries of consecutive parts of one conversation, oldest first. "
+            + "Merge them into one highly concise context block; when they disagree, the later one wins. "
+            + "Retain key facts, pending tasks, and user preferences. Output only the summary, nothing else.";
+
+    /** Summary of the rows up to lastId (inclusive); rows == 0 means there was nothing to summarize. */
+    public record Result(String summary, int rows, Long lastId) {}
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final LLMService llmService;
+    private final MeterRegistry meterRegistry;
+    private final int pageSize;
+    private final int chunkChars;
+    private final int fanIn;
+    private final int parallelism;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public CompactionEngine(ChatMessageRepository chatMessageRepository,
+                            LLMService llmService,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.compaction.page-size:100}") int pageSize,
+                            @Value("${app.compaction.chunk-chars:24000}") int chunkChars,
+                            @Value("${app.compaction.fan-in:8}") int fanIn,
+                            @Value("${app.compaction.parallelism:2}") int parallelism) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.llmService = llmService;
+        this.meterRegistry = meterRegistry;
+        this.pageSize = Math.max(1, pageSize);
+        this.chunkChars = Math.max(1000, chunkChars);
+        this.fanIn = Math.max(2, fanIn);
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Summarizes the user's rows with id below beforeId (exclusive), oldest first.
+     *
+     * @throws IllegalStateException if the model gave no usable summary for some part
+     */
+    public Result summarize(Long userId, Long beforeId) {
+        Semaphore permits = new Semaphore(parallelism);
+        List<List<CompletableFuture<String>>> levels = new ArrayList<>();
+        StringBuilder chunk = new StringBuilder();
+        // Last full chunk, sent once the next one fills up, or joined by a tiny tail at the end.
+        String held = null;
+        int rows = 0;
+        Long cursor = 0L;
+        while (true) {
+            List<ChatMessage> page = chatMessageRepository.findPageAfter(userId, cursor, beforeId, Pageable.ofSize(pageSize).first());
+            for (ChatMessage m : page) {
+                String line = line(m);
+                if (chunk.length() > 0 && chunk.length() + line.length() > chunkChars) {
+                    if (held != null) {
+                        summarizeChunk(permits, levels, held);
+                    }
+                    held = chunk.toString();
+                    chunk.setLength(0);
+                }
+                chunk.append(line);
+                rows++;
+                cursor = m.getId();
+            }
+            if (page.size() < pageSize) break;
+        }
+        if (rows == 0) {
+            return new Result(null, 0, null);
+        }
+        if (held != null && chunk.length() < chunkChars / 4) {
+            summarizeChunk(permits, levels, held + chunk);
+        } else {
+            if (held != null) {
+                summarizeChunk(permits, levels, held);
+            }
+            summarizeChunk(permits, levels, chunk.toString());
+        }
+
+        // Higher levels cover older rows: collect oldest first, then merge until one is left.
+        List<CompletableFuture<String>> remaining = new ArrayList<>();
+        for (int level = levels.size() - 1; level >= 0; level--) {
+            remaining.addAll(levels.get(level));
+        }
+        while (remaining.size() > 1) {
+            List<CompletableFuture<String>> next = new ArrayList<>();
+            for (int i = 0; i < remaining.size(); i += fanIn) {
+                next.add(merge(permits, remaining.subList(i, Math.min(i + fanIn, remaining.size()))));
+            }
+            remaining = next;
+        }
+        try {
+            return new Result(remaining.get(0).join(), rows, cursor);
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : e;
+        }
+    }
+
+    /** Waits for a permit (so reading cannot run ahead of the model) and starts the chunk's summary. */
+    private void summarizeChunk(Semaphore permits, List<List<CompletableFuture<String>>> levels, String chunk) {
+        permits.acquireUninterruptibly();
+        push(permits, levels, 0, call(permits, CHUNK_PROMPT, chunk));
+    }
+
+    /** Adds a summary at a level; a full level is merged into one summary of the level above. */
+    private void push(Semaphore permits, List<List<CompletableFuture<String>>> levels, int level,
+                      CompletableFuture<String> summary) {
+        while (levels.size() <= level) levels.add(new ArrayList<>());
+        List<CompletableFuture<String>> current = levels.get(level);
+        current.add(summary);
+        if (current.size() == fanIn) {
+            CompletableFuture<String> merged = merge(permits, List.copyOf(current));
+            current.clear();
+            push(permits, levels, level + 1, merged);
+        }
+    }
+
+    private CompletableFuture<String> merge(Semaphore permits, List<CompletableFuture<String>> parts) {
+        if (parts.size() == 1) return parts.get(0);
+        return CompletableFuture.allOf(parts.toArray(CompletableFuture[]::new))
+                .thenCompose(ignored -> {
+                    StringBuilder text = new StringBuilder();
+                    for (int i = 0; i < parts.size(); i++) {
+                        text.append("PART ").append(i + 1).append(":\n").append(parts.get(i).join()).append("\n\n");
+                    }
+                    return CompletableFuture.runAsync(permits::acquireUninterruptibly, executor)
+                            .thenCompose(acquired -> call(permits, MERGE_PROMPT, text.toString()));
+                });
+    }
+
+    /**
+     * Runs one summarization call on a virtual thread; the caller holds a permit, released when the
+     * call ends. Chunk permits are taken by the page reader, so it cannot run ahead of the model.
+     */
+    private CompletableFuture<String> call(Semaphore permits, String prompt, String text) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                meterRegistry.counter("compaction.llm_calls", "kind", prompt == CHUNK_PROMPT ? "chunk" : "merge").increment();
+                return llmService.chat(prompt, text)
+                        .orElseThrow(() -> new IllegalStateException("No usable summary from the model"));
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+
+    private static String line(ChatMessage m) {
+        String role = "SYSTEM".equals(m.getRole()) ? "EARLIER SUMMARY" : m.getRole();
+        return role + ": " + (m.getContent() != null ? m.getContent() : "") + "\n";
+    }
+}
@@ -0,0 +1,138 @@
+package com.assistant.core.service;
+
+import com.assistant.core.util.TokenEstimator;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Picks the history sent to the model by estimated tokens instead of a fixed message count.
+ * Messages are grouped into units (an assistant message with tool_calls together with its tool
+ * results; any other message alone) and units are kept newest first while they fit token-budget.
+ * The newest unit is always kept. When older units are dropped, the latest compaction summary
+ * (SYSTEM row) is put in front of what is kept, so the model still sees the gist of the cut part.
+ */
+@Component
+public class ContextWindowBuilder {
+
+    private final ChatMemoryService chatMemoryService;
+    private final int tokenBudget;
+    private final int maxMessages;
+    private final DistributionSummary contextTokens;
+
+    public ContextWindowBuilder(ChatMemoryService chatMemoryService,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.context.token-budget:8000}") int tokenBudget,
+                                @Value("${app.context.max-messages:200}") int maxMessages) {
+        this.chatMemoryService = chatMemoryService;
+        this.tokenBudget = tokenBudget;
+        this.maxMessages = maxMessages;
+        this.contextTokens = DistributionSummary.builder("llm.context.tokens")
+                .description("Estimated tokens of the history sent with a model call")
+                .register(meterRegistry);
+    }
+
+    /** Rows to load before budgeting; the budget, not this cap, normally limits the window. */
+    public int maxMessages() {
+        return maxMessages;
+    }
+
+    /**
+     * Fits history (oldest first, as stored plus the current turn's unsaved rows) into the token budget.
+     */
+    public List<Map<String, Object>> build(Long userId, List<Map<String, Object>> history) {
+        List<List<Map<String, Object>>> units = units(history);
+        Deque<List<Map<String, Object>>> kept = new ArrayDeque<>();
+        int used = 0;
+        boolean truncated = false;
+        for (int i = units.size() - 1; i >= 0; i--) {
+            int tokens = tokens(units.get(i));
+            if (!kept.isEmpty() && used + tokens > tokenBudget) {
+                truncated = true;
+                break;
+            }
+            kept.addFirst(units.get(i));
+            used += tokens;
+        }
+        // History cut by the row cap (including tool results whose call was cut off) is truncated too.
+        truncated |= history.size() >= maxMessages || history.size() > countMessages(units);
+
+        List<Map<String, Object>> window = new ArrayList<>();
+        if (truncated && kept.stream().noneMatch(ContextWindowBuilder::isSummary)) {
+            Optional<Map<String, Object>> summary = latestSummary(userId, history);
+            if (summary.isPresent()) {
+                int summaryTokens = TokenEstimator.estimateMessage(summary.get());
+                // Make room for the summary by dropping the oldest kept units (never the newest).
+                while (kept.size() > 1 && used + summaryTokens > tokenBudget) {
+                    used -= tokens(kept.removeFirst());
+                }
+                window.add(summary.get());
+                used += summaryTokens;
+            }
+        }
+        kept.forEach(window::addAll);
+        contextTokens.record(used);
+        return window;
+    }
+
+    /**
+     * Groups messages into units that must be kept or dropped together. Tool results at the start
+     * whose assistant tool_calls message was not loaded are skipped: the API rejects orphans.
+     */
+    private static List<List<Map<String, Object>>> units(List<Map<String, Object>> history) {
+        List<List<Map<String, Object>>> units = new ArrayList<>();
+        List<Map<String, Object>> current = null;
+        for (Map<String, Object> message : history) {
+            boolean toolResult = "tool".equals(message.get("role"));
+            if (toolResult) {
+                if (current != null && hasToolCalls(current.get(0))) {
+                    current.add(message);
+                }
+                continue;
+            }
+            current = new ArrayList<>();
+            current.add(message);
+            units.add(current);
+        }
+        return units;
+    }
+
+    private static int countMessages(List<List<Map<String, Object>>> units) {
+        int n = 0;
+        for (List<Map<String, Object>> unit : units) n += unit.size();
+        return n;
+    }
+
+    private Optional<Map<String, Object>> latestSummary(Long userId, List<Map<String, Object>> history) {
+        for (int i = history.size() - 1; i >= 0; i--) {
+            if (isSummary(history.get(i))) return Optional.of(history.get(i));
+        }
+        return chatMemoryService.getLatestSummaryForContext(userId);
+    }
+
+    private static boolean isSummary(List<Map<String, Object>> unit) {
+        return isSummary(unit.get(0));
+    }
+
+    private static boolean isSummary(Map<String, Object> message) {
+        return "system".equals(message.get("role"));
+    }
+
+    private static boolean hasToolCalls(Map<String, Object> message) {
+        return message.get("tool_calls") instanceof List<?> calls && !calls.isEmpty();
+    }
+
+    private static int tokens(List<Map<String, Object>> unit) {
+        int tokens = 0;
+        for (Map<String, Object> message : unit) tokens += TokenEstimator.estimateMessage(message);
+        return tokens;
+    }
+}
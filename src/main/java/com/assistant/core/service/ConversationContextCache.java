@@ -0,0 +1,199 @@
+package com.assistant.core.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Parsed LLM context (API-shaped message maps, oldest first) of recently active users, so a turn
+ * does not reload and re-parse the history the previous turn just built. Filled on a miss from the
+ * database, then kept current by appending each saved message and trimming to the loaded limit.
+ * Entries are dropped when idle for idle-minutes, and least recently used first when the estimated
+ * size of all entries exceeds max-bytes. Per instance: only {@link ChatMemoryService} may write
+ * chat_messages, or entries go stale.
+ */
+@Component
+public class ConversationContextCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationContextCache.class);
+
+    private static final class Entry {
+        final int limit;
+        final ArrayDeque<Map<String, Object>> messages = new ArrayDeque<>();
+        final ArrayDeque<Long> sizes = new ArrayDeque<>();
+        long bytes;
+        long lastAccessNanos;
+
+        Entry(int limit) {
+            this.limit = limit;
+        }
+    }
+
+    /** Access-ordered, so iteration starts at the least recently used entry. Guarded by this. */
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final boolean enabled;
+    private final long maxBytes;
+    private final long idleNanos;
+    private final MeterRegistry meterRegistry;
+    private long totalBytes;
+
+    public ConversationContextCache(@Value("${app.context-cache.enabled:true}") boolean enabled,
+                                    @Value("${app.context-cache.max-bytes:67108864}") long maxBytes,
+                                    @Value("${app.context-cache.idle-minutes:15}") long idleMinutes,
+                                    MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxBytes = maxBytes;
+        this.idleNanos = TimeUnit.MINUTES.toNanos(idleMinutes);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void registerGauges() {
+        Gauge.builder("context.cache.bytes", this, c -> c.stat(() -> c.totalBytes)).register(meterRegistry);
+        Gauge.builder("context.cache.users", this, c -> c.stat(c.entries::size)).register(meterRegistry);
+    }
+
+    /** Cached context for the user if it was loaded with the same limit. */
+    public synchronized Optional<List<Map<String, Object>>> get(Long userId, int limit) {
+        if (!enabled) return Optional.empty();
+        Entry entry = entries.get(userId);
+        boolean hit = entry != null && entry.limit == limit;
+        meterRegistry.counter("context.cache.requests", "result", hit ? "hit" : "miss").increment();
+        if (!hit) return Optional.empty();
+        entry.lastAccessNanos = System.nanoTime();
+        return Optional.of(List.copyOf(entry.messages));
+    }
+
+    /** Stores context just loaded from the database with the given limit. */
+    public synchronized void put(Long userId, int limit, List<Map<String, Object>> messages) {
+        if (!enabled) return;
+        remove(userId);
+        Entry entry = new Entry(limit);
+        entry.lastAccessNanos = System.nanoTime();
+        entries.put(userId, entry);
+        addAll(entry, messages);
+        evictOverBudget();
+    }
+
+    /** Appends newly saved messages (in save order) if the user is cached; otherwise a later miss loads them. */
+    public synchronized void append(Long userId, List<Map<String, Object>> messages) {
+        if (!enabled) return;
+        Entry entry = entries.get(userId);
+        if (entry == null) return;
+        addAll(entry, messages);
+        evictOverBudget();
+    }
+
+    public synchronized void invalidate(Long userId) {
+        remove(userId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.context-cache.sweep-interval-ms:60000}")
+    public synchronized void evictIdle() {
+        long now = System.nanoTime();
+        int evicted = 0;
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (now - entry.lastAccessNanos > idleNanos) {
+                totalBytes -= entry.bytes;
+                it.remove();
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            log.debug("Context cache: evicted {} idle users", evicted);
+        }
+    }
+
+    private void addAll(Entry entry, List<Map<String, Object>> messages) {
+        for (Map<String, Object> message : messages) {
+            long size = estimateBytes(message);
+            entry.messages.addLast(immutableMap(message));
+            entry.sizes.addLast(size);
+            entry.bytes += size;
+            totalBytes += size;
+        }
+        while (entry.messages.size() > entry.limit) {
+            entry.messages.removeFirst();
+            long size = entry.sizes.removeFirst();
+            entry.bytes -= size;
+            totalBytes -= size;
+        }
+    }
+
+    private void evictOverBudget() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Entry entry = it.next();
+            totalBytes -= entry.bytes;
+            it.remove();
+            meterRegistry.counter("context.cache.evictions", "reason", "size").increment();
+        }
+    }
+
+    private void remove(Long userId) {
+        Entry entry = entries.remove(userId);
+        if (entry != null) {
+            totalBytes -= entry.bytes;
+        }
+    }
+
+    /**
+     * Deep read-only copy, so callers cannot change a cached entry through nested maps or lists
+     * (tool_calls and their function maps). Keeps order and null values, unlike Map.copyOf.
+     */
+    private static Map<String, Object> immutableMap(Map<?, ?> map) {
+        Map<String, Object> copy = new LinkedHashMap<>();
+        map.forEach((k, v) -> copy.put(String.valueOf(k), immutable(v)));
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private static Object immutable(Object value) {
+        if (value instanceof Map<?, ?> map) return immutableMap(map);
+        if (value instanceof Collection<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            for (Object item : list) copy.add(immutable(item));
+            return Collections.unmodifiableList(copy);
+        }
+        return value;
+    }
+
+    /** Rough heap footprint: map and entry overhead plus two bytes per character of each value. */
+    private static long estimateBytes(Object value) {
+        if (value instanceof String s) return 40 + 2L * s.length();
+        if (value instanceof Map<?, ?> map) {
+            long bytes = 48;
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                bytes += 32 + estimateBytes(e.getKey()) + estimateBytes(e.getValue());
+            }
+            return bytes;
+        }
+        if (value instanceof Collection<?> list) {
+            long bytes = 24;
+            for (Object item : list) bytes += 8 + estimateBytes(item);
+            return bytes;
+        }
+        return 16;
+    }
+
+    private synchronized double stat(LongSupplier supplier) {
+        return supplier.getAsLong();
+    }
+}
@@ -1,25 +1,45 @@
 package com.assistant.core.service;
 
 import com.assistant.core.mcp.ChatWithToolsResult;
+import com.assistant.core.mcp.ConversationStateExpiredException;
 import com.assistant.core.mcp.LLMService;
+import com.assistant.core.mcp.LLMStreamListener;
 import com.assistant.core.mcp.ToolRouter;
 import com.assistant.core.model.ChatMessage;
+import com.assistant.core.model.ConversationState;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
- * Reusable conversation loop: load history, add user message, then loop: LLM with tools →
- * if tool_calls: execute each (dedupe by id), append assistant + tool result messages, persist as INTERNAL, repeat;
- * else persist final reply as USER_FACING and return. No channel-specific logic (e.g. WhatsApp).
+ * Reusable conversation loop: load history (fitted to a token budget by {@link ContextWindowBuilder}),
+ * add user message, then loop: LLM with tools →
+ * if tool_calls: execute them (dedupe by id; independent calls concurrently, reads bounded by app.tools.turn-timeout-ms),
+ * append assistant + tool result messages as INTERNAL, repeat;
+ * else add final reply as USER_FACING and return. The turn's rows are written together at the end
+ * ({@link ChatTurn}). No channel-specific logic (e.g. WhatsApp).
+ * In streaming mode, tool calls start as soon as the model has finished their arguments. The reply
+ * goes to a sink (web chat) only once the model's turn is known to be final: text of a turn that
+ * ends in tool calls, or of a stream that fails midway, is never shown, so the client always sees
+ * exactly the persisted reply.
+ * With app.llm.server-state.enabled the provider keeps the conversation (previous_response_id):
+ * each call sends only the items it has not seen, and full history is resent if that state is gone.
+ * Simple commands are answered by {@link FastPathRouter} before the loop, without an LLM call.
+ * Messages of one user run one at a time, in order, through {@link UserMailboxScheduler}.
  */
 @Service
 public class ConversationOrchestratorService {
@@ -27,69 +47,186 @@ public class ConversationOrchestratorService {
     private static final Logger log = LoggerFactory.getLogger(ConversationOrchestratorService.class);
     private static final ObjectMapper JSON = new ObjectMapper();
     private static final int MAX_ITERATIONS = 5;
-    private static final int HISTORY_LIMIT = 50;
+    /** Catch-up rows sent when continuing server-side; more than this and the full (budgeted) history is sent instead. */
+    private static final int MAX_UNSEEN_MESSAGES = 50;
 
     private final ChatMemoryService chatMemoryService;
     private final LLMService llmService;
     private final ToolRouter toolRouter;
+    private final ConversationStateService conversationStateService;
+    private final FastPathRouter fastPathRouter;
+    private final UserMailboxScheduler mailboxScheduler;
+    private final ContextWindowBuilder contextWindowBuilder;
+    private final boolean streamingEnabled;
+    private final long toolTurnTimeoutNanos;
+    /** Runs tool calls off the request thread: independent calls of one turn fan out, and can start while the model streams. */
+    private final ExecutorService toolExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
     public ConversationOrchestratorService(ChatMemoryService chatMemoryService,
                                            LLMService llmService,
-                                           ToolRouter toolRouter) {
+                                           ToolRouter toolRouter,
+                                           ConversationStateService conversationStateService,
+                                           FastPathRouter fastPathRouter,
+                                           UserMailboxScheduler mailboxScheduler,
+                                           ContextWindowBuilder contextWindowBuilder,
+                                           @Value("${app.llm.streaming.enabled:false}") boolean streamingEnabled,
+                                           @Value("${app.tools.turn-timeout-ms:20000}") long toolTurnTimeoutMs) {
         this.chatMemoryService = chatMemoryService;
         this.llmService = llmService;
         this.toolRouter = toolRouter;
+        this.conversationStateService = conversationStateService;
+        this.fastPathRouter = fastPathRouter;
+        this.mailboxScheduler = mailboxScheduler;
+        this.contextWindowBuilder = contextWindowBuilder;
+        this.streamingEnabled = streamingEnabled;
+        this.toolTurnTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(toolTurnTimeoutMs);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        toolExecutor.shutdown();
     }
 
     /**
      * Processes one user message: persists it (USER_FACING), runs the loop until the model
      * returns a final text reply, persists that (USER_FACING), and returns the reply string.
+     * Uses the streaming Responses API when app.llm.streaming.enabled is set, so tools start
+     * before the model finishes its turn.
+     *
+     * @throws ReplyUnavailableException if the LLM was busy or failed; its message is the apology to show
      */
     public String processMessage(Long userId, String userMessage) {
-        chatMemoryService.saveUserMessage(userId, userMessage);
-        // History is oldest-first (API expects chronological order for correct turn-taking).
-        List<Map<String, Object>> messages = new ArrayList<>(chatMemoryService.getConversationHistoryForContext(userId, HISTORY_LIMIT));
+        return mailboxScheduler.run(userId, () -> runConversation(userId, userMessage, streamingEnabled, null));
+    }
+
+    /**
+     * Same loop as {@link #processMessage(Long, String)} but always streams, and pushes the final
+     * answer's text to tokenSink chunk by chunk as the model produces it. The returned reply (the text
+     * that is persisted) is authoritative: a call that streamed text and then turned to tools, or
+     * failed, leaves chunks that are not part of it.
+     */
+    public String processMessageStreaming(Long userId, String userMessage, Consumer<String> tokenSink) {
+        return mailboxScheduler.run(userId, () -> runConversation(userId, userMessage, true, tokenSink));
+    }
+
+    /** Buffers the turn's chat rows and writes them in one statement at the end, even if the loop fails. */
+    private String runConversation(Long userId, String userMessage, boolean streaming, Consumer<String> tokenSink) {
+        ChatTurn turn = chatMemoryService.beginTurn(userId);
+        turn.addUserMessage(userMessage);
+        String reply;
+        try {
+            reply = runConversation(userId, userMessage, streaming, tokenSink, turn);
+        } catch (RuntimeException | Error e) {
+            try {
+                turn.flush();
+            } catch (RuntimeException flushFailure) {
+                // Keep the loop's failure as the cause callers see.
+                e.addSuppressed(flushFailure);
+            }
+            throw e;
+        }
+        turn.flush();
+        return reply;
+    }
+
+    private String runConversation(Long userId, String userMessage, boolean streaming, Consumer<String> tokenSink,
+                                   ChatTurn turn) {
+        Optional<String> fastReply = fastPathRouter.tryHandle(userId, userMessage);
+        if (fastReply.isPresent()) {
+            if (tokenSink != null) {
+                tokenSink.accept(fastReply.get());
+            }
+            // Persisted like any reply; with server-side state the next turn picks it up as unseen history.
+            turn.addAssistantMessage(fastReply.get(), ChatMessage.VISIBILITY_USER_FACING);
+            return fastReply.get();
+        }
+        // Items to send on the next call: the full history (oldest first, as the API expects for
+        // correct turn-taking), or only what the provider has not seen when continuing previousResponseId.
+        List<Map<String, Object>> messages = null;
+        String previousResponseId = null;
+        Optional<ConversationState> state = conversationStateService.findUsable(userId);
+        if (state.isPresent()) {
+            List<ChatMessage> unseen = chatMemoryService.getMessagesAfter(userId, state.get().getLastMessageId(), MAX_UNSEEN_MESSAGES);
+            if (unseen.size() < MAX_UNSEEN_MESSAGES) {
+                previousResponseId = state.get().getResponseId();
+                messages = new ArrayList<>(chatMemoryService.toContextMessages(unseen));
+                messages.addAll(chatMemoryService.toContextMessages(turn.pending()));
+            }
+        }
+        if (messages == null) {
+            messages = fullHistory(userId, turn);
+        }
 
         int iteration = 0;
         while (iteration < MAX_ITERATIONS) {
-            ChatWithToolsResult result = llmService.chatWithTools(userId, messages);
+            ToolCallBatch batch = new ToolCallBatch(toolRouter, toolExecutor, userId);
+            AtomicBoolean streamed = new AtomicBoolean();
+            ChatWithToolsResult result;
+            try {
+                result = callModel(userId, messages, previousResponseId, streaming, batch, tokenSink, streamed);
+            } catch (ConversationStateExpiredException e) {
+                log.info("userId={}: provider conversation state expired; resending full history", userId);
+                conversationStateService.clear(userId);
+                previousResponseId = null;
+                messages = fullHistory(userId, turn);
+                continue;
+            }
             if (result instanceof ChatWithToolsResult.Content content) {
                 String text = content.text();
-                chatMemoryService.saveAssistantMessage(userId, text, ChatMessage.VISIBILITY_USER_FACING);
+                if (tokenSink != null && !streamed.get()) {
+                    tokenSink.accept(text);
+                }
+                turn.addAssistantMessage(text, ChatMessage.VISIBILITY_USER_FACING);
+                List<ChatMessage> saved = turn.flush();
+                if (conversationStateService.isEnabled() && content.responseId() != null) {
+                    conversationStateService.save(userId, content.responseId(), saved.get(saved.size() - 1).getId());
+                }
                 return text;
             }
+            if (result instanceof ChatWithToolsResult.Unavailable unavailable) {
+                // Not a reply: keep it out of the history. Without tool work the user's message goes
+                // too, so their retry is not in the history twice.
+                if (turn.pending().size() == 1) {
+                    turn.discard();
+                }
+                throw new ReplyUnavailableException(unavailable.text());
+            }
             if (result instanceof ChatWithToolsResult.ToolCalls toolCalls) {
-                Set<String> processedIds = new HashSet<>();
-                List<ChatWithToolsResult.SingleToolCall> calls = toolCalls.calls();
-                List<Map<String, Object>> assistantToolCallsApi = new ArrayList<>();
-                List<ChatWithToolsResult.SingleToolCall> toExecute = new ArrayList<>();
-                for (ChatWithToolsResult.SingleToolCall call : calls) {
-                    if (processedIds.contains(call.id())) {
-                        log.warn("Skipping duplicate tool call id: {}", call.id());
-                        continue;
+                for (ChatWithToolsResult.SingleToolCall call : toolCalls.calls()) {
+                    if (!batch.isSubmitted(call.id())) {
+                        batch.submit(call);
                     }
-                    processedIds.add(call.id());
+                }
+                List<ToolCallBatch.Executed> executed = batch.awaitAll(System.nanoTime() + toolTurnTimeoutNanos);
+                log.debug("userId={} iteration={}: executed {} tool call(s)", userId, iteration, executed.size());
+                List<Map<String, Object>> assistantToolCallsApi = new ArrayList<>();
+                for (ToolCallBatch.Executed e : executed) {
+                    ChatWithToolsResult.SingleToolCall call = e.call();
                     assistantToolCallsApi.add(Map.of(
                             "id", call.id(),
                             "type", "function",
                             "function", Map.of("name", call.name(), "arguments", toJsonArgs(call.arguments()))
                     ));
-                    toExecute.add(call);
                 }
-                messages.add(assistantMessageWithToolCalls(assistantToolCallsApi));
-                chatMemoryService.saveAssistantMessage(userId, assistantContentJson(assistantToolCallsApi), ChatMessage.VISIBILITY_INTERNAL);
-                for (ChatWithToolsResult.SingleToolCall call : toExecute) {
-                    Map<String, Object> args = ensureUserId(call.arguments(), userId);
-                    String resultStr;
-                    try {
-                        Map<String, Object> toolResult = toolRouter.invoke(call.name(), args);
-                        resultStr = JSON.writeValueAsString(toolResult);
-                    } catch (Exception e) {
-                        log.error("Tool execution failed: {} - {}", call.name(), e.getMessage(), e);
-                        resultStr = "Error: " + e.getMessage();
-                    }
-                    messages.add(toolMessage(call.id(), resultStr));
-                    chatMemoryService.saveToolResultMessage(userId, call.id(), resultStr);
+                // The provider already holds its own function calls; continuing it needs only the results.
+                boolean continueServerSide = conversationStateService.isEnabled() && toolCalls.responseId() != null;
+                if (continueServerSide) {
+                    messages = new ArrayList<>();
+                } else {
+                    messages.add(assistantMessageWithToolCalls(assistantToolCallsApi));
+                }
+                Map<String, String> resultsByCallId = new LinkedHashMap<>();
+                for (ToolCallBatch.Executed e : executed) {
+                    messages.add(toolMessage(e.call().id(), e.result()));
+                    resultsByCallId.put(e.call().id(), e.result());
+                }
+                turn.addToolCallTurn(assistantContentJson(assistantToolCallsApi), resultsByCallId);
+                if (continueServerSide) {
+                    previousResponseId = toolCalls.responseId();
+                } else if (previousResponseId != null) {
+                    // No id to continue from (e.g. interrupted stream): messages lacks earlier turns, rebuild it.
+                    previousResponseId = null;
+                    messages = fullHistory(userId, turn);
                 }
                 iteration++;
                 continue;
@@ -97,10 +234,44 @@ public class ConversationOrchestratorService {
             iteration++;
         }
         String fallback = "I couldn't complete that in time. Please try again.";
-        chatMemoryService.saveAssistantMessage(userId, fallback, ChatMessage.VISIBILITY_USER_FACING);
+        if (tokenSink != null) {
+            tokenSink.accept(fallback);
+        }
+        turn.addAssistantMessage(fallback, ChatMessage.VISIBILITY_USER_FACING);
         return fallback;
     }
 
+    /** Stored history plus the turn's rows not yet written, oldest first, fitted to the token budget. */
+    private List<Map<String, Object>> fullHistory(Long userId, ChatTurn turn) {
+        List<Map<String, Object>> history = new ArrayList<>(
+                chatMemoryService.getConversationHistoryForContext(userId, contextWindowBuilder.maxMessages()));
+        history.addAll(chatMemoryService.toContextMessages(turn.pending()));
+        return new ArrayList<>(contextWindowBuilder.build(userId, history));
+    }
+
+    /** Calls the model once; when streaming, tool calls start as they arrive and answer text goes to tokenSink. */
+    private ChatWithToolsResult callModel(Long userId, List<Map<String, Object>> messages, String previousResponseId,
+                                          boolean streaming, ToolCallBatch batch, Consumer<String> tokenSink,
+                                          AtomicBoolean streamed) {
+        if (streaming) {
+            return llmService.chatWithToolsStreaming(userId, messages, previousResponseId, new LLMStreamListener() {
+                @Override
+                public void onTextDelta(String delta) {
+                    if (tokenSink != null) {
+                        streamed.set(true);
+                        tokenSink.accept(delta);
+                    }
+                }
+
+                @Override
+                public void onToolCall(ChatWithToolsResult.SingleToolCall call) {
+                    batch.submit(call);
+                }
+            });
+        }
+        return llmService.chatWithTools(userId, messages, previousResponseId);
+    }
+
     private static String toJsonArgs(Map<String, Object> arguments) {
         try {
             return JSON.writeValueAsString(arguments != null ? arguments : Map.of());
@@ -109,12 +280,6 @@ public class ConversationOrchestratorService {
         }
     }
 
-    private static Map<String, Object> ensureUserId(Map<String, Object> parameters, Long userId) {
-        Map<String, Object> out = new LinkedHashMap<>(parameters != null ? parameters : Map.of());
-        out.put("userId", userId);
-        return out;
-    }
-
     private static Map<String, Object> assistantMessageWithToolCalls(List<Map<String, Object>> toolCallsApi) {
         Map<String, Object> m = new LinkedHashMap<>();
         m.put("role", "assistant");
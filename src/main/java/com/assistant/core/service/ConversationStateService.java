@@ -0,0 +1,84 @@
+package com.assistant.core.service;
+
+import com.assistant.core.model.ConversationState;
+import com.assistant.core.repository.ConversationStateRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Stores, per user, the id of the last provider response so the next turn can continue the
+ * conversation server-side (previous_response_id) and send only new input items. State is
+ * discarded after a TTL or a number of chained turns, so the provider-side chain (billed as input
+ * on every call) stays bounded and is periodically rebuilt from the recent local history.
+ */
+@Service
+public class ConversationStateService {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationStateService.class);
+
+    private final ConversationStateRepository conversationStateRepository;
+    private final boolean enabled;
+    private final Duration ttl;
+    private final int maxTurns;
+
+    public ConversationStateService(ConversationStateRepository conversationStateRepository,
+                                    @Value("${app.llm.server-state.enabled:false}") boolean enabled,
+                                    @Value("${app.llm.server-state.ttl-minutes:60}") long ttlMinutes,
+                                    @Value("${app.llm.server-state.max-turns:20}") int maxTurns) {
+        this.conversationStateRepository = conversationStateRepository;
+        this.enabled = enabled;
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        this.maxTurns = maxTurns;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Returns the user's state if server-side state is enabled and the state is still fresh. */
+    public Optional<ConversationState> findUsable(Long userId) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Optional<ConversationState> state = conversationStateRepository.findById(userId);
+        if (state.isEmpty()) {
+            return state;
+        }
+        ConversationState s = state.get();
+        boolean stale = s.getModifiedAt() == null || s.getModifiedAt().plus(ttl).isBefore(Instant.now());
+        if (stale || s.getTurnCount() >= maxTurns) {
+            log.debug("Discarding conversation state for userId={} (stale={}, turns={})", userId, stale, s.getTurnCount());
+            conversationStateRepository.delete(s);
+            return Optional.empty();
+        }
+        return state;
+    }
+
+    /** Records the response that ended a turn; lastMessageId is the newest chat message it covers. */
+    public void save(Long userId, String responseId, Long lastMessageId) {
+        if (!enabled) {
+            return;
+        }
+        ConversationState state = conversationStateRepository.findById(userId).orElseGet(() -> {
+            ConversationState s = new ConversationState();
+            s.setUserId(userId);
+            return s;
+        });
+        state.setTurnCount(state.getTurnCount() + 1);
+        state.setResponseId(responseId);
+        state.setLastMessageId(lastMessageId);
+        state.setModifiedAt(Instant.now());
+        conversationStateRepository.save(state);
+    }
+
+    /** Forgets the user's provider-side conversation; the next turn sends full history. */
+    public void clear(Long userId) {
+        conversationStateRepository.findById(userId).ifPresent(conversationStateRepository::delete);
+    }
+}
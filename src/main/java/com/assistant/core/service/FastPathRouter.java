@@ -0,0 +1,248 @@
+package com.assistant.core.service;
+
+import com.assistant.core.mcp.ToolRouter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Answers common, unambiguous commands ("list my tasks", "show my people", "done milk") without
+ * the LLM: the message is matched against a fixed grammar of compiled patterns, each with a
+ * confidence score; above app.fastpath.min-confidence the matching tool is invoked directly via
+ * ToolRouter and the reply is rendered from a template. Anything else, or a tool result that needs
+ * judgement (e.g. no task matched), falls through to the conversation loop.
+ */
+@Service
+public class FastPathRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(FastPathRouter.class);
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("MMM d, h:mm a")
+            .withZone(ZoneId.systemDefault());
+    private static final int MAX_REFERENCE_WORDS = 6;
+
+    enum Intent {
+        LIST_TASKS("list_tasks", null),
+        LIST_PEOPLE("retrieve_people", null),
+        MARK_DONE("resolve_and_act_on_task", "mark_done"),
+        MARK_IN_PROGRESS("resolve_and_act_on_task", "mark_in_progress"),
+        MARK_PENDING("resolve_and_act_on_task", "mark_pending"),
+        DELETE_TASK("resolve_and_act_on_task", "delete");
+
+        final String tool;
+        final String action;
+
+        Intent(String tool, String action) {
+            this.tool = tool;
+            this.action = action;
+        }
+    }
+
+    /** A grammar rule; task-action patterns capture the task reference in group "ref". */
+    private record Rule(Intent intent, Pattern pattern, double confidence) {
+        static Rule of(Intent intent, double confidence, String regex) {
+            return new Rule(intent, Pattern.compile(regex), confidence);
+        }
+    }
+
+    record Match(Intent intent, String reference, double confidence) {}
+
+    private static final String TASKS = "(?:tasks?|to-?dos?|to-?do list|task list|list)";
+    private static final String PEOPLE = "(?:people|contacts|saved people)";
+    private static final String SHOW = "(?:show|list|view|see|get|give|display|check)(?: me)?(?: all)?";
+
+    /** Evaluated in order; the first matching rule wins, so more specific patterns come first. */
+    private static final List<Rule> RULES = List.of(
+            Rule.of(Intent.LIST_TASKS, 0.97, "^" + SHOW + " (?:my |the )?" + TASKS + "$"),
+            Rule.of(Intent.LIST_TASKS, 0.95, "^what(?: are|'s| is|s)? (?:my|on my) " + TASKS + "$"),
+            Rule.of(Intent.LIST_TASKS, 0.9, "^(?:my )?" + TASKS + "$"),
+            Rule.of(Intent.LIST_TASKS, 0.9, "^what(?: do i have| have i got) (?:to do|pending|due)$"),
+            Rule.of(Intent.LIST_PEOPLE, 0.97, "^" + SHOW + " (?:my |the )?" + PEOPLE + "$"),
+            Rule.of(Intent.LIST_PEOPLE, 0.95, "^who(?: are|'s| is) (?:in )?my " + PEOPLE + "$"),
+            Rule.of(Intent.LIST_PEOPLE, 0.9, "^(?:my )?" + PEOPLE + "$"),
+            Rule.of(Intent.MARK_IN_PROGRESS, 0.92, "^(?:mark|set|move) (?<ref>.+?) (?:as |to )?in[ -]progress$"),
+            Rule.of(Intent.MARK_PENDING, 0.92, "^(?:mark|set|move) (?<ref>.+?) (?:as |to |back to )?(?:pending|not done|undone)$"),
+            Rule.of(Intent.MARK_DONE, 0.92, "^(?:mark|set) (?<ref>.+?) (?:as )?(?:done|complete|completed|finished)$"),
+            Rule.of(Intent.MARK_DONE, 0.88, "^(?:done|finished|completed|complete)(?: with)? (?<ref>.+)$"),
+            Rule.of(Intent.MARK_DONE, 0.7, "^(?<ref>.+?) (?:is )?(?:done|finished|completed)$"),
+            // Deleting is destructive and "remove john" may mean a person: only confident when "task" is explicit.
+            Rule.of(Intent.DELETE_TASK, 0.9, "^(?:delete|remove|cancel) (?<ref>.+?)(?: task| from my (?:tasks|task list|to-?do list|list))$"),
+            Rule.of(Intent.DELETE_TASK, 0.75, "^(?:delete|remove|cancel) (?<ref>.+)$")
+    );
+
+    /** Words that suggest the message carries more than a bare task reference (times, follow-ups). */
+    private static final Pattern COMPOUND_REFERENCE = Pattern.compile(
+            "\\b(?:and|then|also|but|tomorrow|today|tonight|at|on|by|remind|add|create)\\b|[,;:]|\\d");
+
+    private final ToolRouter toolRouter;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final double minConfidence;
+
+    public FastPathRouter(ToolRouter toolRouter,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.fastpath.enabled:true}") boolean enabled,
+                          @Value("${app.fastpath.min-confidence:0.85}") double minConfidence) {
+        this.toolRouter = toolRouter;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.minConfidence = minConfidence;
+    }
+
+    /**
+     * Returns the reply if the message was handled locally, or empty to use the LLM loop.
+     * Never throws: tool errors are logged and fall through to the loop.
+     */
+    public Optional<String> tryHandle(Long userId, String message) {
+        if (!enabled || message == null) {
+            return Optional.empty();
+        }
+        Optional<Match> match = match(message);
+        if (match.isEmpty() || match.get().confidence() < minConfidence) {
+            record("miss", match.map(m -> m.intent().name()).orElse("none"));
+            return Optional.empty();
+        }
+        Match m = match.get();
+        try {
+            Optional<String> reply = dispatch(userId, m);
+            record(reply.isPresent() ? "hit" : "fallback", m.intent().name());
+            if (reply.isPresent()) {
+                log.debug("Fast path handled userId={} intent={} confidence={}", userId, m.intent(), m.confidence());
+            }
+            return reply;
+        } catch (Exception e) {
+            log.warn("Fast path failed for userId={} intent={}: {}", userId, m.intent(), e.getMessage());
+            record("fallback", m.intent().name());
+            return Optional.empty();
+        }
+    }
+
+    /** Matches the normalized message against the grammar; confidence is lowered for doubtful task references. */
+    Optional<Match> match(String message) {
+        String text = normalize(message);
+        if (text.isEmpty()) {
+            return Optional.empty();
+        }
+        for (Rule rule : RULES) {
+            Matcher matcher = rule.pattern().matcher(text);
+            if (!matcher.matches()) {
+                continue;
+            }
+            if (rule.intent().action == null) {
+                return Optional.of(new Match(rule.intent(), null, rule.confidence()));
+            }
+            String ref = cleanReference(matcher.group("ref"));
+            double confidence = rule.confidence();
+            if (ref.isEmpty()) {
+                continue;
+            }
+            if (ref.split(" ").length > MAX_REFERENCE_WORDS || COMPOUND_REFERENCE.matcher(ref).find()) {
+                confidence -= 0.3;
+            }
+            return Optional.of(new Match(rule.intent(), ref, confidence));
+        }
+        return Optional.empty();
+    }
+
+    private Optional<String> dispatch(Long userId, Match m) {
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("userId", userId);
+        if (m.intent().action != null) {
+            args.put("userDescription", m.reference());
+            args.put("action", m.intent().action);
+        }
+        Map<String, Object> result = toolRouter.invokeRaw(m.intent().tool, args);
+        return switch (m.intent()) {
+            case LIST_TASKS -> Optional.of(renderTasks(result));
+            case LIST_PEOPLE -> Optional.of(renderPeople(result));
+            default -> renderTaskAction(m, result);
+        };
+    }
+
+    private static String renderTasks(Map<String, Object> result) {
+        List<?> tasks = result.get("tasks") instanceof List<?> l ? l : List.of();
+        if (tasks.isEmpty()) {
+            return "You have no active tasks.";
+        }
+        StringBuilder sb = new StringBuilder("Your tasks:");
+        int i = 1;
+        for (Object o : tasks) {
+            if (!(o instanceof Map<?, ?> t)) continue;
+            sb.append('\n').append(i++).append(". ").append(t.get("title"));
+            String due = formatTime(t.get("dueTime"));
+            if (due != null) sb.append(" (due ").append(due).append(')');
+            if ("IN_PROGRESS".equals(t.get("status"))) sb.append(" [in progress]");
+        }
+        return sb.toString();
+    }
+
+    private static String renderPeople(Map<String, Object> result) {
+        List<?> people = result.get("people") instanceof List<?> l ? l : List.of();
+        if (people.isEmpty()) {
+            return "You haven't saved anyone yet.";
+        }
+        StringBuilder sb = new StringBuilder("Your people:");
+        int i = 1;
+        for (Object o : people) {
+            if (!(o instanceof Map<?, ?> p)) continue;
+            sb.append('\n').append(i++).append(". ").append(p.get("name"));
+            Object notes = p.get("notes");
+            if (notes != null && !notes.toString().isBlank()) sb.append(" — ").append(notes);
+        }
+        return sb.toString();
+    }
+
+    /** Resolved and ambiguous results are templated; "not found" goes to the LLM, which may rephrase the search. */
+    private static Optional<String> renderTaskAction(Match m, Map<String, Object> result) {
+        if (Boolean.TRUE.equals(result.get("resolved"))) {
+            return Optional.of(String.valueOf(result.get("message")) + ".");
+        }
+        if (Boolean.TRUE.equals(result.get("ambiguous")) && result.get("candidates") instanceof List<?> candidates) {
+            StringBuilder sb = new StringBuilder("Several tasks match \"").append(m.reference()).append("\":");
+            int i = 1;
+            for (Object o : candidates) {
+                if (o instanceof Map<?, ?> t) sb.append('\n').append(i++).append(". ").append(t.get("title"));
+            }
+            return Optional.of(sb.append("\nWhich one did you mean?").toString());
+        }
+        return Optional.empty();
+    }
+
+    private static String formatTime(Object isoInstant) {
+        if (isoInstant == null) return null;
+        try {
+            return TIME_FORMAT.format(Instant.parse(isoInstant.toString()));
+        } catch (Exception e) {
+            return isoInstant.toString();
+        }
+    }
+
+    private static String normalize(String message) {
+        String s = message.strip().toLowerCase(Locale.ROOT).replace('’', '\'');
+        s = s.replaceAll("[.!?]+$", "").replaceAll("\\s+", " ");
+        s = s.replaceAll("^(?:please |pls |can you |could you )+", "").replaceAll(" please$", "");
+        return s.strip();
+    }
+
+    private static String cleanReference(String ref) {
+        if (ref == null) return "";
+        String s = ref.strip().replaceAll("^(?:the|my) ", "").replaceAll(" task$", "");
+        return s.replaceAll("^[\"']|[\"']$", "").strip();
+    }
+
+    private void record(String result, String intent) {
+        meterRegistry.counter("assistant.fastpath.requests", "result", result, "intent", intent).increment();
+    }
+}
@@ -0,0 +1,142 @@
+package com.assistant.core.service;
+
+import com.assistant.core.model.ProcessedMessage;
+import com.assistant.core.repository.ProcessedMessageRepository;
+import com.assistant.core.util.BloomFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Makes inbound WhatsApp handling idempotent by message id (Baileys redelivery, bridge retries).
+ * The processed_messages table is the source of truth: claiming an id inserts its row, and a key
+ * violation means it was seen before. An in-memory Bloom filter of recent ids sits in front: an id
+ * it has never seen is claimed with a single INSERT, and a likely repeat is confirmed with a
+ * primary-key read instead of a failing write. The filter keeps two generations of filter-capacity
+ * ids each, so memory stays bounded while recent ids stay covered; ids it forgot are still caught
+ * by the table until the TTL purge.
+ */
+@Service
+public class InboundDedupService {
+
+    private static final Logger log = LoggerFactory.getLogger(InboundDedupService.class);
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    /** Result of a claim: first delivery, or a duplicate with the reply recorded for it (null if none yet). */
+    public record Claim(boolean duplicate, String cachedReply) {
+        static final Claim FIRST = new Claim(false, null);
+    }
+
+    private final ProcessedMessageRepository processedMessageRepository;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int filterCapacity;
+    private final Duration ttl;
+    private final AtomicInteger currentCount = new AtomicInteger();
+    private volatile BloomFilter current;
+    private volatile BloomFilter previous;
+
+    public InboundDedupService(ProcessedMessageRepository processedMessageRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.dedup.enabled:true}") boolean enabled,
+                               @Value("${app.dedup.filter-capacity:100000}") int filterCapacity,
+                               @Value("${app.dedup.ttl-hours:48}") long ttlHours) {
+        this.processedMessageRepository = processedMessageRepository;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.filterCapacity = Math.max(1000, filterCapacity);
+        this.ttl = Duration.ofHours(ttlHours);
+        this.current = new BloomFilter(this.filterCapacity, FALSE_POSITIVE_RATE);
+        this.previous = new BloomFilter(this.filterCapacity, FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Claims a message id for processing. Messages without an id (or with dedup off) are always first deliveries.
+     */
+    public Claim claim(String messageId) {
+        if (!enabled || messageId == null || messageId.isBlank()) {
+            return Claim.FIRST;
+        }
+        if (current.mightContain(messageId) || previous.mightContain(messageId)) {
+            var existing = processedMessageRepository.findById(messageId);
+            if (existing.isPresent()) {
+                return duplicate(messageId, existing.get(), "filter");
+            }
+            meterRegistry.counter("dedup.filter.false_positives").increment();
+        }
+        remember(messageId);
+        try {
+            processedMessageRepository.insertClaim(messageId, Instant.now());
+            return Claim.FIRST;
+        } catch (DataIntegrityViolationException e) {
+            // Seen before the filter's memory (e.g. before a restart), or claimed concurrently.
+            return processedMessageRepository.findById(messageId)
+                    .map(existing -> duplicate(messageId, existing, "table"))
+                    .orElse(Claim.FIRST);
+        }
+    }
+
+    /** Stores the reply of a claimed message so a redelivery gets the same answer. */
+    public void recordReply(String messageId, String reply) {
+        if (!enabled || messageId == null || messageId.isBlank() || reply == null) {
+            return;
+        }
+        try {
+            processedMessageRepository.updateReply(messageId, reply);
+        } catch (Exception e) {
+            log.warn("Could not record reply for message {}: {}", messageId, e.getMessage());
+        }
+    }
+
+    /**
+     * Gives up a claim whose message was not answered (queue full, LLM busy, processing failed), so
+     * a redelivery is processed instead of dropped. The Bloom filter cannot forget the id: the next
+     * claim reads the table, finds no row and claims it again.
+     */
+    public void release(String messageId) {
+        if (!enabled || messageId == null || messageId.isBlank()) {
+            return;
+        }
+        try {
+            processedMessageRepository.deleteClaim(messageId);
+        } catch (Exception e) {
+            log.warn("Could not release claim of message {}: {}", messageId, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.dedup.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        if (!enabled) return;
+        int deleted = processedMessageRepository.deleteOlderThan(Instant.now().minus(ttl));
+        if (deleted > 0) {
+            log.debug("Purged {} processed message ids older than {}", deleted, ttl);
+        }
+    }
+
+    private Claim duplicate(String messageId, ProcessedMessage existing, String detectedBy) {
+        meterRegistry.counter("dedup.duplicates", "detected_by", detectedBy).increment();
+        log.info("Duplicate inbound message {} (detected by {}), skipping processing", messageId, detectedBy);
+        return new Claim(true, existing.getReply());
+    }
+
+    private void remember(String messageId) {
+        current.add(messageId);
+        if (currentCount.incrementAndGet() >= filterCapacity) {
+            synchronized (this) {
+                if (currentCount.get() >= filterCapacity) {
+                    previous = current;
+                    current = new BloomFilter(filterCapacity, FALSE_POSITIVE_RATE);
+                    currentCount.set(0);
+                }
+            }
+        }
+    }
+}
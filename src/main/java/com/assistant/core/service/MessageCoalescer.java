@@ -0,0 +1,141 @@
+package com.assistant.core.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Merges a burst of short messages from one user ("remind me" / "to call mom" / "tomorrow 5pm")
+ * into a single conversation turn. The first message waits initial-window-ms for a follow-up; each
+ * follow-up shows the user is typing in pieces and restarts a longer burst-window-ms wait; the turn
+ * starts when the user goes quiet, or max-window-ms after the first message at the latest.
+ * Only the last message of a burst gets the reply; the others complete with null (no reply).
+ */
+@Component
+public class MessageCoalescer {
+
+    /** Messages collected for one user; guarded by the map's per-key compute lock. */
+    private static final class Burst {
+        final long firstAtNanos;
+        final Function<String, CompletableFuture<String>> turn;
+        final List<String> texts = new ArrayList<>();
+        final List<CompletableFuture<String>> replies = new ArrayList<>();
+        ScheduledFuture<?> flush;
+
+        Burst(long firstAtNanos, Function<String, CompletableFuture<String>> turn) {
+            this.firstAtNanos = firstAtNanos;
+            this.turn = turn;
+        }
+    }
+
+    private final ConcurrentHashMap<Long, Burst> bursts = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "message-coalescer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final boolean enabled;
+    private final long initialWindowNanos;
+    private final long burstWindowNanos;
+    private final long maxWindowNanos;
+    private final DistributionSummary burstSize;
+
+    public MessageCoalescer(@Value("${app.coalesce.enabled:false}") boolean enabled,
+                            @Value("${app.coalesce.initial-window-ms:800}") long initialWindowMs,
+                            @Value("${app.coalesce.burst-window-ms:2000}") long burstWindowMs,
+                            @Value("${app.coalesce.max-window-ms:5000}") long maxWindowMs,
+                            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.initialWindowNanos = TimeUnit.MILLISECONDS.toNanos(initialWindowMs);
+        this.burstWindowNanos = TimeUnit.MILLISECONDS.toNanos(burstWindowMs);
+        this.maxWindowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(maxWindowMs, initialWindowMs));
+        this.burstSize = DistributionSummary.builder("coalesce.burst.size")
+                .description("Inbound messages merged into one conversation turn")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Adds a message to the user's current burst and returns a future for its reply.
+     *
+     * @param turn       runs the conversation turn for the merged text
+     * @param mergeable  false for commands: the pending burst is started first, then this message runs on its own
+     */
+    public CompletableFuture<String> submit(Long userId, String text, boolean mergeable,
+                                            Function<String, CompletableFuture<String>> turn) {
+        if (!enabled) {
+            return turn.apply(text);
+        }
+        if (!mergeable) {
+            Burst pending = bursts.remove(userId);
+            if (pending != null) {
+                pending.flush.cancel(false);
+                start(pending);
+            }
+            return turn.apply(text);
+        }
+        CompletableFuture<String> reply = new CompletableFuture<>();
+        bursts.compute(userId, (id, burst) -> {
+            long now = System.nanoTime();
+            long delay;
+            if (burst == null) {
+                burst = new Burst(now, turn);
+                delay = initialWindowNanos;
+            } else {
+                burst.flush.cancel(false);
+                delay = Math.min(burstWindowNanos, burst.firstAtNanos + maxWindowNanos - now);
+            }
+            burst.texts.add(text);
+            burst.replies.add(reply);
+            Burst scheduled = burst;
+            burst.flush = timer.schedule(() -> flush(id, scheduled), Math.max(0, delay), TimeUnit.NANOSECONDS);
+            return burst;
+        });
+        return reply;
+    }
+
+    private void flush(Long userId, Burst burst) {
+        // Removal happens under the same lock as additions, so no message joins the burst after this.
+        if (bursts.remove(userId, burst)) {
+            start(burst);
+        }
+    }
+
+    private void start(Burst burst) {
+        burstSize.record(burst.texts.size());
+        List<CompletableFuture<String>> replies = burst.replies;
+        CompletableFuture<String> last = replies.get(replies.size() - 1);
+        CompletableFuture<String> result;
+        try {
+            result = burst.turn.apply(String.join("\n", burst.texts));
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((text, error) -> {
+            for (int i = 0; i < replies.size() - 1; i++) {
+                replies.get(i).complete(null);
+            }
+            if (error != null) {
+                last.completeExceptionally(error);
+            } else {
+                last.complete(text);
+            }
+        });
+    }
+}
@@ -0,0 +1,9 @@
+package com.assistant.core.service;
+
+import java.time.Instant;
+
+/**
+ * Published by {@link TaskService} when a task's reminder is set, moved or no longer due
+ * (reminderTime null: done, in progress or deleted). Delivered after the transaction commits.
+ */
+public record ReminderChangedEvent(Long taskId, Instant reminderTime) {}
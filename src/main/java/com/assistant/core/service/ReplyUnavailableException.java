@@ -0,0 +1,15 @@
+package com.assistant.core.service;
+
+/**
+ * Thrown when a turn produced no reply because the LLM was busy or failed. The message is a short
+ * apology to show the user; it is not persisted as an assistant reply, and channels do not keep it
+ * as the answer to the message (a retry is processed again).
+ */
+public class ReplyUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ReplyUnavailableException(String userMessage) {
+        super(userMessage);
+    }
+}
@@ -8,6 +8,7 @@ import com.assistant.core.repository.TaskRepository;
 import com.assistant.core.util.InputSanitizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
@@ -29,9 +30,11 @@ public class TaskService {
     private static final int SEARCH_MAX_RESULTS = 10;
 
     private final TaskRepository taskRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public TaskService(TaskRepository taskRepository) {
+    public TaskService(TaskRepository taskRepository, ApplicationEventPublisher eventPublisher) {
         this.taskRepository = taskRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -46,6 +49,9 @@ public class TaskService {
         task.setReminderTime(request.getReminderTime());
         task.setStatus(STATUS_PENDING);
         task = taskRepository.save(task);
+        if (task.getReminderTime() != null) {
+            eventPublisher.publishEvent(new ReminderChangedEvent(task.getId(), task.getReminderTime()));
+        }
         log.info("Task created: id={}, userId={}, title={}", task.getId(), userId, title);
         return toResponseDTO(task);
     }
@@ -94,6 +100,11 @@ public class TaskService {
         }
         task.setStatus(status);
         task = taskRepository.save(task);
+        if (task.getReminderTime() != null && task.getReminderSentAt() == null) {
+            // Only PENDING tasks are reminded; moving back to PENDING re-arms an unsent reminder.
+            eventPublisher.publishEvent(new ReminderChangedEvent(taskId,
+                    STATUS_PENDING.equals(status) ? task.getReminderTime() : null));
+        }
         log.info("Task status updated: id={}, userId={}, status={}", taskId, userId, status);
         return toResponseDTO(task);
     }
@@ -112,6 +123,9 @@ public class TaskService {
         }
         task.setDeleted(true);
         taskRepository.save(task);
+        if (task.getReminderTime() != null) {
+            eventPublisher.publishEvent(new ReminderChangedEvent(taskId, null));
+        }
         log.info("Task soft-deleted: id={}, userId={}", taskId, userId);
     }
 
@@ -0,0 +1,147 @@
+package com.assistant.core.service;
+
+import com.assistant.core.mcp.ChatWithToolsResult;
+import com.assistant.core.mcp.Tool;
+import com.assistant.core.mcp.ToolRouter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tool calls of one LLM turn. Calls can be submitted while the model is still streaming, so a tool
+ * starts as soon as its arguments are complete. Independent calls run concurrently; a call that
+ * conflicts with an earlier one (same resource, at least one write, not provably different
+ * entities) waits for it, so writes keep the order the model chose. Results are collected in
+ * submission order. Duplicate call ids are skipped. Not shared across turns.
+ */
+class ToolCallBatch {
+
+    private static final Logger log = LoggerFactory.getLogger(ToolCallBatch.class);
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    /** A submitted call and its serialized result (JSON, or "Error: ..." on failure). */
+    record Executed(ChatWithToolsResult.SingleToolCall call, String result) {}
+
+    /** Scheduling view of a submitted call: what it touches and when it finishes. */
+    private record Pending(ChatWithToolsResult.SingleToolCall call, String resource, boolean readOnly,
+                           String entityKey, CompletableFuture<String> result) {
+
+        boolean conflictsWith(Pending other) {
+            if (!Objects.equals(resource, other.resource)) return false;
+            if (readOnly && other.readOnly) return false;
+            if (readOnly || other.readOnly) return true;
+            return entityKey == null || other.entityKey == null || entityKey.equals(other.entityKey);
+        }
+    }
+
+    private final ToolRouter toolRouter;
+    private final Executor executor;
+    private final Long userId;
+    private final Set<String> seenIds = new HashSet<>();
+    private final List<Pending> pending = new ArrayList<>();
+
+    ToolCallBatch(ToolRouter toolRouter, Executor executor, Long userId) {
+        this.toolRouter = toolRouter;
+        this.executor = executor;
+        this.userId = userId;
+    }
+
+    /** Starts the call, after any earlier conflicting calls. Returns false for a duplicate id. */
+    synchronized boolean submit(ChatWithToolsResult.SingleToolCall call) {
+        if (!seenIds.add(call.id())) {
+            log.warn("Skipping duplicate tool call id: {}", call.id());
+            return false;
+        }
+        Map<String, Object> args = arguments(call);
+        Tool tool = toolRouter.findTool(call.name()).orElse(null);
+        // Unknown tools fail fast in invoke and touch nothing, so they never need to wait.
+        String resource = tool != null ? tool.resource() : null;
+        boolean readOnly = tool == null || tool.readOnly();
+        String entityKey = tool != null ? tool.entityKey(args) : null;
+
+        List<CompletableFuture<String>> dependencies = new ArrayList<>();
+        if (resource != null) {
+            Pending probe = new Pending(call, resource, readOnly, entityKey, null);
+            for (Pending earlier : pending) {
+                if (probe.conflictsWith(earlier)) {
+                    dependencies.add(earlier.result());
+                }
+            }
+        }
+        CompletableFuture<String> result = dependencies.isEmpty()
+                ? CompletableFuture.supplyAsync(() -> invoke(call, args), executor)
+                : CompletableFuture.allOf(dependencies.toArray(CompletableFuture[]::new))
+                        .handleAsync((ignored, error) -> invoke(call, args), executor);
+        pending.add(new Pending(call, resource, readOnly, entityKey, result));
+        return true;
+    }
+
+    synchronized boolean isSubmitted(String callId) {
+        return seenIds.contains(callId);
+    }
+
+    /**
+     * Waits for every submitted call and returns them in submission order. The turn deadline only
+     * bounds read-only calls: one still running then is abandoned with a "timed out" result, which
+     * is harmless since it changes nothing. Writes are always awaited, because a write reported as
+     * timed out would still commit (and the model would likely retry it, creating a duplicate),
+     * and the next iteration's calls must be ordered after it.
+     */
+    List<Executed> awaitAll(long deadlineNanos) {
+        List<Pending> snapshot;
+        synchronized (this) {
+            snapshot = List.copyOf(pending);
+        }
+        List<Executed> out = new ArrayList<>(snapshot.size());
+        for (Pending p : snapshot) {
+            out.add(new Executed(p.call(), await(p, deadlineNanos)));
+        }
+        return out;
+    }
+
+    private static String await(Pending p, long deadlineNanos) {
+        try {
+            if (!p.readOnly()) {
+                return p.result().get();
+            }
+            return p.result().get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Tool call {} ({}) did not finish before the turn deadline", p.call().id(), p.call().name());
+            return "Error: " + p.call().name() + " timed out";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "Error: interrupted";
+        } catch (ExecutionException e) {
+            return "Error: " + e.getCause().getMessage();
+        }
+    }
+
+    private Map<String, Object> arguments(ChatWithToolsResult.SingleToolCall call) {
+        Map<String, Object> args = new LinkedHashMap<>(call.arguments() != null ? call.arguments() : Map.of());
+        args.put("userId", userId);
+        return args;
+    }
+
+    private String invoke(ChatWithToolsResult.SingleToolCall call, Map<String, Object> args) {
+        try {
+            Map<String, Object> toolResult = toolRouter.invoke(call.name(), args);
+            return JSON.writeValueAsString(toolResult);
+        } catch (Exception e) {
+            log.error("Tool execution failed: {} - {}", call.name(), e.getMessage(), e);
+            return "Error: " + e.getMessage();
+        }
+    }
+}
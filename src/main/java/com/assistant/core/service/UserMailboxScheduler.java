@@ -0,0 +1,145 @@
+package com.assistant.core.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs work for a user one task at a time, in submission order, while different users run in
+ * parallel (one virtual thread per busy user). Two messages from the same user therefore never
+ * interleave their reads and writes of chat history. Each user's mailbox holds at most capacity
+ * pending tasks; further submissions are rejected. A mailbox exists only while it has work: the
+ * draining thread removes it when it runs dry, so idle users cost nothing.
+ */
+@Component
+public class UserMailboxScheduler {
+
+    /** Pending tasks of one user; guarded by the map's per-key compute lock. */
+    private static final class Mailbox {
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    }
+
+    /** User whose mailbox the current thread is draining, so nested calls run inline instead of deadlocking. */
+    private static final ThreadLocal<Long> CURRENT_USER = new ThreadLocal<>();
+
+    private final ConcurrentHashMap<Long, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final int capacity;
+    private final MeterRegistry meterRegistry;
+    private final Timer wait;
+
+    public UserMailboxScheduler(@Value("${app.mailbox.capacity:16}") int capacity, MeterRegistry meterRegistry) {
+        this.capacity = Math.max(1, capacity);
+        this.meterRegistry = meterRegistry;
+        this.wait = Timer.builder("mailbox.wait")
+                .description("Time a task waits behind earlier tasks of the same user")
+                .register(meterRegistry);
+        Gauge.builder("mailbox.active", mailboxes, ConcurrentHashMap::size).register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queues a task behind the user's earlier tasks. The future fails with
+     * {@link RejectedExecutionException} if the user's mailbox is full.
+     */
+    public <T> CompletableFuture<T> submit(Long userId, Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long queuedAt = System.nanoTime();
+        Runnable runnable = () -> {
+            wait.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+            try {
+                future.complete(task.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        };
+        boolean[] start = {false};
+        boolean[] rejected = {false};
+        mailboxes.compute(userId, (id, mailbox) -> {
+            if (mailbox == null) {
+                mailbox = new Mailbox();
+                start[0] = true;
+            } else if (mailbox.tasks.size() >= capacity) {
+                rejected[0] = true;
+                return mailbox;
+            }
+            mailbox.tasks.addLast(runnable);
+            return mailbox;
+        });
+        if (rejected[0]) {
+            meterRegistry.counter("mailbox.rejected").increment();
+            future.completeExceptionally(new RejectedExecutionException("Mailbox full for userId=" + userId));
+        } else if (start[0]) {
+            executor.execute(() -> drain(userId));
+        }
+        return future;
+    }
+
+    /**
+     * Runs a task in the user's mailbox and waits for its result. Called from a task already
+     * running for the same user, it runs inline.
+     *
+     * @throws RejectedExecutionException if the user's mailbox is full
+     */
+    public <T> T run(Long userId, Callable<T> task) {
+        if (userId.equals(CURRENT_USER.get())) {
+            try {
+                return task.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }
+        try {
+            return submit(userId, task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            if (e.getCause() instanceof Error err) throw err;
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    private void drain(Long userId) {
+        CURRENT_USER.set(userId);
+        try {
+            Runnable next;
+            while ((next = poll(userId)) != null) {
+                next.run();
+            }
+        } finally {
+            CURRENT_USER.remove();
+        }
+    }
+
+    /** Next task of the user, or null after removing the now-empty mailbox. */
+    private Runnable poll(Long userId) {
+        Runnable[] next = {null};
+        mailboxes.computeIfPresent(userId, (id, mailbox) -> {
+            next[0] = mailbox.tasks.pollFirst();
+            return next[0] == null ? null : mailbox;
+        });
+        return next[0];
+    }
+}
@@ -0,0 +1,154 @@
+package com.assistant.core.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Async mode for the WhatsApp webhook (app.whatsapp.async.enabled): the controller enqueues the
+ * message and acks with 202 right away; a pool of virtual-thread workers hands it to the user's
+ * mailbox ({@link UserMailboxScheduler}) and sends the reply through {@link WhatsAppService}.
+ * Inbound throughput is then bounded by the queue, not by LLM latency. The queue is in memory: messages still queued at shutdown are lost.
+ */
+@Service
+public class WhatsAppInboundQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(WhatsAppInboundQueue.class);
+
+    private record Inbound(WhatsAppWebhookService.IncomingText incoming, long enqueuedNanos) {}
+
+    private final boolean enabled;
+    private final int workerCount;
+    private final BlockingQueue<Inbound> queue;
+    private final WhatsAppWebhookService webhookService;
+    private final WhatsAppService whatsAppService;
+    private final MeterRegistry meterRegistry;
+    private final Timer lag;
+    private final Timer processing;
+    private final AtomicInteger inProgress = new AtomicInteger();
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+
+    public WhatsAppInboundQueue(@Value("${app.whatsapp.async.enabled:false}") boolean enabled,
+                                @Value("${app.whatsapp.async.capacity:1000}") int capacity,
+                                @Value("${app.whatsapp.async.workers:64}") int workerCount,
+                                WhatsAppWebhookService webhookService,
+                                WhatsAppService whatsAppService,
+                                MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.workerCount = Math.max(1, workerCount);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.webhookService = webhookService;
+        this.whatsAppService = whatsAppService;
+        this.meterRegistry = meterRegistry;
+        this.lag = Timer.builder("whatsapp.inbound.lag")
+                .description("Time from webhook receipt to processing start")
+                .register(meterRegistry);
+        this.processing = Timer.builder("whatsapp.inbound.processing")
+                .description("Conversation loop and reply send per inbound message")
+                .register(meterRegistry);
+        Gauge.builder("whatsapp.inbound.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+        Gauge.builder("whatsapp.inbound.in_progress", inProgress, AtomicInteger::get).register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) return;
+        for (int i = 0; i < workerCount; i++) {
+            workers.submit(this::workLoop);
+        }
+        log.info("WhatsApp async processing enabled: {} workers, queue capacity {}", workerCount, queue.remainingCapacity());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+        if (!queue.isEmpty()) {
+            log.warn("Shutting down with {} inbound WhatsApp messages still queued", queue.size());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues a validated (and claimed) message for processing. If it then gets no reply (LLM busy,
+     * processing failed), its claim is released so the bridge's redelivery is processed.
+     *
+     * @return false if the queue is full (the caller should answer with a busy reply)
+     */
+    public boolean submit(WhatsAppWebhookService.IncomingText incoming) {
+        boolean accepted = queue.offer(new Inbound(incoming, System.nanoTime()));
+        if (!accepted) {
+            meterRegistry.counter("whatsapp.inbound.rejected").increment();
+            log.warn("Inbound WhatsApp queue full ({} queued), rejecting message from {}", queue.size(), incoming.phoneNumber());
+        }
+        return accepted;
+    }
+
+    private void workLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Inbound message;
+            try {
+                message = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            lag.record(System.nanoTime() - message.enqueuedNanos(), TimeUnit.NANOSECONDS);
+            process(message);
+        }
+    }
+
+    /**
+     * Hands the message to the user's mailbox and returns; the reply is sent when it completes, so a
+     * worker is never held by a slow conversation or by earlier messages of the same user.
+     */
+    private void process(Inbound message) {
+        long started = System.nanoTime();
+        inProgress.incrementAndGet();
+        WhatsAppWebhookService.IncomingText incoming = message.incoming();
+        CompletableFuture<String> reply;
+        try {
+            reply = webhookService.replyToAsync(incoming.phoneNumber(), incoming.text());
+        } catch (Exception e) {
+            reply = CompletableFuture.failedFuture(e);
+        }
+        reply.whenComplete((text, error) -> {
+            try {
+                if (error != null) {
+                    // No answer for this message id: let a redelivery be processed.
+                    webhookService.releaseDelivery(incoming);
+                }
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (cause instanceof ReplyUnavailableException unavailable) {
+                    whatsAppService.sendMessage(incoming.replyTo(), unavailable.getMessage());
+                } else if (error != null) {
+                    log.error("Async WhatsApp processing failed for {}: {}", incoming.phoneNumber(), error.getMessage(), error);
+                } else if (text != null && !text.isBlank()) {
+                    whatsAppService.sendMessage(incoming.replyTo(), text);
+                }
+            } catch (Exception e) {
+                log.error("Async WhatsApp reply send failed for {}: {}", incoming.phoneNumber(), e.getMessage(), e);
+            } finally {
+                inProgress.decrementAndGet();
+                processing.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+}
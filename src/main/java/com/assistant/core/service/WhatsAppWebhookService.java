@@ -9,10 +9,14 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Handles WhatsApp webhook POST: map phone to user, delegate to conversation loop, return response text.
- * No outbound WhatsApp API call—only formulates the response message.
+ * No outbound WhatsApp API call—only formulates the response message (in async mode,
+ * {@link WhatsAppInboundQueue} sends it).
  */
 @Service
 public class WhatsAppWebhookService {
@@ -20,34 +24,115 @@ public class WhatsAppWebhookService {
     private static final Logger log = LoggerFactory.getLogger(WhatsAppWebhookService.class);
 
     private static final String COMPACT_COMMAND = "/compact";
+    private static final String BUSY_MESSAGE = "You're sending messages faster than I can answer. Please wait a moment and try again.";
 
     private final UserRepository userRepository;
     private final ChatMemoryService chatMemoryService;
     private final ConversationOrchestratorService conversationOrchestrator;
+    private final UserMailboxScheduler mailboxScheduler;
+    private final MessageCoalescer messageCoalescer;
+    private final InboundDedupService dedupService;
 
     public WhatsAppWebhookService(UserRepository userRepository,
                                   ChatMemoryService chatMemoryService,
-                                  ConversationOrchestratorService conversationOrchestrator) {
+                                  ConversationOrchestratorService conversationOrchestrator,
+                                  UserMailboxScheduler mailboxScheduler,
+                                  MessageCoalescer messageCoalescer,
+                                  InboundDedupService dedupService) {
         this.userRepository = userRepository;
         this.chatMemoryService = chatMemoryService;
         this.conversationOrchestrator = conversationOrchestrator;
+        this.mailboxScheduler = mailboxScheduler;
+        this.messageCoalescer = messageCoalescer;
+        this.dedupService = dedupService;
     }
 
+    /**
+     * Id, sender and text of the first message in a webhook payload; any may be null. replyTo is
+     * the chat JID to answer on: the bridge's remoteJid (an @lid id when the phone number could not
+     * be resolved), else the sender's number.
+     */
+    public record IncomingText(String messageId, String phoneNumber, String text, String replyTo) {}
+
     /**
      * Validates payload, extracts phone and message, maps to user, runs conversation loop, returns response text.
      * Never throws for user-facing issues — always returns a reply string so the bridge can send it back.
+     * A redelivered message id is not processed again: it gets the reply recorded for the first
+     * delivery (null while that is still being processed, so the bridge sends nothing). A message
+     * that got no reply (busy, failure) is released, so its redelivery is processed.
      */
     public String processIncomingMessage(WhatsAppWebhookPayload payload) {
+        IncomingText incoming = extractIncoming(payload);
+        InboundDedupService.Claim claim = dedupService.claim(incoming.messageId());
+        if (claim.duplicate()) {
+            return claim.cachedReply();
+        }
+        String reply;
+        try {
+            reply = replyTo(incoming.phoneNumber(), incoming.text());
+        } catch (ReplyUnavailableException e) {
+            dedupService.release(incoming.messageId());
+            return e.getMessage();
+        } catch (RuntimeException e) {
+            dedupService.release(incoming.messageId());
+            throw e;
+        }
+        dedupService.recordReply(incoming.messageId(), reply);
+        return reply;
+    }
+
+    public IncomingText extractIncoming(WhatsAppWebhookPayload payload) {
+        WhatsAppWebhookMessage message = firstMessage(payload);
         String phoneNumber = extractPhoneNumber(payload);
-        String messageText = extractMessageText(payload);
+        String remoteJid = message != null ? message.getRemoteJid() : null;
+        return new IncomingText(message != null ? message.getId() : null, phoneNumber, extractMessageText(payload),
+                remoteJid != null && !remoteJid.isBlank() ? remoteJid : phoneNumber);
+    }
+
+    /**
+     * Claims an incoming message id; false if it was already delivered (the caller should skip it).
+     * For the async path, whose replies are sent by the worker rather than returned.
+     */
+    public boolean claimFirstDelivery(IncomingText incoming) {
+        return !dedupService.claim(incoming.messageId()).duplicate();
+    }
+
+    /** Releases a claim from {@link #claimFirstDelivery} whose message will not be answered. */
+    public void releaseDelivery(IncomingText incoming) {
+        dedupService.release(incoming.messageId());
+    }
+
+    /**
+     * Reply for one incoming text: maps the phone to a user and runs the conversation loop.
+     * Never throws for user-facing issues, except that a turn without a reply (LLM busy or failing)
+     * throws {@link ReplyUnavailableException} carrying the apology to send.
+     */
+    public String replyTo(String phoneNumber, String messageText) {
+        try {
+            return replyToAsync(phoneNumber, messageText).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ReplyUnavailableException unavailable) {
+                throw unavailable;
+            }
+            throw e;
+        }
+    }
 
+    /**
+     * Same as {@link #replyTo} but returns once the message is queued in the user's mailbox; the
+     * future completes with the reply after earlier messages of the user, or exceptionally with
+     * {@link ReplyUnavailableException} if the turn produced none.
+     * With coalescing on, a burst of messages becomes one turn and only the last gets the reply
+     * (the others complete with null).
+     */
+    public CompletableFuture<String> replyToAsync(String phoneNumber, String messageText) {
         if (phoneNumber == null || phoneNumber.isBlank()) {
             log.warn("Could not extract phone number from webhook payload");
-            return "Sorry, I couldn't identify your phone number. Please try again.";
+            return CompletableFuture.completedFuture("Sorry, I couldn't identify your phone number. Please try again.");
         }
         if (messageText == null || messageText.isBlank()) {
             log.debug("Non-text message received from {}", phoneNumber);
-            return "Sorry, I can only process text messages at the moment.";
+            return CompletableFuture.completedFuture("Sorry, I can only process text messages at the moment.");
         }
 
         log.info("Webhook processing: from={}, messageLength={}", phoneNumber, messageText.length());
@@ -56,12 +141,26 @@ public class WhatsAppWebhookService {
                 .or(() -> tryFindByNormalizedPhone(phoneNumber));
         if (userOpt.isEmpty()) {
             log.warn("No user found for phone number: {}", phoneNumber);
-            return "Sorry, your phone number (" + phoneNumber + ") is not registered with Clario. "
-                    + "Please sign up first or contact support.";
+            return CompletableFuture.completedFuture("Sorry, your phone number (" + phoneNumber + ") is not registered with Clario. "
+                    + "Please sign up first or contact support.");
         }
-        User user = userOpt.get();
-        Long userId = user.getId();
+        Long userId = userOpt.get().getId();
+
+        boolean command = COMPACT_COMMAND.equalsIgnoreCase(messageText.strip());
+        return messageCoalescer.submit(userId, messageText, !command,
+                text -> mailboxScheduler.submit(userId, () -> converse(userId, text))
+                        .exceptionally(e -> {
+                            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                            if (cause instanceof RejectedExecutionException) {
+                                log.warn("Mailbox full for userId={}, rejecting message", userId);
+                                throw new ReplyUnavailableException(BUSY_MESSAGE);
+                            }
+                            throw cause instanceof RuntimeException r ? r : new CompletionException(cause);
+                        }));
+    }
 
+    /** Runs in the user's mailbox, so compaction never overlaps a conversation turn. */
+    private String converse(Long userId, String messageText) {
         if (COMPACT_COMMAND.equalsIgnoreCase(messageText.strip())) {
             log.info("Compaction requested by userId={}", userId);
             return chatMemoryService.compactHistory(userId);
@@ -71,29 +170,31 @@ public class WhatsAppWebhookService {
             String reply = conversationOrchestrator.processMessage(userId, messageText);
             log.info("Webhook reply generated for userId={}", userId);
             return reply;
+        } catch (ReplyUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error processing message for userId={}: {}", userId, e.getMessage(), e);
             return "Sorry, something went wrong while processing your request. Please try again later.";
         }
     }
 
-    private String extractPhoneNumber(WhatsAppWebhookPayload payload) {
+    private WhatsAppWebhookMessage firstMessage(WhatsAppWebhookPayload payload) {
         if (payload == null || payload.getEntry() == null || payload.getEntry().isEmpty()) return null;
         var change = payload.getEntry().get(0).getChanges();
         if (change == null || change.isEmpty() || change.get(0).getValue() == null) return null;
         var messages = change.get(0).getValue().getMessages();
         if (messages == null || messages.isEmpty()) return null;
-        return messages.get(0).getFrom();
+        return messages.get(0);
+    }
+
+    private String extractPhoneNumber(WhatsAppWebhookPayload payload) {
+        WhatsAppWebhookMessage msg = firstMessage(payload);
+        return msg != null ? msg.getFrom() : null;
     }
 
     private String extractMessageText(WhatsAppWebhookPayload payload) {
-        if (payload == null || payload.getEntry() == null || payload.getEntry().isEmpty()) return null;
-        var change = payload.getEntry().get(0).getChanges();
-        if (change == null || change.isEmpty() || change.get(0).getValue() == null) return null;
-        var messages = change.get(0).getValue().getMessages();
-        if (messages == null || messages.isEmpty()) return null;
-        WhatsAppWebhookMessage msg = messages.get(0);
-        if (msg.getText() == null) return null;
+        WhatsAppWebhookMessage msg = firstMessage(payload);
+        if (msg == null || msg.getText() == null) return null;
         return msg.getText().getBody();
     }
 
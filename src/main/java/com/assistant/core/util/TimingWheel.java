@@ -0,0 +1,137 @@
+package com.assistant.core.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hierarchical timing wheel: three levels of 64 slots, each slot of a level spanning one full turn
+ * of the level below (tick, 64 ticks, 4096 ticks). A key is placed in the lowest level whose span
+ * covers its deadline; when the lower level wraps, the next slot of the level above is cascaded
+ * down. Scheduling, cancelling and expiring are O(1) however many keys are pending, and a tick
+ * touches only one slot per level. Passive: the owner calls {@link #advance} from its clock thread.
+ * Deadlines are rounded up to the tick, so keys never expire early. Thread-safe.
+ */
+public final class TimingWheel<K> {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 3;
+
+    private static final class Entry<K> {
+        final K key;
+        final long deadline;
+        int level;
+        int slot;
+
+        Entry(K key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+    }
+
+    private final long tickMillis;
+    private final List<List<Set<Entry<K>>>> wheels = new ArrayList<>(LEVELS);
+    private final Map<K, Entry<K>> index = new HashMap<>();
+    /** Last tick processed by {@link #advance}. */
+    private long current;
+
+    public TimingWheel(long tickMillis, long startMillis) {
+        this.tickMillis = Math.max(1, tickMillis);
+        this.current = startMillis / this.tickMillis;
+        for (int level = 0; level < LEVELS; level++) {
+            List<Set<Entry<K>>> slots = new ArrayList<>(SLOTS);
+            for (int i = 0; i < SLOTS; i++) slots.add(new LinkedHashSet<>());
+            wheels.add(slots);
+        }
+    }
+
+    /** Furthest deadline ahead of the wheel's time that {@link #schedule} accepts. */
+    public long capacityMillis() {
+        return (((long) MASK << (2 * BITS)) - 1) * tickMillis;
+    }
+
+    /**
+     * Schedules the key at the deadline (epoch millis), replacing an earlier schedule of the same
+     * key. A deadline already passed expires on the next tick. Returns false, leaving the key
+     * unscheduled, if the deadline is beyond {@link #capacityMillis()}.
+     */
+    public synchronized boolean schedule(K key, long deadlineMillis) {
+        remove(key);
+        long deadline = Math.max(current + 1, Math.ceilDiv(deadlineMillis, tickMillis));
+        Entry<K> entry = new Entry<>(key, deadline);
+        if (!place(entry)) {
+            return false;
+        }
+        index.put(key, entry);
+        return true;
+    }
+
+    public synchronized boolean cancel(K key) {
+        return remove(key);
+    }
+
+    public synchronized boolean contains(K key) {
+        return index.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /** Processes every tick up to nowMillis and returns the keys that expired, in deadline order. */
+    public synchronized List<K> advance(long nowMillis) {
+        long target = nowMillis / tickMillis;
+        List<K> expired = new ArrayList<>();
+        while (current < target) {
+            long t = ++current;
+            // Cascade top-down so entries can fall through more than one level on the same tick.
+            for (int level = LEVELS - 1; level >= 1; level--) {
+                if ((t & ((1L << (level * BITS)) - 1)) == 0) {
+                    cascade(level, (int) ((t >>> (level * BITS)) & MASK));
+                }
+            }
+            Set<Entry<K>> slot = wheels.get(0).get((int) (t & MASK));
+            for (Entry<K> entry : slot) {
+                index.remove(entry.key);
+                expired.add(entry.key);
+            }
+            slot.clear();
+        }
+        return expired;
+    }
+
+    private void cascade(int level, int slotIndex) {
+        Set<Entry<K>> slot = wheels.get(level).get(slotIndex);
+        List<Entry<K>> entries = new ArrayList<>(slot);
+        slot.clear();
+        for (Entry<K> entry : entries) {
+            place(entry);
+        }
+    }
+
+    /** Lowest level whose slot for the deadline comes up within one turn of that level. */
+    private boolean place(Entry<K> entry) {
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = level * BITS;
+            if ((entry.deadline >>> shift) - (current >>> shift) < SLOTS) {
+                entry.level = level;
+                entry.slot = (int) ((entry.deadline >>> shift) & MASK);
+                wheels.get(level).get(entry.slot).add(entry);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean remove(K key) {
+        Entry<K> entry = index.remove(key);
+        if (entry == null) return false;
+        wheels.get(entry.level).get(entry.slot).remove(entry);
+        return true;
+    }
+}
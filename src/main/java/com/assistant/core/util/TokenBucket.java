@@ -0,0 +1,46 @@
+package com.assistant.core.util;
+
+/**
+ * Token bucket refilling at a fixed rate up to burst tokens. {@link #reserve} takes a token now
+ * and says how long the caller must wait before using it (tokens may go negative, so waiters are
+ * served in reservation order without polling); a reservation whose wait would exceed the caller's
+ * limit takes nothing. Thread-safe.
+ */
+public final class TokenBucket {
+
+    private final double ratePerNano;
+    private final double burst;
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket(double ratePerSecond, int burst, long nowNanos) {
+        this.ratePerNano = ratePerSecond / 1_000_000_000d;
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    /** Nanos to wait before using the reserved token (0 if available now), or -1 if over maxWaitNanos. */
+    public synchronized long reserve(long nowNanos, long maxWaitNanos) {
+        refill(nowNanos);
+        long wait = tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / ratePerNano);
+        if (wait > maxWaitNanos) {
+            return -1;
+        }
+        tokens -= 1;
+        return wait;
+    }
+
+    /** True if the bucket is full, i.e. unused for at least burst / rate. */
+    public synchronized boolean isIdle(long nowNanos) {
+        refill(nowNanos);
+        return tokens >= burst;
+    }
+
+    private void refill(long nowNanos) {
+        if (nowNanos > lastRefillNanos) {
+            tokens = Math.min(burst, tokens + (nowNanos - lastRefillNanos) * ratePerNano);
+            lastRefillNanos = nowNanos;
+        }
+    }
+}
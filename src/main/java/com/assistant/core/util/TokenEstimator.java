@@ -0,0 +1,70 @@
+package com.assistant.core.util;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Local token count estimate for prompt budgeting, close to the OpenAI BPE tokenizers for English
+ * text and JSON without shipping their vocabularies: a run of letters or digits costs one token per
+ * four characters (rounded up), each punctuation or symbol character one token, whitespace nothing
+ * (it merges into the next word), and each non-ASCII code point one token.
+ */
+public final class TokenEstimator {
+
+    /** Per-message framing (role, separators) the API adds around the content. */
+    private static final int MESSAGE_OVERHEAD = 4;
+
+    private TokenEstimator() {}
+
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int tokens = 0;
+        int run = 0;
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+            if (cp < 128 && Character.isLetterOrDigit(cp)) {
+                run++;
+                continue;
+            }
+            tokens += (run + 3) / 4;
+            run = 0;
+            if (cp >= 128) {
+                tokens++;
+            } else if (!Character.isWhitespace(cp)) {
+                tokens++;
+            }
+        }
+        return tokens + (run + 3) / 4;
+    }
+
+    /** Estimate for one API-shaped message map (role, content, tool_calls, tool_call_id). */
+    public static int estimateMessage(Map<String, Object> message) {
+        int tokens = MESSAGE_OVERHEAD;
+        for (Map.Entry<String, Object> e : message.entrySet()) {
+            if ("role".equals(e.getKey())) continue;
+            tokens += estimateValue(e.getValue());
+        }
+        return tokens;
+    }
+
+    private static int estimateValue(Object value) {
+        if (value == null) return 0;
+        if (value instanceof String s) return estimate(s);
+        if (value instanceof Map<?, ?> map) {
+            int tokens = 0;
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                tokens += 1 + estimateValue(e.getValue());
+            }
+            return tokens;
+        }
+        if (value instanceof Collection<?> list) {
+            int tokens = 0;
+            for (Object item : list) tokens += estimateValue(item);
+            return tokens;
+        }
+        return estimate(value.toString());
+    }
+}
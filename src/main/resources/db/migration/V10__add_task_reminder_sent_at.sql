@@ -0,0 +1,11 @@
+-- Sent marker for reminders: NULL until the task's reminder has been sent. The sweep reads only
+-- never-sent reminders in a bounded reminder_time window through the composite index, so its cost
+-- follows due work rather than the number of reminders ever sent.
+ALTER TABLE tasks ADD COLUMN reminder_sent_at TIMESTAMP NULL;
+
+-- Reminders sent before this migration are known from reminder_log.
+UPDATE tasks
+SET reminder_sent_at = (SELECT MIN(r.sent_at) FROM reminder_log r WHERE r.task_id = tasks.id)
+WHERE EXISTS (SELECT 1 FROM reminder_log r WHERE r.task_id = tasks.id);
+
+CREATE INDEX idx_tasks_reminder_due ON tasks(reminder_sent_at, reminder_time);
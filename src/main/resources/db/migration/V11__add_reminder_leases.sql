@@ -0,0 +1,12 @@
+-- Cluster-safe reminder dispatch. A node leases due reminders before sending them: batches are
+-- claimed with SELECT ... FOR UPDATE SKIP LOCKED, single reminders with a conditional UPDATE, and
+-- a reminder whose lease has not expired is left alone by every other node.
+ALTER TABLE tasks
+    ADD COLUMN reminder_lease_owner VARCHAR(128) NULL,
+    ADD COLUMN reminder_lease_until TIMESTAMP NULL;
+
+-- One log row per task backs idempotency. Keep the earliest row of any duplicates sent before.
+DELETE r1 FROM reminder_log r1
+    JOIN reminder_log r2 ON r1.task_id = r2.task_id AND r1.id > r2.id;
+ALTER TABLE reminder_log ADD CONSTRAINT uk_reminder_log_task_id UNIQUE (task_id);
+DROP INDEX idx_reminder_log_task_id ON reminder_log;
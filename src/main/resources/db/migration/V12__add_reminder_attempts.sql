@@ -0,0 +1,8 @@
+-- Reminder delivery retries: attempts so far per task (drives exponential backoff; the next
+-- attempt time is kept in reminder_lease_until with no owner), and the outcome of the latest
+-- attempt in reminder_log (status SENT, RETRYING or FAILED once attempts run out).
+ALTER TABLE tasks ADD COLUMN reminder_attempts INT NOT NULL DEFAULT 0;
+
+ALTER TABLE reminder_log
+    ADD COLUMN attempts INT NOT NULL DEFAULT 1,
+    ADD COLUMN last_error VARCHAR(500) NULL;
@@ -0,0 +1,12 @@
+-- Server-side conversation state (Responses API previous_response_id), one row per user.
+-- last_message_id: newest chat_messages row already part of the provider-side chain;
+-- rows after it are sent as new input on the next turn.
+CREATE TABLE conversation_state (
+    user_id BIGINT PRIMARY KEY,
+    response_id VARCHAR(255) NOT NULL,
+    last_message_id BIGINT NOT NULL,
+    turn_count INT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    modified_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    CONSTRAINT fk_conversation_state_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
@@ -0,0 +1,9 @@
+-- Inbound WhatsApp message ids already handled, for idempotent webhook processing.
+-- reply: reply sent for the message (NULL while processing or when it got none); returned for redeliveries.
+-- Rows older than app.dedup.ttl-hours are purged.
+CREATE TABLE processed_messages (
+    message_id VARCHAR(128) PRIMARY KEY,
+    reply TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_processed_messages_created_at (created_at)
+);
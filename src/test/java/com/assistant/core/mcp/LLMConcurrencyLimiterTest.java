@@ -0,0 +1,108 @@
+package com.assistant.core.mcp;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LLMConcurrencyLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private LLMConcurrencyLimiter limiter(int initialLimit, int maxQueue, int perUserMax, long maxWaitMs) {
+        LLMConcurrencyLimiter limiter = new LLMConcurrencyLimiter(true, initialLimit, 2, 64, maxQueue, perUserMax,
+                maxWaitMs, meterRegistry);
+        limiter.registerGauges();
+        return limiter;
+    }
+
+    private double limit() {
+        return meterRegistry.get("llm.limiter.limit").gauge().value();
+    }
+
+    @Test
+    void overloadHalvesLimitDownToMin() {
+        LLMConcurrencyLimiter limiter = limiter(8, 10, 8, 100);
+
+        limiter.acquire(null).release(LLMConcurrencyLimiter.Outcome.DROPPED);
+        assertEquals(4, limit());
+        limiter.acquire(null).release(LLMConcurrencyLimiter.Outcome.DROPPED);
+        limiter.acquire(null).release(LLMConcurrencyLimiter.Outcome.DROPPED);
+        assertEquals(2, limit());
+    }
+
+    @Test
+    void successesGrowLimitOnlyWhileItIsInUse() {
+        LLMConcurrencyLimiter limiter = limiter(8, 10, 8, 100);
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire(null).release(LLMConcurrencyLimiter.Outcome.SUCCESS);
+        }
+        assertEquals(8, limit());
+
+        for (int round = 0; round < 2; round++) {
+            List<LLMConcurrencyLimiter.Permit> permits = new ArrayList<>();
+            for (int i = 0; i < 8; i++) permits.add(limiter.acquire(null));
+            permits.forEach(p -> p.release(LLMConcurrencyLimiter.Outcome.SUCCESS));
+        }
+        // About +1 per limit-sized window of successes at load.
+        assertTrue(limit() >= 9 && limit() < 10, "limit " + limit());
+    }
+
+    @Test
+    void ignoredOutcomeLeavesLimitUnchanged() {
+        LLMConcurrencyLimiter limiter = limiter(8, 10, 8, 100);
+        List<LLMConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 8; i++) permits.add(limiter.acquire(null));
+        permits.forEach(p -> p.release(LLMConcurrencyLimiter.Outcome.IGNORED));
+
+        assertEquals(8, limit());
+    }
+
+    @Test
+    void fullQueueFailsFast() {
+        LLMConcurrencyLimiter limiter = limiter(2, 0, 2, 5_000);
+        limiter.acquire(null);
+        limiter.acquire(null);
+
+        long start = System.nanoTime();
+        assertThrows(LLMBusyException.class, () -> limiter.acquire(null));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(1, meterRegistry.counter("llm.limiter.rejected", "reason", "queue_full").count());
+    }
+
+    @Test
+    void userAtCapWaitsWhileOthersAreAdmitted() {
+        LLMConcurrencyLimiter limiter = limiter(8, 10, 2, 50);
+        limiter.acquire(1L);
+        limiter.acquire(1L);
+
+        assertThrows(LLMBusyException.class, () -> limiter.acquire(1L));
+        assertNotNull(limiter.acquire(2L));
+        assertEquals(1, meterRegistry.counter("llm.limiter.rejected", "reason", "timeout").count());
+    }
+
+    @Test
+    void releaseGrantsQueuedWaiter() throws Exception {
+        LLMConcurrencyLimiter limiter = limiter(2, 10, 2, 5_000);
+        LLMConcurrencyLimiter.Permit first = limiter.acquire(null);
+        limiter.acquire(null);
+
+        CompletableFuture<LLMConcurrencyLimiter.Permit> waiter = CompletableFuture.supplyAsync(() -> limiter.acquire(null));
+        while (meterRegistry.get("llm.limiter.queued").gauge().value() < 1) {
+            Thread.sleep(5);
+        }
+        assertFalse(waiter.isDone());
+        first.release(LLMConcurrencyLimiter.Outcome.SUCCESS);
+
+        assertNotNull(waiter.get(1, TimeUnit.SECONDS));
+    }
+}
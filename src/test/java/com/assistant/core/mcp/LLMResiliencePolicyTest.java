@@ -0,0 +1,105 @@
+package com.assistant.core.mcp;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LLMResiliencePolicyTest {
+
+    private final MockEnvironment environment = new MockEnvironment();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @BeforeEach
+    void fastBackoff() {
+        environment.setProperty("app.llm.resilience.base-backoff-ms", "1");
+        environment.setProperty("app.llm.resilience.max-backoff-ms", "5");
+        environment.setProperty("app.llm.resilience.circuit.failure-threshold", "2");
+        environment.setProperty("app.llm.resilience.circuit.open-duration-ms", "50");
+    }
+
+    private LLMResiliencePolicy policy() {
+        return new LLMResiliencePolicy(environment, meterRegistry);
+    }
+
+    private static HttpServerErrorException serverError() {
+        return HttpServerErrorException.create(HttpStatus.SERVICE_UNAVAILABLE, "unavailable",
+                HttpHeaders.EMPTY, new byte[0], StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void retriesServerErrorsUntilSuccess() {
+        String result = policy().execute("responses", () -> {
+            if (calls.incrementAndGet() < 3) throw serverError();
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(3, calls.get());
+        assertEquals(2.0, meterRegistry.get("llm.resilience.retries").counter().count());
+    }
+
+    @Test
+    void clientErrorsAreNotRetriedAndKeepTheCircuitClosed() {
+        LLMResiliencePolicy policy = policy();
+        for (int i = 0; i < 3; i++) {
+            assertThrows(HttpClientErrorException.class, () -> policy.execute("responses", () -> {
+                calls.incrementAndGet();
+                throw HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "bad",
+                        HttpHeaders.EMPTY, new byte[0], StandardCharsets.UTF_8);
+            }));
+        }
+
+        assertEquals(3, calls.get());
+        assertEquals(0.0, meterRegistry.get("llm.circuit.state").gauge().value());
+    }
+
+    @Test
+    void circuitOpensAfterConsecutiveFailuresAndClosesOnTrialSuccess() throws InterruptedException {
+        environment.setProperty("app.llm.resilience.max-attempts", "1");
+        LLMResiliencePolicy policy = policy();
+        for (int i = 0; i < 2; i++) {
+            assertThrows(HttpServerErrorException.class, () -> policy.execute("responses", () -> {
+                throw serverError();
+            }));
+        }
+
+        assertThrows(CircuitOpenException.class, () -> policy.execute("responses", calls::incrementAndGet));
+        assertEquals(0, calls.get());
+
+        Thread.sleep(60);
+        assertEquals(1, policy.execute("responses", calls::incrementAndGet));
+        assertEquals(0.0, meterRegistry.get("llm.circuit.state").gauge().value());
+    }
+
+    @Test
+    void halfOpenTrialIsReleasedWhenTheCallThrowsAnError() throws InterruptedException {
+        environment.setProperty("app.llm.resilience.max-attempts", "1");
+        LLMResiliencePolicy policy = policy();
+        for (int i = 0; i < 2; i++) {
+            assertThrows(HttpServerErrorException.class, () -> policy.execute("responses", () -> {
+                throw serverError();
+            }));
+        }
+        Thread.sleep(60);
+
+        assertThrows(AssertionError.class, () -> policy.execute("responses", () -> {
+            throw new AssertionError("boom");
+        }));
+
+        // The trial slot is free again: the next call is admitted instead of short-circuited.
+        assertNull(policy.execute("responses", () -> null));
+    }
+}
@@ -0,0 +1,174 @@
+package com.assistant.core.mcp;
+
+import com.assistant.core.service.AssistantProfileService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/** Runs LLMService against a local HTTP server standing in for the provider. */
+class LLMServiceTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final String TEXT_RESPONSE = """
+            {"id":"resp_1","output":[{"type":"message","content":[{"type":"output_text","text":"Hi there"}]}]}""";
+
+    /** Handles the n-th request (0-based) received by the fake provider. */
+    interface Handler {
+        void handle(int n, HttpExchange exchange) throws Exception;
+    }
+
+    private final List<String> requestBodies = new CopyOnWriteArrayList<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MockEnvironment environment = new MockEnvironment();
+    private volatile Handler handler = (n, exchange) -> respond(exchange, 200, TEXT_RESPONSE);
+    private HttpServer server;
+    private LLMConcurrencyLimiter limiter;
+
+    @BeforeEach
+    void startProvider() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", exchange -> {
+            try (exchange) {
+                requestBodies.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+                handler.handle(requests.getAndIncrement(), exchange);
+            } catch (Exception e) {
+                // The client went away (e.g. a cancelled hedge); nothing to answer.
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopProvider() {
+        server.stop(0);
+    }
+
+    private LLMService llmService() {
+        limiter = new LLMConcurrencyLimiter(true, 8, 2, 64, 50, 8, 3000, meterRegistry);
+        limiter.registerGauges();
+        RestClient restClient = RestClient.builder()
+                .baseUrl("http://127.0.0.1:" + server.getAddress().getPort())
+                .requestFactory(new JdkClientHttpRequestFactory())
+                .build();
+        return new LLMService("http://provider", restClient, mock(AssistantProfileService.class),
+                new ToolRegistry(List.of()), new LLMUsageMetrics(meterRegistry), limiter,
+                new LLMResiliencePolicy(environment, meterRegistry));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static void respondStream(HttpExchange exchange, String sse) throws IOException {
+        byte[] bytes = sse.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    @Test
+    void compactionSummaryIsSentAsDeveloperMessage() throws Exception {
+        ChatWithToolsResult result = llmService().chatWithTools(1L, List.of(
+                Map.of("role", "system", "content", "User added milk and asked about Anna."),
+                Map.of("role", "user", "content", "what did I add?")));
+
+        assertInstanceOf(ChatWithToolsResult.Content.class, result);
+        JsonNode input = JSON.readTree(requestBodies.get(0)).path("input");
+        assertEquals("developer", input.get(0).path("role").asText());
+        assertTrue(input.get(0).path("content").asText().contains("User added milk and asked about Anna."));
+        assertEquals("user", input.get(1).path("role").asText());
+    }
+
+    @Test
+    void cancelledHedgeLoserDoesNotShrinkTheLimit() throws Exception {
+        environment.setProperty("app.llm.resilience.hedge.enabled", "true");
+        environment.setProperty("app.llm.resilience.hedge.min-delay-ms", "50");
+        handler = (n, exchange) -> {
+            if (n == 20) {
+                Thread.sleep(5_000);
+            }
+            respond(exchange, 200, TEXT_RESPONSE);
+        };
+        LLMService llmService = llmService();
+        List<Map<String, Object>> messages = List.of(Map.of("role", "user", "content", "hi"));
+
+        // Enough fast calls for a latency baseline, then one whose primary stalls and gets hedged.
+        for (int i = 0; i <= 20; i++) {
+            assertInstanceOf(ChatWithToolsResult.Content.class, llmService.chatWithTools(1L, messages));
+        }
+
+        assertEquals(22, requests.get());
+        long deadline = System.nanoTime() + 2_000_000_000L;
+        while (meterRegistry.get("llm.limiter.in_flight").gauge().value() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0.0, meterRegistry.get("llm.limiter.in_flight").gauge().value());
+        assertTrue(meterRegistry.get("llm.limiter.limit").gauge().value() >= 8,
+                "limit: " + meterRegistry.get("llm.limiter.limit").gauge().value());
+    }
+
+    @Test
+    void streamThatFailsAfterPartialTextIsUnavailable() {
+        handler = (n, exchange) -> respondStream(exchange, """
+                data: {"type":"response.output_text.delta","output_index":0,"delta":"You have three tas"}
+
+                data: {"type":"response.failed","response":{"status":"failed","error":{"code":"server_error"}}}
+
+                """);
+        List<String> deltas = new CopyOnWriteArrayList<>();
+
+        ChatWithToolsResult result = llmService().chatWithToolsStreaming(1L,
+                List.of(Map.of("role", "user", "content", "what's on my list?")), new LLMStreamListener() {
+                    @Override
+                    public void onTextDelta(String delta) {
+                        deltas.add(delta);
+                    }
+                });
+
+        assertInstanceOf(ChatWithToolsResult.Unavailable.class, result);
+        assertEquals(List.of("You have three tas"), deltas);
+    }
+
+    @Test
+    void streamThatFailsAfterACompletedToolCallKeepsTheCall() {
+        handler = (n, exchange) -> respondStream(exchange, """
+                data: {"type":"response.output_item.done","output_index":0,"item":{"type":"function_call","id":"fc_1","call_id":"call_1","name":"list_tasks","arguments":"{}"}}
+
+                data: {"type":"error","message":"stream interrupted"}
+
+                """);
+
+        ChatWithToolsResult result = llmService().chatWithToolsStreaming(1L,
+                List.of(Map.of("role", "user", "content", "what's on my list?")), null);
+
+        ChatWithToolsResult.ToolCalls toolCalls = assertInstanceOf(ChatWithToolsResult.ToolCalls.class, result);
+        assertEquals("list_tasks", toolCalls.calls().get(0).name());
+    }
+}
@@ -0,0 +1,138 @@
+package com.assistant.core.mcp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResponsesStreamParserTest {
+
+    /** Records listener callbacks in arrival order. */
+    private final List<String> events = new ArrayList<>();
+    private final LLMStreamListener listener = new LLMStreamListener() {
+        @Override
+        public void onTextDelta(String delta) {
+            events.add("text:" + delta);
+        }
+
+        @Override
+        public void onToolCall(ChatWithToolsResult.SingleToolCall call) {
+            events.add("call:" + call.id() + ":" + call.name() + ":" + call.arguments());
+        }
+    };
+
+    private ResponsesStreamParser parse(String sse) throws IOException {
+        ResponsesStreamParser parser = new ResponsesStreamParser(listener);
+        parser.read(new ByteArrayInputStream(sse.getBytes(StandardCharsets.UTF_8)));
+        return parser;
+    }
+
+    @Test
+    void forwardsTextDeltasAndKeepsCompletedResponse() throws IOException {
+        ResponsesStreamParser parser = parse("""
+                event: response.created
+                data: {"type":"response.created","response":{"id":"resp_1"}}
+
+                event: response.output_text.delta
+                data: {"type":"response.output_text.delta","output_index":0,"delta":"Hello "}
+
+                data: {"type":"response.output_text.delta","output_index":0,"delta":"there"}
+
+                data: {"type":"response.completed","response":{"id":"resp_1","status":"completed"}}
+
+                """);
+
+        assertEquals(List.of("text:Hello ", "text:there"), events);
+        assertEquals("Hello there", parser.text());
+        assertEquals("resp_1", parser.completedResponse().get("id"));
+        assertTrue(parser.started());
+        assertNull(parser.error());
+    }
+
+    @Test
+    void reportsFunctionCallOnceWhenArgumentsAreDone() throws IOException {
+        ResponsesStreamParser parser = parse("""
+                data: {"type":"response.output_item.added","output_index":0,"item":{"type":"function_call","id":"fc_1","call_id":"call_1","name":"create_task","arguments":""}}
+
+                data: {"type":"response.function_call_arguments.delta","output_index":0,"item_id":"fc_1","delta":"{\\"title\\":"}
+
+                data: {"type":"response.function_call_arguments.delta","output_index":0,"item_id":"fc_1","delta":"\\"milk\\"}"}
+
+                data: {"type":"response.function_call_arguments.done","output_index":0,"item_id":"fc_1","arguments":"{\\"title\\":\\"milk\\"}"}
+
+                data: {"type":"response.output_item.done","output_index":0,"item":{"type":"function_call","id":"fc_1","call_id":"call_1","name":"create_task","arguments":"{\\"title\\":\\"milk\\"}"}}
+
+                """);
+
+        assertEquals(List.of("call:call_1:create_task:{title=milk}"), events);
+        assertEquals(1, parser.toolCalls().size());
+        assertEquals(Map.of("title", "milk"), parser.toolCalls().get(0).arguments());
+        assertNull(parser.completedResponse());
+    }
+
+    @Test
+    void textAfterAFunctionCallIsNotForwarded() throws IOException {
+        ResponsesStreamParser parser = parse("""
+                data: {"type":"response.output_item.added","output_index":0,"item":{"type":"function_call","id":"fc_1","call_id":"call_1","name":"list_tasks","arguments":""}}
+
+                data: {"type":"response.output_text.delta","output_index":1,"delta":"Let me check."}
+
+                data: {"type":"response.output_item.done","output_index":0,"item":{"type":"function_call","id":"fc_1","call_id":"call_1","name":"list_tasks","arguments":"{}"}}
+
+                """);
+
+        assertEquals(List.of("call:call_1:list_tasks:{}"), events);
+        assertEquals("Let me check.", parser.text());
+    }
+
+    @Test
+    void callSeenOnlyInOutputItemDoneIsStillReported() throws IOException {
+        ResponsesStreamParser parser = parse("""
+                data: {"type":"response.output_item.done","output_index":1,"item":{"type":"function_call","id":"fc_2","call_id":"call_2","name":"list_tasks","arguments":"{}"}}
+
+                """);
+
+        assertEquals(List.of("call:call_2:list_tasks:{}"), events);
+        assertEquals("call_2", parser.toolCalls().get(0).id());
+    }
+
+    @Test
+    void joinsMultiLineDataAndSkipsCommentsAndDone() throws IOException {
+        ResponsesStreamParser parser = parse("""
+                : keep-alive
+                data: {"type":"response.output_text.delta",
+                data:  "output_index":0,"delta":"ok"}
+
+                data: [DONE]
+                """);
+
+        assertEquals(List.of("text:ok"), events);
+        assertEquals("ok", parser.text());
+    }
+
+    @Test
+    void recordsErrorEvents() throws IOException {
+        ResponsesStreamParser parser = parse("""
+                data: {"type":"response.failed","response":{"status":"failed","error":{"code":"server_error"}}}
+                """);
+
+        assertNotNull(parser.error());
+        assertTrue(parser.error().contains("server_error"));
+        assertTrue(parser.toolCalls().isEmpty());
+    }
+
+    @Test
+    void notStartedBeforeAnyEvent() throws IOException {
+        assertFalse(parse("").started());
+    }
+}
@@ -0,0 +1,107 @@
+package com.assistant.core.mcp;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ToolResultShaperTest {
+
+    private final ToolResultShaper shaper = new ToolResultShaper(true, 500, 20, 25, new SimpleMeterRegistry());
+
+    private static Tool tool(ToolResultShape shape) {
+        return new Tool() {
+            @Override
+            public String name() {
+                return "list_tasks";
+            }
+
+            @Override
+            public String description() {
+                return "";
+            }
+
+            @Override
+            public Map<String, Object> parametersSchema() {
+                return Map.of();
+            }
+
+            @Override
+            public ToolResultShape resultShape() {
+                return shape;
+            }
+
+            @Override
+            public Map<String, Object> execute(Map<String, Object> arguments) {
+                return Map.of();
+            }
+        };
+    }
+
+    private static List<Map<String, Object>> tasks(int count, String titlePrefix) {
+        List<Map<String, Object>> tasks = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            tasks.add(Map.of("id", i, "title", titlePrefix + i, "notes", "n"));
+        }
+        return tasks;
+    }
+
+    @Test
+    void cutsListFromOffsetProjectsFieldsAndPointsToTheRest() {
+        Tool tool = tool(ToolResultShape.list("tasks", 2, 50, "id", "title"));
+
+        Map<String, Object> shaped = shaper.shape(tool, Map.of("offset", "1"), Map.of("tasks", tasks(5, "t")));
+
+        assertEquals(Map.of("fields", List.of("id", "title"), "rows", List.of(List.of(2, "t2"), List.of(3, "t3"))),
+                shaped.get("tasks"));
+        assertEquals(1, shaped.get("offset"));
+        Map<?, ?> more = (Map<?, ?>) shaped.get("more");
+        assertEquals(2, more.get("remaining"));
+        assertEquals(3, more.get("nextOffset"));
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        Tool tool = tool(ToolResultShape.list("tasks", 10, 50, "id"));
+
+        Map<String, Object> shaped = shaper.shape(tool, Map.of(), Map.of("tasks", tasks(3, "t")));
+
+        assertFalse(shaped.containsKey("more"));
+        assertFalse(shaped.containsKey("offset"));
+    }
+
+    @Test
+    void halvesRowsUntilResultFitsMaxChars() {
+        Tool tool = tool(ToolResultShape.list("tasks", 25, 100, "id", "title"));
+
+        Map<String, Object> shaped = shaper.shape(tool, Map.of(), Map.of("tasks", tasks(25, "x".repeat(60))));
+
+        List<?> rows = (List<?>) ((Map<?, ?>) shaped.get("tasks")).get("rows");
+        assertTrue(rows.size() < 25);
+        assertEquals(rows.size(), ((Map<?, ?>) shaped.get("more")).get("nextOffset"));
+    }
+
+    @Test
+    void truncatesLongStringsAnywhereInUnshapedResults() {
+        Map<String, Object> shaped = shaper.shape(tool(null), Map.of(),
+                Map.of("message", "a".repeat(30), "nested", Map.of("items", List.of("b".repeat(25)))));
+
+        assertEquals("a".repeat(20) + "…(+10 chars)", shaped.get("message"));
+        assertEquals(Map.of("items", List.of("b".repeat(20) + "…(+5 chars)")), shaped.get("nested"));
+    }
+
+    @Test
+    void disabledShaperReturnsResultUnchanged() {
+        ToolResultShaper disabled = new ToolResultShaper(false, 500, 20, 25, new SimpleMeterRegistry());
+        Map<String, Object> result = Map.of("message", "a".repeat(30));
+
+        assertSame(result, disabled.shape(tool(null), Map.of(), result));
+    }
+}
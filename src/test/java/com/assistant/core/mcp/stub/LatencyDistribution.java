@@ -0,0 +1,73 @@
+package com.assistant.core.mcp.stub;
+
+import java.util.Locale;
+import java.util.random.RandomGenerator;
+
+/**
+ * Simulated upstream latency, parsed from a spec string:
+ * <ul>
+ *   <li>{@code fixed:50} — always 50 ms</li>
+ *   <li>{@code uniform:20-200} — uniform between 20 and 200 ms</li>
+ *   <li>{@code lognormal:300,0.5} — log-normal with median 300 ms and sigma 0.5 (long tail, like real providers)</li>
+ *   <li>{@code none} — no delay</li>
+ * </ul>
+ */
+public final class LatencyDistribution {
+
+    private enum Kind { NONE, FIXED, UNIFORM, LOGNORMAL }
+
+    private final Kind kind;
+    private final double a;
+    private final double b;
+
+    private LatencyDistribution(Kind kind, double a, double b) {
+        this.kind = kind;
+        this.a = a;
+        this.b = b;
+    }
+
+    public static LatencyDistribution parse(String spec) {
+        if (spec == null || spec.isBlank() || spec.strip().equalsIgnoreCase("none")) {
+            return new LatencyDistribution(Kind.NONE, 0, 0);
+        }
+        String s = spec.strip().toLowerCase(Locale.ROOT);
+        int colon = s.indexOf(':');
+        if (colon < 0) {
+            return new LatencyDistribution(Kind.FIXED, Double.parseDouble(s), 0);
+        }
+        String type = s.substring(0, colon);
+        String args = s.substring(colon + 1);
+        return switch (type) {
+            case "fixed" -> new LatencyDistribution(Kind.FIXED, Double.parseDouble(args), 0);
+            case "uniform" -> {
+                String[] range = args.split("-");
+                yield new LatencyDistribution(Kind.UNIFORM, Double.parseDouble(range[0]), Double.parseDouble(range[1]));
+            }
+            case "lognormal" -> {
+                String[] p = args.split(",");
+                yield new LatencyDistribution(Kind.LOGNORMAL, Double.parseDouble(p[0]), p.length > 1 ? Double.parseDouble(p[1]) : 0.5);
+            }
+            default -> throw new IllegalArgumentException("Unknown latency distribution: " + spec);
+        };
+    }
+
+    /** Draws one latency in milliseconds. */
+    public long sampleMillis(RandomGenerator random) {
+        return switch (kind) {
+            case NONE -> 0;
+            case FIXED -> (long) a;
+            case UNIFORM -> (long) (a + random.nextDouble() * (b - a));
+            case LOGNORMAL -> (long) (a * Math.exp(b * random.nextGaussian()));
+        };
+    }
+
+    @Override
+    public String toString() {
+        return switch (kind) {
+            case NONE -> "none";
+            case FIXED -> "fixed:" + (long) a;
+            case UNIFORM -> "uniform:" + (long) a + "-" + (long) b;
+            case LOGNORMAL -> "lognormal:" + (long) a + "," + b;
+        };
+    }
+}
@@ -0,0 +1,352 @@
+package com.assistant.core.mcp.stub;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the LLM provider, for load and latency benchmarks without API spend.
+ * Speaks the subset of the APIs LLMService uses: POST /v1/responses (blocking and SSE streaming,
+ * function calls, previous_response_id, usage) and POST /v1/chat/completions. Replies follow a
+ * {@link StubScript}; latency is drawn from a {@link LatencyDistribution}; a share of requests can
+ * fail with 429 (with Retry-After) or 500. Each request's randomness is seeded from the run seed,
+ * the request's content (user message and turn step) and how often that content has been seen, so
+ * a run is reproducible however concurrent requests interleave.
+ * <p>
+ * Test-only; it is not part of the application jar. Run it from the test classpath:
+ * {@code mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt}, then
+ * {@code java -cp target/test-classes:target/classes:$(cat target/cp.txt) com.assistant.core.mcp.stub.StubLLMServer --port=18089 --latency=lognormal:300,0.5}.
+ * Point the app at it with LLM_BASE_URL=http://localhost:&lt;port&gt; (and FASTPATH_ENABLED=false to send
+ * every message through the stub model).
+ */
+public class StubLLMServer {
+
+    private static final Logger log = LoggerFactory.getLogger(StubLLMServer.class);
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final int MAX_REMEMBERED_RESPONSES = 100_000;
+
+    /** Server settings; latency applies before the first byte of each response. */
+    public record Settings(int port, LatencyDistribution responsesLatency, LatencyDistribution chatLatency,
+                           double error429Rate, double error500Rate, long seed, String scriptPath) {}
+
+    /** Where a stored response left its rule, so previous_response_id continues the script. */
+    private record ConversationPoint(StubScript.Resolved resolved, int step) {}
+
+    private final Settings settings;
+    private final StubScript script;
+    private final Map<Long, AtomicLong> occurrences = new ConcurrentHashMap<>();
+    private final Map<String, ConversationPoint> responses = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private HttpServer server;
+
+    public StubLLMServer(Settings settings) throws IOException {
+        this.settings = settings;
+        this.script = StubScript.load(settings.scriptPath());
+    }
+
+    public synchronized void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", settings.port()), 1024);
+        server.setExecutor(executor);
+        server.createContext("/v1/responses", this::handleResponses);
+        server.createContext("/v1/chat/completions", this::handleChatCompletions);
+        server.start();
+        log.info("Stub LLM server listening on http://localhost:{} (responses latency {}, chat latency {}, 429 rate {}, 500 rate {})",
+                port(), settings.responsesLatency(), settings.chatLatency(), settings.error429Rate(), settings.error500Rate());
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        executor.shutdownNow();
+    }
+
+    /** Bound port (useful with port 0). */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    private void handleResponses(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Map<String, Object> body = readBody(exchange);
+            if (body == null) return;
+
+            Object previousId = body.get("previous_response_id");
+            ConversationPoint previous = previousId != null ? responses.get(previousId.toString()) : null;
+            if (previousId != null && previous == null) {
+                sendJson(exchange, 400, Map.of("error", Map.of(
+                        "message", "Previous response with id '" + previousId + "' not found.",
+                        "type", "invalid_request_error", "param", "previous_response_id",
+                        "code", "previous_response_not_found")));
+                return;
+            }
+            List<?> input = body.get("input") instanceof List<?> l ? l : List.of();
+            ConversationPoint point = nextPoint(input, previous);
+            SplittableRandom random = random("responses\n" + point.resolved().groups().get(0) + "\n" + point.step());
+            sleep(settings.responsesLatency().sampleMillis(random));
+            if (injectError(exchange, random)) return;
+            StubScript.Step step = point.resolved().step(point.step());
+
+            String responseId = "resp_stub_" + ids.incrementAndGet();
+            remember(responseId, point);
+            List<Map<String, Object>> output = output(step);
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("id", responseId);
+            response.put("object", "response");
+            response.put("status", "completed");
+            response.put("model", body.getOrDefault("model", "stub"));
+            response.put("output", output);
+            response.put("usage", usage(body, output));
+
+            if (Boolean.TRUE.equals(body.get("stream"))) {
+                stream(exchange, response, output);
+            } else {
+                sendJson(exchange, 200, response);
+            }
+        } catch (Exception e) {
+            log.warn("Stub /v1/responses failed: {}", e.getMessage());
+        }
+    }
+
+    private void handleChatCompletions(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Map<String, Object> body = readBody(exchange);
+            if (body == null) return;
+
+            String lastUser = "";
+            if (body.get("messages") instanceof List<?> messages) {
+                for (Object m : messages) {
+                    if (m instanceof Map<?, ?> mm && "user".equals(mm.get("role")) && mm.get("content") != null) {
+                        lastUser = mm.get("content").toString();
+                    }
+                }
+            }
+            SplittableRandom random = random("chat\n" + lastUser);
+            sleep(settings.chatLatency().sampleMillis(random));
+            if (injectError(exchange, random)) return;
+
+            String content = "Summary: " + (lastUser.length() > 200 ? lastUser.substring(0, 200) + "..." : lastUser);
+            int promptTokens = estimateTokens(JSON.writeValueAsString(body));
+            sendJson(exchange, 200, Map.of(
+                    "id", "chatcmpl_stub_" + ids.incrementAndGet(),
+                    "object", "chat.completion",
+                    "model", body.getOrDefault("model", "stub"),
+                    "choices", List.of(Map.of("index", 0, "finish_reason", "stop",
+                            "message", Map.of("role", "assistant", "content", content))),
+                    "usage", Map.of("prompt_tokens", promptTokens, "completion_tokens", estimateTokens(content),
+                            "total_tokens", promptTokens + estimateTokens(content),
+                            "prompt_tokens_details", Map.of("cached_tokens", 0))));
+        } catch (Exception e) {
+            log.warn("Stub /v1/chat/completions failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * A new user message starts its rule at step 0; otherwise the step is one past the previous
+     * response's (server-side state) or the number of tool-output rounds since the last user message.
+     */
+    private ConversationPoint nextPoint(List<?> input, ConversationPoint previous) {
+        int lastUser = -1;
+        for (int i = 0; i < input.size(); i++) {
+            if (input.get(i) instanceof Map<?, ?> item && "user".equals(item.get("role"))) lastUser = i;
+        }
+        if (lastUser >= 0) {
+            Object content = ((Map<?, ?>) input.get(lastUser)).get("content");
+            StubScript.Resolved resolved = script.resolve(content != null ? content.toString() : "");
+            int rounds = 0;
+            boolean inOutputs = false;
+            for (int i = lastUser + 1; i < input.size(); i++) {
+                boolean isOutput = input.get(i) instanceof Map<?, ?> item && "function_call_output".equals(item.get("type"));
+                if (isOutput && !inOutputs) rounds++;
+                inOutputs = isOutput;
+            }
+            return new ConversationPoint(resolved, rounds);
+        }
+        if (previous != null) {
+            return new ConversationPoint(previous.resolved(), previous.step() + 1);
+        }
+        return new ConversationPoint(script.resolve(""), 0);
+    }
+
+    private List<Map<String, Object>> output(StubScript.Step step) throws IOException {
+        List<Map<String, Object>> output = new ArrayList<>();
+        if (!step.calls().isEmpty()) {
+            for (StubScript.Call call : step.calls()) {
+                long n = ids.incrementAndGet();
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("type", "function_call");
+                item.put("id", "fc_stub_" + n);
+                item.put("call_id", "call_stub_" + n);
+                item.put("name", call.name());
+                item.put("arguments", JSON.writeValueAsString(call.arguments()));
+                item.put("status", "completed");
+                output.add(item);
+            }
+            return output;
+        }
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("type", "message");
+        message.put("id", "msg_stub_" + ids.incrementAndGet());
+        message.put("role", "assistant");
+        message.put("status", "completed");
+        message.put("content", List.of(Map.of("type", "output_text", "text", step.reply() != null ? step.reply() : "")));
+        output.add(message);
+        return output;
+    }
+
+    /** Emits the Responses SSE events LLMService consumes, ending with response.completed. */
+    private void stream(HttpExchange exchange, Map<String, Object> response, List<Map<String, Object>> output) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        event(out, Map.of("type", "response.created", "response", Map.of("id", response.get("id"), "status", "in_progress")));
+        for (int i = 0; i < output.size(); i++) {
+            Map<String, Object> item = output.get(i);
+            if ("function_call".equals(item.get("type"))) {
+                Map<String, Object> added = new LinkedHashMap<>(item);
+                added.put("arguments", "");
+                added.put("status", "in_progress");
+                event(out, Map.of("type", "response.output_item.added", "output_index", i, "item", added));
+                event(out, Map.of("type", "response.function_call_arguments.delta", "output_index", i,
+                        "item_id", item.get("id"), "delta", item.get("arguments")));
+                event(out, Map.of("type", "response.function_call_arguments.done", "output_index", i,
+                        "item_id", item.get("id"), "arguments", item.get("arguments")));
+            } else {
+                event(out, Map.of("type", "response.output_item.added", "output_index", i,
+                        "item", Map.of("type", "message", "id", item.get("id"), "role", "assistant", "content", List.of())));
+                String text = ((List<?>) item.get("content")).isEmpty() ? ""
+                        : String.valueOf(((Map<?, ?>) ((List<?>) item.get("content")).get(0)).get("text"));
+                for (String word : text.split("(?<= )")) {
+                    event(out, Map.of("type", "response.output_text.delta", "output_index", i,
+                            "item_id", item.get("id"), "delta", word));
+                }
+            }
+            event(out, Map.of("type", "response.output_item.done", "output_index", i, "item", item));
+        }
+        event(out, Map.of("type", "response.completed", "response", response));
+    }
+
+    private static void event(OutputStream out, Map<String, Object> event) throws IOException {
+        out.write(("event: " + event.get("type") + "\ndata: " + JSON.writeValueAsString(event) + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private boolean injectError(HttpExchange exchange, SplittableRandom random) throws IOException {
+        double roll = random.nextDouble();
+        if (roll < settings.error429Rate()) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            sendJson(exchange, 429, Map.of("error", Map.of("message", "Rate limit reached (stub)", "type", "rate_limit_error")));
+            return true;
+        }
+        if (roll < settings.error429Rate() + settings.error500Rate()) {
+            sendJson(exchange, 500, Map.of("error", Map.of("message", "Internal error (stub)", "type", "server_error")));
+            return true;
+        }
+        return false;
+    }
+
+    private Map<String, Object> usage(Map<String, Object> body, List<Map<String, Object>> output) throws IOException {
+        int input = estimateTokens(JSON.writeValueAsString(body.get("input")))
+                + estimateTokens(String.valueOf(body.get("instructions")))
+                + estimateTokens(String.valueOf(body.get("tools")));
+        int outputTokens = estimateTokens(JSON.writeValueAsString(output));
+        return Map.of("input_tokens", input, "input_tokens_details", Map.of("cached_tokens", 0),
+                "output_tokens", outputTokens, "total_tokens", input + outputTokens);
+    }
+
+    private static int estimateTokens(String s) {
+        return s == null ? 0 : (s.length() + 3) / 4;
+    }
+
+    private void remember(String responseId, ConversationPoint point) {
+        if (responses.size() >= MAX_REMEMBERED_RESPONSES) {
+            responses.clear();
+        }
+        responses.put(responseId, point);
+    }
+
+    /**
+     * Per-request generator keyed on the request's content and its occurrence number (a retry of a
+     * 429 is the next occurrence, so it rolls again), never on arrival order across requests.
+     */
+    private SplittableRandom random(String content) {
+        long key = 0xcbf29ce484222325L;
+        for (byte b : content.getBytes(StandardCharsets.UTF_8)) {
+            key = (key ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        if (occurrences.size() >= MAX_REMEMBERED_RESPONSES) {
+            occurrences.clear();
+        }
+        long occurrence = occurrences.computeIfAbsent(key, k -> new AtomicLong()).getAndIncrement();
+        return new SplittableRandom(settings.seed() ^ key ^ (occurrence * 0x9e3779b97f4a7c15L));
+    }
+
+    private static Map<String, Object> readBody(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            return null;
+        }
+        byte[] bytes = exchange.getRequestBody().readAllBytes();
+        try {
+            return JSON.readValue(bytes, new TypeReference<>() {});
+        } catch (IOException e) {
+            sendJson(exchange, 400, Map.of("error", Map.of("message", "Invalid JSON body", "type", "invalid_request_error")));
+            return null;
+        }
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = JSON.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Standalone entry point; options: --port, --latency, --chat-latency, --error-429, --error-500, --seed, --script. */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                opts.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        StubLLMServer server = new StubLLMServer(new Settings(
+                Integer.parseInt(opts.getOrDefault("port", "18089")),
+                LatencyDistribution.parse(opts.getOrDefault("latency", "lognormal:300,0.5")),
+                LatencyDistribution.parse(opts.getOrDefault("chat-latency", opts.getOrDefault("latency", "lognormal:300,0.5"))),
+                Double.parseDouble(opts.getOrDefault("error-429", "0")),
+                Double.parseDouble(opts.getOrDefault("error-500", "0")),
+                Long.parseLong(opts.getOrDefault("seed", "42")),
+                opts.get("script")));
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+    }
+}
@@ -0,0 +1,169 @@
+package com.assistant.core.mcp.stub;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * What the stub model "does" for a user message: the first rule whose regex matches the message
+ * supplies a sequence of steps, one per model turn. A step either calls tools (the conversation
+ * loop runs them and sends the outputs back, which advances to the next step) or replies with text,
+ * which ends the turn. Capture groups of the match can be used as $1, $2 in arguments and replies.
+ * <p>
+ * JSON format:
+ * <pre>
+ * {"rules": [{"match": "(?i)remind me to (.+)",
+ *             "steps": [{"calls": [{"name": "create_task", "arguments": {"title": "$1"}}]},
+ *                       {"reply": "Done, I'll remind you to $1."}]}],
+ *  "default": {"steps": [{"reply": "OK."}]}}
+ * </pre>
+ */
+public final class StubScript {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    /** One tool call of a step. */
+    public record Call(String name, Map<String, Object> arguments) {}
+
+    /** Either calls (non-empty) or a reply. */
+    public record Step(List<Call> calls, String reply) {}
+
+    record Rule(Pattern pattern, List<Step> steps) {}
+
+    /** A rule matched against a message, with its groups, ready to render steps. */
+    public record Resolved(int ruleIndex, List<Step> steps, List<String> groups) {
+
+        /** The step for the given turn; past the end, a closing reply so the loop always terminates. */
+        public Step step(int index) {
+            if (index < steps.size()) {
+                Step s = steps.get(index);
+                List<Call> calls = s.calls() == null ? List.of() : s.calls().stream()
+                        .map(c -> new Call(c.name(), substitute(c.arguments())))
+                        .toList();
+                return new Step(calls, s.reply() != null ? substitute(s.reply()) : null);
+            }
+            return new Step(List.of(), "Done.");
+        }
+
+        private Map<String, Object> substitute(Map<String, Object> args) {
+            Map<String, Object> out = new LinkedHashMap<>();
+            if (args != null) {
+                args.forEach((k, v) -> out.put(k, v instanceof String s ? substitute(s) : v));
+            }
+            return out;
+        }
+
+        private String substitute(String template) {
+            String result = template;
+            for (int i = groups.size() - 1; i >= 1; i--) {
+                result = result.replace("$" + i, groups.get(i) != null ? groups.get(i) : "");
+            }
+            return result;
+        }
+    }
+
+    private final List<Rule> rules;
+    private final List<Step> defaultSteps;
+
+    private StubScript(List<Rule> rules, List<Step> defaultSteps) {
+        this.rules = rules;
+        this.defaultSteps = defaultSteps;
+    }
+
+    /** Loads a script from a JSON file, or the built-in script when path is blank. */
+    public static StubScript load(String path) throws IOException {
+        if (path == null || path.isBlank()) {
+            return builtIn();
+        }
+        return parse(JSON.readValue(Files.readString(Path.of(path)), new TypeReference<>() {}));
+    }
+
+    /** A script covering the app's tools, so the default pipeline exercises tool execution and persistence. */
+    public static StubScript builtIn() {
+        return parse(Map.of(
+                "rules", List.of(
+                        rule("(?i).*\\b(tasks?|to-?dos?)\\b.*\\b(people|contacts)\\b.*",
+                                calls(List.of(call("list_tasks", Map.of()), call("retrieve_people", Map.of()))),
+                                reply("Here are your tasks and people.")),
+                        rule("(?i).*\\b(list|show|what).*\\b(tasks?|to-?dos?)\\b.*",
+                                calls(List.of(call("list_tasks", Map.of()))), reply("Here are your tasks.")),
+                        rule("(?i).*\\b(people|contacts)\\b.*",
+                                calls(List.of(call("retrieve_people", Map.of()))), reply("Here are your people.")),
+                        rule("(?i)(?:remind me to|add task|add|create task) (.+)",
+                                calls(List.of(call("create_task", Map.of("title", "$1")))), reply("Added: $1.")),
+                        rule("(?i)(?:done|finished|completed) (.+)",
+                                calls(List.of(call("resolve_and_act_on_task", Map.of("userDescription", "$1", "action", "mark_done")))),
+                                reply("Marked $1 as done.")),
+                        rule("(?i)(?:find|search) (.+)",
+                                calls(List.of(call("find_tasks", Map.of("query", "$1")))), reply("Here is what I found for $1."))
+                ),
+                "default", Map.of("steps", List.of(reply("OK.")))
+        ));
+    }
+
+    public Resolved resolve(String userMessage) {
+        String message = userMessage != null ? userMessage.strip() : "";
+        for (int i = 0; i < rules.size(); i++) {
+            Matcher m = rules.get(i).pattern().matcher(message);
+            if (m.matches()) {
+                List<String> groups = new ArrayList<>();
+                for (int g = 0; g <= m.groupCount(); g++) groups.add(m.group(g));
+                return new Resolved(i, rules.get(i).steps(), groups);
+            }
+        }
+        return new Resolved(-1, defaultSteps, List.of(message));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static StubScript parse(Map<String, Object> root) {
+        List<Rule> rules = new ArrayList<>();
+        for (Object o : (List<Object>) root.getOrDefault("rules", List.of())) {
+            Map<String, Object> r = (Map<String, Object>) o;
+            rules.add(new Rule(Pattern.compile(r.get("match").toString()), parseSteps(r.get("steps"))));
+        }
+        Object def = root.get("default");
+        List<Step> defaultSteps = def instanceof Map<?, ?> d ? parseSteps(d.get("steps")) : List.of(new Step(List.of(), "OK."));
+        return new StubScript(List.copyOf(rules), defaultSteps);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Step> parseSteps(Object steps) {
+        List<Step> out = new ArrayList<>();
+        for (Object o : (List<Object>) steps) {
+            Map<String, Object> s = (Map<String, Object>) o;
+            List<Call> calls = new ArrayList<>();
+            for (Object c : (List<Object>) s.getOrDefault("calls", List.of())) {
+                Map<String, Object> cm = (Map<String, Object>) c;
+                calls.add(new Call(cm.get("name").toString(), (Map<String, Object>) cm.getOrDefault("arguments", Map.of())));
+            }
+            out.add(new Step(List.copyOf(calls), s.get("reply") != null ? s.get("reply").toString() : null));
+        }
+        return List.copyOf(out);
+    }
+
+    /** A rule whose model turns are the given tool calls, then the closing reply. */
+    private static Map<String, Object> rule(String match, Map<String, Object> calls, Map<String, Object> reply) {
+        return Map.of("match", match, "steps", List.of(calls, reply));
+    }
+
+    private static Map<String, Object> calls(List<Map<String, Object>> calls) {
+        return Map.of("calls", calls);
+    }
+
+    private static Map<String, Object> call(String name, Map<String, Object> arguments) {
+        return Map.of("name", name, "arguments", arguments);
+    }
+
+    private static Map<String, Object> reply(String text) {
+        return Map.of("reply", text);
+    }
+}
@@ -0,0 +1,137 @@
+package com.assistant.core.scheduler;
+
+import com.assistant.core.dto.DueReminderDTO;
+import com.assistant.core.repository.TaskRepository;
+import com.assistant.core.service.WhatsAppService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReminderDeliveryTest {
+
+    private final TaskRepository taskRepository = mock(TaskRepository.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final WhatsAppService whatsAppService = mock(WhatsAppService.class);
+    private ReminderDelivery delivery;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        // 3 attempts, 30 s base backoff; one message per recipient per minute, deferred if the wait is over 5 s.
+        delivery = new ReminderDelivery(taskRepository, jdbcTemplate, transactionManager, whatsAppService,
+                new SimpleMeterRegistry(), "node-1", 10, 100, 1, 1, 5, 3, 30, 3600);
+    }
+
+    @AfterEach
+    void tearDown() {
+        delivery.shutdown();
+    }
+
+    private static DueReminderDTO reminder(long taskId, int attempts) {
+        return new DueReminderDTO(taskId, 1L, "+100", "Call Anna", null, null, Instant.now(), attempts);
+    }
+
+    private Instant deliver(DueReminderDTO reminder) throws Exception {
+        assertEquals(1, delivery.reserve(1));
+        return delivery.deliver(reminder).get(5, TimeUnit.SECONDS);
+    }
+
+    /** Arguments of the reminder_log upsert: task_id, sent_at, status, attempts, last_error per row. */
+    private Object[] loggedRow() {
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate).update(anyString(), args.capture());
+        return args.getValue();
+    }
+
+    @Test
+    void sentReminderIsSettledAndLogged() throws Exception {
+        assertNull(deliver(reminder(7L, 0)));
+
+        verify(whatsAppService).sendReminder(eq("+100"), anyString());
+        verify(taskRepository).markRemindersSent(eq(List.of(7L)), eq("node-1"), any());
+        Object[] row = loggedRow();
+        assertEquals(7L, row[0]);
+        assertEquals("SENT", row[2]);
+        assertEquals(1, row[3]);
+    }
+
+    @Test
+    void failedSendReleasesTheLeaseUntilTheBackoffEnds() throws Exception {
+        doThrow(new IllegalStateException("session closed")).when(whatsAppService).sendReminder(anyString(), anyString());
+
+        Instant retryAt = deliver(reminder(7L, 1));
+
+        // Second failure: 30 s << 1, plus up to 20 % jitter, rounded up to the second.
+        assertNotNull(retryAt);
+        Duration backoff = Duration.between(Instant.now(), retryAt);
+        assertTrue(backoff.compareTo(Duration.ofSeconds(59)) > 0 && backoff.compareTo(Duration.ofSeconds(74)) <= 0,
+                "backoff: " + backoff);
+        verify(taskRepository).releaseReminder(7L, "node-1", retryAt, true);
+        verify(taskRepository, never()).markRemindersSent(any(), any(), any());
+        Object[] row = loggedRow();
+        assertEquals("RETRYING", row[2]);
+        assertEquals(2, row[3]);
+        assertEquals("session closed", row[4]);
+    }
+
+    @Test
+    void lastAttemptSettlesTheReminderAsFailed() throws Exception {
+        doThrow(new IllegalStateException("session closed")).when(whatsAppService).sendReminder(anyString(), anyString());
+
+        assertNull(deliver(reminder(7L, 2)));
+
+        verify(taskRepository).markRemindersSent(eq(List.of(7L)), eq("node-1"), any());
+        verify(taskRepository, never()).releaseReminder(any(), any(), any(), anyBoolean());
+        Object[] row = loggedRow();
+        assertEquals("FAILED", row[2]);
+        assertEquals(3, row[3]);
+    }
+
+    @Test
+    void recipientOverItsBudgetIsDeferredWithoutCountingAnAttempt() throws Exception {
+        assertNull(deliver(reminder(7L, 0)));
+        Instant retryAt = deliver(reminder(8L, 0));
+
+        assertNotNull(retryAt);
+        verify(whatsAppService, times(1)).sendReminder(anyString(), anyString());
+        verify(taskRepository).releaseReminder(8L, "node-1", retryAt, false);
+        // Only the sent reminder is logged; a deferral is not an attempt.
+        verify(jdbcTemplate, times(1)).update(anyString(), any(Object[].class));
+    }
+
+    @Test
+    void slotsAreReturnedAfterEachDelivery() throws Exception {
+        assertEquals(10, delivery.reserve(20));
+        delivery.release(9);
+
+        delivery.deliver(reminder(7L, 0)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(10, delivery.reserve(10));
+    }
+}
@@ -0,0 +1,138 @@
+package com.assistant.core.scheduler;
+
+import com.assistant.core.dto.DueReminderDTO;
+import com.assistant.core.repository.TaskRepository;
+import com.assistant.core.service.ReminderChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReminderSchedulerTest {
+
+    private final TaskRepository taskRepository = mock(TaskRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final ReminderDelivery delivery = mock(ReminderDelivery.class);
+    private ReminderScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(delivery.owner()).thenReturn("node-1");
+        when(delivery.deliver(any())).thenReturn(CompletableFuture.completedFuture(null));
+        // Pages of 10, 15-minute horizon, 10 ms ticks, 120 s leases.
+        scheduler = new ReminderScheduler(taskRepository, transactionManager, delivery, new SimpleMeterRegistry(),
+                10, 24, 15, 10, 120);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    private static DueReminderDTO reminder(long taskId) {
+        return new DueReminderDTO(taskId, 1L, "+100", "Call Anna", null, null, Instant.now(), 0);
+    }
+
+    @Test
+    void reconcileLeasesNoMoreMissedRemindersThanDeliveryHasSlotsFor() {
+        when(delivery.reserve(10)).thenReturn(2, 0);
+        when(taskRepository.lockDueReminderIds(any(), any(), eq(2))).thenReturn(List.of(5L, 6L));
+        when(taskRepository.findRemindersByIds(List.of(5L, 6L))).thenReturn(List.of(reminder(5), reminder(6)));
+
+        scheduler.reconcile();
+
+        ArgumentCaptor<Instant> until = ArgumentCaptor.forClass(Instant.class);
+        verify(taskRepository).leaseReminders(eq(List.of(5L, 6L)), eq("node-1"), until.capture());
+        Duration leaseLeft = Duration.between(Instant.now(), until.getValue());
+        assertTrue(leaseLeft.compareTo(Duration.ofSeconds(110)) > 0, "lease: " + leaseLeft);
+        verify(delivery, times(2)).deliver(any());
+        verify(delivery).release(0);
+    }
+
+    @Test
+    void reconcileClaimsNothingWhenDeliveryIsFull() {
+        when(delivery.reserve(10)).thenReturn(0);
+
+        scheduler.reconcile();
+
+        verify(taskRepository, never()).lockDueReminderIds(any(), any(), anyInt());
+        verify(delivery, never()).deliver(any());
+    }
+
+    @Test
+    void unusedSlotsAreReturnedWhenNothingIsDue() {
+        when(delivery.reserve(10)).thenReturn(3);
+        when(taskRepository.lockDueReminderIds(any(), any(), eq(3))).thenReturn(List.of());
+
+        scheduler.reconcile();
+
+        verify(taskRepository, never()).leaseReminders(anyList(), any(), any());
+        verify(delivery).release(3);
+    }
+
+    @Test
+    void wheelExpiryClaimsItsReminderAndDeliversIt() throws InterruptedException {
+        when(taskRepository.claimReminder(eq(7L), eq("node-1"), any(), any())).thenReturn(1);
+        when(taskRepository.findRemindersByIds(List.of(7L))).thenReturn(List.of(reminder(7)));
+
+        scheduler.onReminderChanged(new ReminderChangedEvent(7L, Instant.now().plusMillis(50)));
+
+        verify(delivery, timeout(2_000)).deliver(any());
+        verify(delivery).reserveOne();
+        verify(delivery, never()).release(anyInt());
+    }
+
+    @Test
+    void expiryLostToAnotherNodeReturnsItsSlot() throws InterruptedException {
+        when(taskRepository.claimReminder(eq(7L), eq("node-1"), any(), any())).thenReturn(0);
+
+        scheduler.onReminderChanged(new ReminderChangedEvent(7L, Instant.now()));
+
+        verify(delivery, timeout(2_000)).release(1);
+        verify(delivery).reserveOne();
+        verify(delivery, never()).deliver(any());
+    }
+
+    @Test
+    void cancelledReminderIsNotFired() {
+        scheduler.onReminderChanged(new ReminderChangedEvent(7L, Instant.now().plusMillis(100)));
+        scheduler.onReminderChanged(new ReminderChangedEvent(7L, null));
+
+        verify(taskRepository, after(300).never()).claimReminder(any(), any(), any(), any());
+    }
+
+    @Test
+    void retryWithinTheHorizonGoesBackOnTheWheel() {
+        when(taskRepository.claimReminder(eq(7L), eq("node-1"), any(), any())).thenReturn(1);
+        when(taskRepository.findRemindersByIds(List.of(7L))).thenReturn(List.of(reminder(7)));
+        when(delivery.deliver(any())).thenReturn(
+                CompletableFuture.completedFuture(Instant.now().plusMillis(100)),
+                CompletableFuture.completedFuture(null));
+
+        scheduler.onReminderChanged(new ReminderChangedEvent(7L, Instant.now()));
+
+        verify(delivery, timeout(2_000).times(2)).deliver(any());
+    }
+}
@@ -0,0 +1,119 @@
+package com.assistant.core.service;
+
+import com.assistant.core.model.ChatMessage;
+import com.assistant.core.repository.ChatMessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BackgroundCompactorTest {
+
+    private final ChatMessageRepository repository = mock(ChatMessageRepository.class);
+    private final CompactionEngine compactionEngine = mock(CompactionEngine.class);
+    private final ConversationContextCache contextCache = mock(ConversationContextCache.class);
+    private final ConversationStateService conversationStateService = mock(ConversationStateService.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserMailboxScheduler mailboxScheduler = new UserMailboxScheduler(16, meterRegistry);
+    private BackgroundCompactor compactor;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        compactor = new BackgroundCompactor(repository, compactionEngine, contextCache, conversationStateService,
+                mailboxScheduler, transactionManager, meterRegistry, true, 150, 12_000, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        compactor.shutdown();
+        mailboxScheduler.shutdown();
+    }
+
+    private void historyOf(long messages, long chars) {
+        when(repository.getHistoryStats(1L)).thenReturn(new ChatMessageRepository.HistoryStats() {
+            @Override
+            public long getMessageCount() {
+                return messages;
+            }
+
+            @Override
+            public long getTotalChars() {
+                return chars;
+            }
+        });
+    }
+
+    private static ChatMessage row(long id, String role) {
+        ChatMessage m = new ChatMessage();
+        m.setId(id);
+        m.setRole(role);
+        m.setContent("x");
+        return m;
+    }
+
+    @Test
+    void compactsEverythingBeforeTheTailAndDropsServerState() {
+        historyOf(200, 1_000);
+        // Newest first: the tail starts at the oldest USER row among the keep-recent rows.
+        when(repository.findRecentByUserId(1L, 4)).thenReturn(List.of(
+                row(200, "ASSISTANT"), row(199, "USER"), row(198, "TOOL"), row(197, "USER")));
+        when(compactionEngine.summarize(1L, 197L)).thenReturn(new CompactionEngine.Result("summary", 196, 196L));
+        when(repository.rewriteAsSummary(1L, 196L, "summary")).thenReturn(1);
+        when(repository.deleteUpToExcept(1L, 196L, 196L)).thenReturn(195);
+
+        compactor.noteActivity(1L);
+        compactor.sweep();
+
+        verify(conversationStateService, timeout(2_000)).clear(1L);
+        verify(contextCache, timeout(2_000)).invalidate(1L);
+    }
+
+    @Test
+    void historyChangedMeanwhileIsLeftAlone() {
+        historyOf(200, 1_000);
+        when(repository.findRecentByUserId(1L, 4)).thenReturn(List.of(row(200, "USER")));
+        when(compactionEngine.summarize(1L, 200L)).thenReturn(new CompactionEngine.Result("summary", 199, 199L));
+        when(repository.rewriteAsSummary(1L, 199L, "summary")).thenReturn(1);
+        when(repository.deleteUpToExcept(1L, 199L, 199L)).thenReturn(10);
+
+        compactor.noteActivity(1L);
+        compactor.sweep();
+
+        verify(repository, timeout(2_000)).deleteUpToExcept(1L, 199L, 199L);
+        verify(contextCache, after(200).never()).invalidate(anyLong());
+        verify(conversationStateService, never()).clear(anyLong());
+    }
+
+    @Test
+    void smallHistoryIsNotSummarized() {
+        historyOf(100, 4_000);
+
+        compactor.noteActivity(1L);
+        compactor.sweep();
+
+        verify(repository, timeout(2_000)).getHistoryStats(1L);
+        verify(compactionEngine, after(200).never()).summarize(anyLong(), anyLong());
+    }
+
+    @Test
+    void usersWithoutNewTurnsAreNotChecked() {
+        compactor.sweep();
+
+        verify(repository, after(200).never()).getHistoryStats(anyLong());
+    }
+}
@@ -0,0 +1,139 @@
+package com.assistant.core.service;
+
+import com.assistant.core.model.ChatMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatMessageBatchWriterTest {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<ChatMessageBatchWriter> writers = new ArrayList<>();
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void createTable() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:chat" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE chat_messages (id BIGINT AUTO_INCREMENT PRIMARY KEY, user_id BIGINT, "
+                + "role VARCHAR(32), content VARCHAR(4000), visibility VARCHAR(32))");
+    }
+
+    @AfterEach
+    void stopWriters() {
+        writers.forEach(ChatMessageBatchWriter::shutdown);
+    }
+
+    private ChatMessageBatchWriter writer(boolean groupCommit, long maxDelayMs) {
+        ChatMessageBatchWriter writer = new ChatMessageBatchWriter(jdbcTemplate, meterRegistry, groupCommit, maxDelayMs, 500);
+        writers.add(writer);
+        return writer;
+    }
+
+    private long statements() {
+        return meterRegistry.get("chat.messages.insert.rows").summary().count();
+    }
+
+    private List<String> storedContents() {
+        return jdbcTemplate.queryForList("SELECT content FROM chat_messages ORDER BY id", String.class);
+    }
+
+    @Test
+    void turnFlushWritesItsRowsInOrderInOneStatement() {
+        List<List<ChatMessage>> flushed = new ArrayList<>();
+        ChatTurn turn = new ChatTurn(1L, writer(false, 0), flushed::add);
+        turn.addUserMessage("hi");
+        turn.addToolCallTurn("{\"tool_calls\":[]}", Map.of("call_1", "ok"));
+        turn.addAssistantMessage("done", ChatMessage.VISIBILITY_USER_FACING);
+
+        List<ChatMessage> rows = turn.flush();
+
+        assertEquals(1, statements());
+        assertEquals(4, rows.size());
+        for (int i = 1; i < rows.size(); i++) {
+            assertTrue(rows.get(i).getId() > rows.get(i - 1).getId());
+        }
+        assertEquals(List.of("USER", "ASSISTANT", "TOOL", "ASSISTANT"), rows.stream().map(ChatMessage::getRole).toList());
+        assertEquals(List.of(rows), flushed);
+        assertTrue(turn.pending().isEmpty());
+        assertEquals(List.of(), turn.flush());
+    }
+
+    @Test
+    void discardedRowsAreNotWritten() {
+        ChatTurn turn = new ChatTurn(1L, writer(false, 0), rows -> { });
+        turn.addUserMessage("hi");
+        turn.discard();
+
+        assertEquals(List.of(), turn.flush());
+        assertEquals(List.of(), storedContents());
+    }
+
+    @Test
+    void groupCommitCombinesConcurrentTurns() throws Exception {
+        ChatMessageBatchWriter writer = writer(true, 200);
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            ChatMessage row = ChatMemoryService.row((long) i, "USER", "m" + i, ChatMessage.VISIBILITY_USER_FACING);
+            writes.add(CompletableFuture.runAsync(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                writer.write(List.of(row));
+                assertNotNull(row.getId());
+            }));
+        }
+        start.countDown();
+        CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(4, storedContents().size());
+        assertTrue(statements() < 4, "statements: " + statements());
+    }
+
+    @Test
+    void shutdownWritesQueuedTurnsInsteadOfLeavingThemWaiting() throws Exception {
+        // The writer holds a group open for up to a minute, so the turn is still pending at shutdown.
+        ChatMessageBatchWriter writer = writer(true, 60_000);
+        ChatMessage row = ChatMemoryService.row(1L, "USER", "late", ChatMessage.VISIBILITY_USER_FACING);
+        CompletableFuture<Void> write = CompletableFuture.runAsync(() -> writer.write(List.of(row)));
+        Thread.sleep(100);
+
+        writer.shutdown();
+
+        write.get(5, TimeUnit.SECONDS);
+        assertNotNull(row.getId());
+        assertEquals(List.of("late"), storedContents());
+    }
+
+    @Test
+    void writesAfterShutdownGoStraightToTheDatabase() {
+        ChatMessageBatchWriter writer = writer(true, 5);
+        writer.shutdown();
+        ChatMessage row = ChatMemoryService.row(1L, "USER", "after", ChatMessage.VISIBILITY_USER_FACING);
+
+        writer.write(List.of(row));
+
+        assertNotNull(row.getId());
+        assertEquals(List.of("after"), storedContents());
+    }
+}
@@ -0,0 +1,156 @@
+package com.assistant.core.service;
+
+import com.assistant.core.mcp.LLMService;
+import com.assistant.core.model.ChatMessage;
+import com.assistant.core.repository.ChatMessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CompactionEngineTest {
+
+    /** Message ids ("m17") and summaries of id ranges ("[1-40]") found in a prompt. */
+    private static final Pattern COVERED = Pattern.compile("m(\\d+)\\b|\\[(\\d+)-(\\d+)]");
+
+    private final ChatMessageRepository repository = mock(ChatMessageRepository.class);
+    private final LLMService llmService = mock(LLMService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private CompactionEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        // Page size 50, 1000-char chunks, fan-in 4, 3 model calls at once.
+        engine = new CompactionEngine(repository, llmService, meterRegistry, 50, 1000, 4, 3);
+        // The fake model summarizes its input as the id range it covers, or BROKEN if parts are missing or out of order.
+        when(llmService.chat(anyString(), anyString())).thenAnswer(inv -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(2);
+                return Optional.of(coveredRange(inv.getArgument(1)));
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    /** The user has rows 1..count; each renders as a 100-char line, so ten fill a chunk. */
+    private void historyOf(long count) {
+        when(repository.findPageAfter(eq(1L), anyLong(), anyLong(), any())).thenAnswer(inv -> {
+            long after = inv.getArgument(1);
+            long before = inv.getArgument(2);
+            Pageable page = inv.getArgument(3);
+            List<ChatMessage> rows = new ArrayList<>();
+            for (long id = after + 1; id <= count && id < before && rows.size() < page.getPageSize(); id++) {
+                ChatMessage m = new ChatMessage();
+                m.setId(id);
+                m.setRole("USER");
+                String content = "m" + id + " ";
+                m.setContent(content + "x".repeat(100 - "USER: \n".length() - content.length()));
+                rows.add(m);
+            }
+            return rows;
+        });
+    }
+
+    private static String coveredRange(String text) {
+        Matcher m = COVERED.matcher(text);
+        long first = -1;
+        long last = -1;
+        while (m.find()) {
+            long from = Long.parseLong(m.group(1) != null ? m.group(1) : m.group(2));
+            long to = m.group(1) != null ? from : Long.parseLong(m.group(3));
+            if (last != -1 && from != last + 1) return "BROKEN";
+            if (first == -1) first = from;
+            last = to;
+        }
+        return "[" + first + "-" + last + "]";
+    }
+
+    private double calls(String kind) {
+        return meterRegistry.get("compaction.llm_calls").tag("kind", kind).counter().count();
+    }
+
+    @Test
+    void summarizesLongHistoryInOrderWithBoundedParallelism() {
+        historyOf(1000);
+
+        CompactionEngine.Result result = engine.summarize(1L, Long.MAX_VALUE);
+
+        assertEquals("[1-1000]", result.summary());
+        assertEquals(1000, result.rows());
+        assertEquals(1000L, result.lastId());
+        assertEquals(100.0, calls("chunk"));
+        assertTrue(maxInFlight.get() <= 3, "max in flight: " + maxInFlight.get());
+    }
+
+    @Test
+    void stopsBeforeTheGivenId() {
+        historyOf(1000);
+
+        CompactionEngine.Result result = engine.summarize(1L, 301L);
+
+        assertEquals("[1-300]", result.summary());
+        assertEquals(300, result.rows());
+        assertEquals(300L, result.lastId());
+    }
+
+    @Test
+    void tinyTailJoinsThePreviousChunk() {
+        historyOf(21);
+
+        CompactionEngine.Result result = engine.summarize(1L, Long.MAX_VALUE);
+
+        assertEquals("[1-21]", result.summary());
+        assertEquals(2.0, calls("chunk"));
+        assertEquals(1.0, calls("merge"));
+    }
+
+    @Test
+    void emptyHistoryNeedsNoModelCall() {
+        historyOf(0);
+
+        CompactionEngine.Result result = engine.summarize(1L, Long.MAX_VALUE);
+
+        assertEquals(0, result.rows());
+        assertNull(result.summary());
+        assertNull(result.lastId());
+        verify(llmService, never()).chat(anyString(), anyString());
+    }
+
+    @Test
+    void missingSummaryFailsTheWholeCompaction() {
+        historyOf(100);
+        when(llmService.chat(anyString(), anyString())).thenReturn(Optional.empty());
+
+        assertThrows(IllegalStateException.class, () -> engine.summarize(1L, Long.MAX_VALUE));
+    }
+}
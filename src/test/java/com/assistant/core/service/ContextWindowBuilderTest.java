@@ -0,0 +1,92 @@
+package com.assistant.core.service;
+
+import com.assistant.core.util.TokenEstimator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ContextWindowBuilderTest {
+
+    private static final Map<String, Object> SUMMARY = Map.of("role", "system", "content", "Earlier: user added milk.");
+
+    private final ChatMemoryService chatMemoryService = mock(ChatMemoryService.class);
+
+    private ContextWindowBuilder builder(int tokenBudget) {
+        return new ContextWindowBuilder(chatMemoryService, new SimpleMeterRegistry(), tokenBudget, 200);
+    }
+
+    private static Map<String, Object> message(String role, String content) {
+        return Map.of("role", role, "content", content);
+    }
+
+    private static Map<String, Object> toolCalls(String... ids) {
+        List<Map<String, Object>> calls = Arrays.stream(ids)
+                .map(id -> Map.<String, Object>of("id", id, "type", "function",
+                        "function", Map.of("name", "list_tasks", "arguments", "{}")))
+                .toList();
+        return Map.of("role", "assistant", "tool_calls", calls);
+    }
+
+    private static Map<String, Object> toolResult(String id, String content) {
+        return Map.of("role", "tool", "tool_call_id", id, "content", content);
+    }
+
+    private static int tokens(List<Map<String, Object>> messages) {
+        return messages.stream().mapToInt(TokenEstimator::estimateMessage).sum();
+    }
+
+    @Test
+    void toolCallAndItsResultsAreDroppedTogether() {
+        Map<String, Object> calls = toolCalls("c1", "c2");
+        Map<String, Object> result1 = toolResult("c1", "milk ".repeat(200));
+        Map<String, Object> result2 = toolResult("c2", "eggs");
+        Map<String, Object> reply = message("assistant", "You have milk and eggs.");
+        Map<String, Object> latest = message("user", "thanks");
+        List<Map<String, Object>> history = List.of(message("user", "what do I have?"), calls, result1, result2, reply, latest);
+        when(chatMemoryService.getLatestSummaryForContext(1L)).thenReturn(Optional.empty());
+
+        // Room for the calls message and one result, but not both results: the whole unit goes.
+        int budget = tokens(List.of(reply, latest, calls, result2)) + 5;
+        assertEquals(List.of(reply, latest), builder(budget).build(1L, history));
+
+        assertEquals(history, builder(tokens(history)).build(1L, history));
+    }
+
+    @Test
+    void newestUnitIsKeptEvenOverBudget() {
+        Map<String, Object> latest = message("user", "word ".repeat(100));
+        when(chatMemoryService.getLatestSummaryForContext(1L)).thenReturn(Optional.empty());
+
+        assertEquals(List.of(latest), builder(1).build(1L, List.of(message("user", "hi"), latest)));
+    }
+
+    @Test
+    void orphanToolResultsAreSkippedAndSummaryPrepended() {
+        Map<String, Object> question = message("user", "any news?");
+        Map<String, Object> answer = message("assistant", "No.");
+        List<Map<String, Object>> history = List.of(toolResult("c0", "cut off from its call"), question, answer);
+        when(chatMemoryService.getLatestSummaryForContext(1L)).thenReturn(Optional.of(SUMMARY));
+
+        assertEquals(List.of(SUMMARY, question, answer), builder(10_000).build(1L, history));
+    }
+
+    @Test
+    void summaryMakesRoomByDroppingOldestUnits() {
+        Map<String, Object> old = message("user", "old ".repeat(50));
+        Map<String, Object> middle = message("user", "middle");
+        Map<String, Object> latest = message("user", "latest");
+        when(chatMemoryService.getLatestSummaryForContext(1L)).thenReturn(Optional.of(SUMMARY));
+
+        // Middle and latest fit without the summary, but not together with it.
+        int budget = tokens(List.of(middle, latest, SUMMARY)) - 1;
+        assertEquals(List.of(SUMMARY, latest), builder(budget).build(1L, List.of(old, middle, latest)));
+    }
+}
@@ -0,0 +1,69 @@
+package com.assistant.core.service;
+
+import com.assistant.core.mcp.ChatWithToolsResult;
+import com.assistant.core.mcp.LLMService;
+import com.assistant.core.mcp.LLMStreamListener;
+import com.assistant.core.mcp.ToolRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ConversationOrchestratorServiceTest {
+
+    private final ChatMemoryService chatMemoryService = mock(ChatMemoryService.class);
+    private final LLMService llmService = mock(LLMService.class);
+    private final UserMailboxScheduler mailboxScheduler = new UserMailboxScheduler(16, new SimpleMeterRegistry());
+    private final List<String> tokens = new ArrayList<>();
+    private ConversationOrchestratorService orchestrator;
+
+    @BeforeEach
+    void setUp() {
+        when(chatMemoryService.beginTurn(1L)).thenReturn(new ChatTurn(1L, mock(ChatMessageBatchWriter.class), rows -> { }));
+        orchestrator = new ConversationOrchestratorService(chatMemoryService, llmService, mock(ToolRouter.class),
+                mock(ConversationStateService.class), mock(FastPathRouter.class), mailboxScheduler,
+                mock(ContextWindowBuilder.class), true, 1_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        orchestrator.shutdown();
+        mailboxScheduler.shutdown();
+    }
+
+    @Test
+    void answerDeltasAreStreamedAndNotRepeatedAtTheEnd() {
+        when(llmService.chatWithToolsStreaming(anyLong(), anyList(), any(), any())).thenAnswer(inv -> {
+            LLMStreamListener listener = inv.getArgument(3);
+            listener.onTextDelta("Hi ");
+            listener.onTextDelta("there");
+            return new ChatWithToolsResult.Content("Hi there");
+        });
+
+        String reply = orchestrator.processMessageStreaming(1L, "hello", tokens::add);
+
+        assertEquals("Hi there", reply);
+        assertEquals(List.of("Hi ", "there"), tokens);
+    }
+
+    @Test
+    void answerWithoutDeltasIsSentWhole() {
+        when(llmService.chatWithToolsStreaming(anyLong(), anyList(), any(), any()))
+                .thenReturn(new ChatWithToolsResult.Content("Done."));
+
+        String reply = orchestrator.processMessageStreaming(1L, "hello", tokens::add);
+
+        assertEquals("Done.", reply);
+        assertEquals(List.of("Done."), tokens);
+    }
+}
@@ -0,0 +1,94 @@
+package com.assistant.core.service;
+
+import com.assistant.core.mcp.ToolRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FastPathRouterTest {
+
+    private final ToolRouter toolRouter = mock(ToolRouter.class);
+    private final FastPathRouter router = new FastPathRouter(toolRouter, new SimpleMeterRegistry(), true, 0.85);
+
+    private FastPathRouter.Match match(String message) {
+        return router.match(message).orElseThrow(() -> new AssertionError("no match for: " + message));
+    }
+
+    @Test
+    void listCommandsMatchAfterNormalization() {
+        assertEquals(FastPathRouter.Intent.LIST_TASKS, match("List my tasks").intent());
+        assertEquals(FastPathRouter.Intent.LIST_TASKS, match("  Please show me my to-do list!! ").intent());
+        assertEquals(FastPathRouter.Intent.LIST_TASKS, match("What’s on my tasks?").intent());
+        assertEquals(FastPathRouter.Intent.LIST_TASKS, match("todos").intent());
+        assertEquals(FastPathRouter.Intent.LIST_PEOPLE, match("who is in my contacts").intent());
+        assertEquals(FastPathRouter.Intent.LIST_PEOPLE, match("show the people").intent());
+    }
+
+    @Test
+    void taskActionsCaptureCleanedReference() {
+        FastPathRouter.Match done = match("Mark the groceries as done");
+        assertEquals(FastPathRouter.Intent.MARK_DONE, done.intent());
+        assertEquals("groceries", done.reference());
+        assertEquals(0.92, done.confidence());
+
+        assertEquals("milk", match("done milk").reference());
+        assertEquals(FastPathRouter.Intent.MARK_IN_PROGRESS, match("mark report as in progress").intent());
+        assertEquals(FastPathRouter.Intent.MARK_PENDING, match("move report back to pending").intent());
+
+        FastPathRouter.Match delete = match("delete dentist task");
+        assertEquals(FastPathRouter.Intent.DELETE_TASK, delete.intent());
+        assertEquals("dentist", delete.reference());
+    }
+
+    @Test
+    void doubtfulMatchesScoreBelowThreshold() {
+        // "remove john" may mean a person.
+        assertTrue(match("remove john").confidence() < 0.85);
+        assertTrue(match("milk is done").confidence() < 0.85);
+        // Times and follow-ups mean the message is more than a task reference.
+        assertTrue(match("done milk and call mom tomorrow").confidence() < 0.85);
+        assertTrue(match("finished the report at 5").confidence() < 0.85);
+    }
+
+    @Test
+    void freeTextDoesNotMatch() {
+        assertTrue(router.match("remind me to buy milk at 5").isEmpty());
+        assertTrue(router.match("how are you?").isEmpty());
+        assertTrue(router.match("   ").isEmpty());
+    }
+
+    @Test
+    void confidentMatchInvokesToolAndRendersReply() {
+        when(toolRouter.invokeRaw(eq("list_tasks"), anyMap()))
+                .thenReturn(Map.of("tasks", List.of(Map.of("title", "Milk", "status", "IN_PROGRESS"))));
+
+        assertEquals(Optional.of("Your tasks:\n1. Milk [in progress]"), router.tryHandle(1L, "list my tasks"));
+    }
+
+    @Test
+    void doubtfulMatchFallsThroughWithoutCallingTool() {
+        assertTrue(router.tryHandle(1L, "remove john").isEmpty());
+        verify(toolRouter, never()).invokeRaw(any(), any());
+    }
+
+    @Test
+    void unresolvedTaskActionFallsThroughToModel() {
+        when(toolRouter.invokeRaw(eq("resolve_and_act_on_task"), anyMap()))
+                .thenReturn(Map.of("resolved", false, "ambiguous", false));
+
+        assertTrue(router.tryHandle(1L, "done milk").isEmpty());
+    }
+}
@@ -0,0 +1,105 @@
+package com.assistant.core.service;
+
+import com.assistant.core.model.ProcessedMessage;
+import com.assistant.core.repository.ProcessedMessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class InboundDedupServiceTest {
+
+    private ProcessedMessageRepository repository;
+    private SimpleMeterRegistry meterRegistry;
+    private InboundDedupService dedup;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ProcessedMessageRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        dedup = new InboundDedupService(repository, meterRegistry, true, 1000, 48);
+    }
+
+    @Test
+    void firstDeliveryIsClaimedWithASingleInsert() {
+        InboundDedupService.Claim claim = dedup.claim("m1");
+
+        assertFalse(claim.duplicate());
+        verify(repository).insertClaim(eq("m1"), any(Instant.class));
+        verify(repository, never()).findById(any());
+    }
+
+    @Test
+    void redeliveryIsConfirmedByReadAndReturnsRecordedReply() {
+        dedup.claim("m1");
+        when(repository.findById("m1")).thenReturn(Optional.of(processed("m1", "Added: milk.")));
+
+        InboundDedupService.Claim claim = dedup.claim("m1");
+
+        assertTrue(claim.duplicate());
+        assertEquals("Added: milk.", claim.cachedReply());
+        verify(repository, times(1)).insertClaim(eq("m1"), any(Instant.class));
+        assertEquals(1, meterRegistry.counter("dedup.duplicates", "detected_by", "filter").count());
+    }
+
+    @Test
+    void idUnknownToFilterIsCaughtByTableKey() {
+        doThrow(new DataIntegrityViolationException("duplicate key"))
+                .when(repository).insertClaim(eq("m1"), any(Instant.class));
+        when(repository.findById("m1")).thenReturn(Optional.of(processed("m1", null)));
+
+        InboundDedupService.Claim claim = dedup.claim("m1");
+
+        assertTrue(claim.duplicate());
+        assertNull(claim.cachedReply());
+        assertEquals(1, meterRegistry.counter("dedup.duplicates", "detected_by", "table").count());
+    }
+
+    @Test
+    void releasedClaimIsClaimedAgain() {
+        dedup.claim("m1");
+        dedup.release("m1");
+        when(repository.findById("m1")).thenReturn(Optional.empty());
+
+        InboundDedupService.Claim claim = dedup.claim("m1");
+
+        assertFalse(claim.duplicate());
+        verify(repository).deleteClaim("m1");
+        verify(repository, times(2)).insertClaim(eq("m1"), any(Instant.class));
+    }
+
+    @Test
+    void missingIdOrDisabledDedupIsAlwaysFirstDelivery() {
+        InboundDedupService disabled = new InboundDedupService(repository, meterRegistry, false, 1000, 48);
+
+        assertFalse(dedup.claim(null).duplicate());
+        assertFalse(dedup.claim(" ").duplicate());
+        assertFalse(disabled.claim("m1").duplicate());
+        verifyNoInteractions(repository);
+    }
+
+    private static ProcessedMessage processed(String messageId, String reply) {
+        ProcessedMessage message = new ProcessedMessage();
+        message.setMessageId(messageId);
+        message.setReply(reply);
+        message.setCreatedAt(Instant.now());
+        return message;
+    }
+}
@@ -0,0 +1,118 @@
+package com.assistant.core.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageCoalescerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    /** Merged texts each conversation turn was started with, in order. */
+    private final List<String> turns = new CopyOnWriteArrayList<>();
+    private final Function<String, CompletableFuture<String>> turn = text -> {
+        turns.add(text);
+        return CompletableFuture.completedFuture("reply to " + text);
+    };
+    // 100 ms for a lone message, 200 ms after each follow-up, 400 ms for the whole burst.
+    private final MessageCoalescer coalescer = new MessageCoalescer(true, 100, 200, 400, meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        coalescer.shutdown();
+    }
+
+    @Test
+    void burstIsMergedIntoOneTurnAndOnlyTheLastMessageGetsTheReply() throws Exception {
+        CompletableFuture<String> first = coalescer.submit(1L, "remind me", true, turn);
+        CompletableFuture<String> second = coalescer.submit(1L, "to call mom", true, turn);
+        CompletableFuture<String> third = coalescer.submit(1L, "tomorrow 5pm", true, turn);
+
+        assertEquals("reply to remind me\nto call mom\ntomorrow 5pm", third.get(2, TimeUnit.SECONDS));
+        assertNull(first.get());
+        assertNull(second.get());
+        assertEquals(List.of("remind me\nto call mom\ntomorrow 5pm"), turns);
+        assertEquals(3.0, meterRegistry.get("coalesce.burst.size").summary().max());
+    }
+
+    @Test
+    void loneMessageStartsAfterTheInitialWindow() throws Exception {
+        long start = System.nanoTime();
+        CompletableFuture<String> reply = coalescer.submit(1L, "hi", true, turn);
+
+        assertFalse(reply.isDone());
+        assertEquals("reply to hi", reply.get(2, TimeUnit.SECONDS));
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(waitedMs >= 100, "waited " + waitedMs + " ms");
+    }
+
+    @Test
+    void steadyTypingIsCutOffAtTheMaxWindow() throws Exception {
+        long start = System.nanoTime();
+        CompletableFuture<String> last = null;
+        for (int i = 0; i < 6; i++) {
+            last = coalescer.submit(1L, "part " + i, true, turn);
+            Thread.sleep(90);
+        }
+        last.get(2, TimeUnit.SECONDS);
+
+        // The first turn started at the 400 ms cap with the parts sent so far; the rest form a second burst.
+        assertEquals(2, turns.size(), turns.toString());
+        long firstTurnParts = turns.get(0).lines().count();
+        assertTrue(firstTurnParts >= 4 && firstTurnParts <= 5, turns.get(0));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 400);
+    }
+
+    @Test
+    void commandFlushesThePendingBurstFirstAndRunsOnItsOwn() throws Exception {
+        CompletableFuture<String> pending = coalescer.submit(1L, "buy milk", true, turn);
+
+        CompletableFuture<String> command = coalescer.submit(1L, "/compact", false, turn);
+
+        assertEquals("reply to /compact", command.get(1, TimeUnit.SECONDS));
+        assertEquals("reply to buy milk", pending.get(1, TimeUnit.SECONDS));
+        assertEquals(List.of("buy milk", "/compact"), turns);
+    }
+
+    @Test
+    void usersAreCoalescedSeparately() throws Exception {
+        CompletableFuture<String> a = coalescer.submit(1L, "from one", true, turn);
+        CompletableFuture<String> b = coalescer.submit(2L, "from two", true, turn);
+
+        assertEquals("reply to from one", a.get(2, TimeUnit.SECONDS));
+        assertEquals("reply to from two", b.get(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void failedTurnFailsTheLastReplyOnly() throws Exception {
+        IllegalStateException failure = new IllegalStateException("llm down");
+        Function<String, CompletableFuture<String>> failing = text -> CompletableFuture.failedFuture(failure);
+        CompletableFuture<String> first = coalescer.submit(1L, "a", true, failing);
+        CompletableFuture<String> last = coalescer.submit(1L, "b", true, failing);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> last.get(2, TimeUnit.SECONDS));
+        assertSame(failure, e.getCause());
+        assertNull(first.get());
+    }
+
+    @Test
+    void disabledCoalescerRunsEachMessageAtOnce() throws Exception {
+        MessageCoalescer disabled = new MessageCoalescer(false, 100, 200, 400, meterRegistry);
+
+        assertEquals("reply to hi", disabled.submit(1L, "hi", true, turn).getNow(null));
+        disabled.shutdown();
+    }
+}
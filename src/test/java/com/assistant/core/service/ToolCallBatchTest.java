@@ -0,0 +1,171 @@
+package com.assistant.core.service;
+
+import com.assistant.core.mcp.ChatWithToolsResult;
+import com.assistant.core.mcp.Tool;
+import com.assistant.core.mcp.ToolRouter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ToolCallBatchTest {
+
+    private final ToolRouter toolRouter = mock(ToolRouter.class);
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    /** Start and end of each invocation, in the order they happened. */
+    private final List<String> events = new CopyOnWriteArrayList<>();
+    private final ToolCallBatch batch = new ToolCallBatch(toolRouter, executor, 42L);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /** Registers a tool on the "tasks" resource whose writes are keyed by the "id" argument. */
+    private void tool(String name, boolean readOnly) {
+        when(toolRouter.findTool(name)).thenReturn(Optional.of(new Tool() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public String description() {
+                return "";
+            }
+
+            @Override
+            public Map<String, Object> parametersSchema() {
+                return Map.of();
+            }
+
+            @Override
+            public String resource() {
+                return "tasks";
+            }
+
+            @Override
+            public boolean readOnly() {
+                return readOnly;
+            }
+
+            @Override
+            public String entityKey(Map<String, Object> arguments) {
+                return arguments.get("id") != null ? arguments.get("id").toString() : null;
+            }
+
+            @Override
+            public Map<String, Object> execute(Map<String, Object> arguments) {
+                return Map.of();
+            }
+        }));
+    }
+
+    /** Every invocation records its start, waits for the latch (if any), then records its end. */
+    private void invocationsWaitFor(CountDownLatch latch, long sleepMs) {
+        when(toolRouter.invoke(anyString(), anyMap())).thenAnswer(inv -> {
+            String label = inv.getArgument(0) + ":" + ((Map<?, ?>) inv.getArgument(1)).get("id");
+            events.add("start " + label);
+            if (latch != null) {
+                latch.countDown();
+                if (!latch.await(2, TimeUnit.SECONDS)) {
+                    return Map.of("concurrent", false);
+                }
+            }
+            Thread.sleep(sleepMs);
+            events.add("end " + label);
+            return Map.of("concurrent", true, "userId", ((Map<?, ?>) inv.getArgument(1)).get("userId"));
+        });
+    }
+
+    private static ChatWithToolsResult.SingleToolCall call(String id, String name, Object entityId) {
+        return new ChatWithToolsResult.SingleToolCall(id, name, entityId != null ? Map.of("id", entityId) : Map.of());
+    }
+
+    private List<String> results() {
+        return batch.awaitAll(System.nanoTime() + TimeUnit.SECONDS.toNanos(5)).stream()
+                .map(ToolCallBatch.Executed::result).toList();
+    }
+
+    @Test
+    void readsOfTheSameResourceRunConcurrently() {
+        tool("list_tasks", true);
+        invocationsWaitFor(new CountDownLatch(2), 0);
+
+        batch.submit(call("c1", "list_tasks", 1));
+        batch.submit(call("c2", "list_tasks", 2));
+
+        List<String> results = results();
+        assertEquals(2, results.size());
+        assertTrue(results.stream().allMatch(r -> r.contains("\"concurrent\":true") && r.contains("\"userId\":42")), results.toString());
+    }
+
+    @Test
+    void writesToDifferentEntitiesRunConcurrently() {
+        tool("update_task", false);
+        invocationsWaitFor(new CountDownLatch(2), 0);
+
+        batch.submit(call("c1", "update_task", 1));
+        batch.submit(call("c2", "update_task", 2));
+
+        assertTrue(results().stream().allMatch(r -> r.contains("\"concurrent\":true")));
+    }
+
+    @Test
+    void conflictingCallsRunInSubmissionOrder() {
+        tool("list_tasks", true);
+        tool("update_task", false);
+        invocationsWaitFor(null, 50);
+
+        batch.submit(call("c1", "list_tasks", null));
+        batch.submit(call("c2", "update_task", 7));
+        batch.submit(call("c3", "update_task", 7));
+        results();
+
+        assertEquals(List.of("start list_tasks:null", "end list_tasks:null",
+                "start update_task:7", "end update_task:7", "start update_task:7", "end update_task:7"), events);
+    }
+
+    @Test
+    void duplicateIdsAreSkippedAndFailuresBecomeErrorResults() {
+        tool("update_task", false);
+        when(toolRouter.invoke(eq("update_task"), anyMap())).thenThrow(new IllegalArgumentException("no such task"));
+
+        assertTrue(batch.submit(call("c1", "update_task", 1)));
+        assertFalse(batch.submit(call("c1", "update_task", 1)));
+        assertTrue(batch.isSubmitted("c1"));
+
+        assertEquals(List.of("Error: no such task"), results());
+    }
+
+    @Test
+    void turnDeadlineAbandonsSlowReadsButWaitsForWrites() {
+        tool("list_tasks", true);
+        tool("update_task", false);
+        invocationsWaitFor(null, 300);
+
+        batch.submit(call("c1", "list_tasks", null));
+        batch.submit(call("c2", "update_task", 1));
+        List<String> results = batch.awaitAll(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50)).stream()
+                .map(ToolCallBatch.Executed::result).toList();
+
+        assertEquals("Error: list_tasks timed out", results.get(0));
+        assertTrue(results.get(1).contains("\"concurrent\":true"), results.get(1));
+    }
+}
@@ -0,0 +1,121 @@
+package com.assistant.core.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserMailboxSchedulerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserMailboxScheduler scheduler = new UserMailboxScheduler(64, meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void tasksOfOneUserRunOneAtATimeInSubmissionOrder() throws Exception {
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            int n = i;
+            futures.add(scheduler.submit(1L, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                order.add(n);
+                Thread.sleep(1);
+                running.decrementAndGet();
+                return n;
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        assertEquals(IntStream.range(0, 50).boxed().toList(), order);
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    void differentUsersRunInParallel() throws Exception {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        CompletableFuture<Boolean> first = scheduler.submit(1L, () -> {
+            bothStarted.countDown();
+            return bothStarted.await(2, TimeUnit.SECONDS);
+        });
+        CompletableFuture<Boolean> second = scheduler.submit(2L, () -> {
+            bothStarted.countDown();
+            return bothStarted.await(2, TimeUnit.SECONDS);
+        });
+
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void fullMailboxRejectsFurtherTasks() throws Exception {
+        UserMailboxScheduler small = new UserMailboxScheduler(2, meterRegistry);
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            CompletableFuture<String> running = small.submit(1L, () -> {
+                started.countDown();
+                release.await();
+                return "first";
+            });
+            assertTrue(started.await(2, TimeUnit.SECONDS));
+            CompletableFuture<String> queued1 = small.submit(1L, () -> "second");
+            CompletableFuture<String> queued2 = small.submit(1L, () -> "third");
+
+            CompletableFuture<String> rejected = small.submit(1L, () -> "fourth");
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+            assertInstanceOf(RejectedExecutionException.class, e.getCause());
+            assertEquals(1.0, meterRegistry.get("mailbox.rejected").counter().count());
+            release.countDown();
+            assertEquals("first", running.get(2, TimeUnit.SECONDS));
+            assertEquals("second", queued1.get(2, TimeUnit.SECONDS));
+            assertEquals("third", queued2.get(2, TimeUnit.SECONDS));
+        } finally {
+            small.shutdown();
+        }
+    }
+
+    @Test
+    void nestedRunForTheSameUserRunsInline() {
+        String result = scheduler.run(1L, () -> scheduler.run(1L, () -> "inner") + "+outer");
+
+        assertEquals("inner+outer", result);
+    }
+
+    @Test
+    void runRethrowsTheTaskFailureAndTheMailboxIsRemovedOnceDry() throws Exception {
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+                () -> scheduler.run(1L, () -> {
+                    throw new IllegalStateException("boom");
+                }));
+        assertEquals("boom", thrown.getMessage());
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (meterRegistry.get("mailbox.active").gauge().value() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0.0, meterRegistry.get("mailbox.active").gauge().value());
+    }
+}
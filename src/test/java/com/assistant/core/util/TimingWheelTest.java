@@ -0,0 +1,82 @@
+package com.assistant.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+
+    @Test
+    void expiresInDeadlineOrderAcrossLevels() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 0);
+        wheel.schedule("level2", 100_000);   // tick 10000
+        wheel.schedule("level1", 5_000);     // tick 500
+        wheel.schedule("level0", 30);        // tick 3
+        wheel.schedule("boundary", 640);     // tick 64, first slot of level 1
+
+        assertEquals(List.of("level0", "boundary"), wheel.advance(4_990));
+        assertEquals(List.of("level1"), wheel.advance(5_000));
+        assertEquals(List.of(), wheel.advance(99_990));
+        assertEquals(List.of("level2"), wheel.advance(100_000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void cascadedEntriesKeepDeadlineOrderWithinOneAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, 0);
+        wheel.schedule("c", 9_000);
+        wheel.schedule("a", 70);
+        wheel.schedule("b", 4_100);
+
+        assertEquals(List.of("a", "b", "c"), wheel.advance(10_000));
+    }
+
+    @Test
+    void roundsDeadlinesUpToTheTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 0);
+        wheel.schedule("k", 150);
+
+        assertEquals(List.of(), wheel.advance(199));
+        assertEquals(List.of("k"), wheel.advance(200));
+    }
+
+    @Test
+    void pastDeadlineExpiresOnNextTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 1_000);
+        wheel.schedule("late", 500);
+
+        assertEquals(List.of(), wheel.advance(1_099));
+        assertEquals(List.of("late"), wheel.advance(1_100));
+    }
+
+    @Test
+    void acceptsDeadlineAtCapacityAndRejectsBeyond() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, 0);
+        long capacity = wheel.capacityMillis();
+
+        assertTrue(wheel.schedule("edge", capacity));
+        assertFalse(wheel.schedule("beyond", 64L * 64 * 64));
+        assertFalse(wheel.contains("beyond"));
+
+        assertEquals(List.of(), wheel.advance(capacity - 1));
+        assertEquals(List.of("edge"), wheel.advance(capacity));
+    }
+
+    @Test
+    void rescheduleReplacesAndCancelRemoves() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 0);
+        wheel.schedule("k", 1_000);
+        wheel.schedule("k", 50);
+        wheel.schedule("gone", 60);
+
+        assertTrue(wheel.cancel("gone"));
+        assertFalse(wheel.cancel("gone"));
+        assertEquals(1, wheel.size());
+        assertEquals(List.of("k"), wheel.advance(100));
+        assertEquals(List.of(), wheel.advance(2_000));
+    }
+}
@@ -0,0 +1,65 @@
+package com.assistant.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void burstIsAvailableImmediately() {
+        TokenBucket bucket = new TokenBucket(10, 2, 0);
+
+        assertEquals(0, bucket.reserve(0, 0));
+        assertEquals(0, bucket.reserve(0, 0));
+    }
+
+    @Test
+    void reservationsBeyondBurstWaitInOrder() {
+        TokenBucket bucket = new TokenBucket(10, 2, 0);
+        bucket.reserve(0, 0);
+        bucket.reserve(0, 0);
+
+        assertEquals(100 * MS, bucket.reserve(0, 1_000 * MS), 1.0);
+        assertEquals(200 * MS, bucket.reserve(0, 1_000 * MS), 1.0);
+    }
+
+    @Test
+    void reservationOverMaxWaitTakesNothing() {
+        TokenBucket bucket = new TokenBucket(10, 1, 0);
+        bucket.reserve(0, 0);
+
+        assertEquals(-1, bucket.reserve(0, 50 * MS));
+        assertEquals(100 * MS, bucket.reserve(0, 101 * MS), 1.0);
+    }
+
+    @Test
+    void refillsAtRateUpToBurst() {
+        TokenBucket bucket = new TokenBucket(10, 2, 0);
+        bucket.reserve(0, 0);
+        bucket.reserve(0, 0);
+
+        assertEquals(0, bucket.reserve(101 * MS, 0));
+        assertEquals(-1, bucket.reserve(101 * MS, 0));
+        // A long pause refills only up to burst.
+        assertEquals(0, bucket.reserve(10_000 * MS, 0));
+        assertEquals(0, bucket.reserve(10_000 * MS, 0));
+        assertEquals(-1, bucket.reserve(10_000 * MS, 0));
+    }
+
+    @Test
+    void idleOnlyWhenFull() {
+        TokenBucket bucket = new TokenBucket(10, 2, 0);
+        assertTrue(bucket.isIdle(0));
+        bucket.reserve(0, 0);
+
+        assertFalse(bucket.isIdle(50 * MS));
+        assertTrue(bucket.isIdle(101 * MS));
+    }
+}
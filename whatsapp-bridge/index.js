@@ -123,6 +123,8 @@ async function connectWhatsApp() {
                 messages: [
                   {
                     from: phone || remoteJid.replace(/@.*$/, ''),
+                    // Where replies must go: from is a bare @lid id when the phone is unknown.
+                    remoteJid,
                     id: msg.key.id,
                     timestamp: String(msg.messageTimestamp || ''),
                     type: 'text',